@@ -0,0 +1,312 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.architecture;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import dk.sidereal.lumm.util.LummException;
+
+/**
+ * Keeps track of all {@link LummComponent} instances attached to objects in a
+ * {@link LummScene}, by class. Retrieved using
+ * {@link LummScene#getComponentRegistry()}.
+ * <p>
+ * Components are registered when created and unregistered when their object is
+ * disposed, removed from the object, or moved to another scene. Views returned
+ * by {@link #getComponents(Class)} and {@link #getComponentsOfType(Class)} are
+ * live, reflecting registrations done after they were retrieved, and can be
+ * kept and iterated every frame instead of going through all objects in the
+ * scene.
+ *
+ * @author Claudiu Bele
+ */
+public class ComponentRegistry {
+
+    // region fields
+
+    /** Components of the scene, by their exact class. */
+    private final HashMap<Class<? extends LummComponent>, ArrayList<LummComponent>> components;
+
+    private final HashMap<Class<? extends LummComponent>, View<?>> views;
+
+    private final HashMap<Class<? extends LummComponent>, View<?>> subtypeViews;
+
+    // endregion fields
+
+    // region constructors
+
+    ComponentRegistry() {
+
+        components = new HashMap<Class<? extends LummComponent>, ArrayList<LummComponent>>();
+        views = new HashMap<Class<? extends LummComponent>, View<?>>();
+        subtypeViews = new HashMap<Class<? extends LummComponent>, View<?>>();
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    /**
+     * Returns a live view of the components of a class, not including
+     * components of its subclasses.
+     *
+     * @param type
+     *            the class of the components
+     * @return view of all components of that class in the scene
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends LummComponent> View<T> getComponents(Class<T> type) {
+
+        View<T> view = (View<T>) views.get(type);
+        if (view == null) {
+            view = new View<T>();
+            view.lists.add(getList(type));
+            views.put(type, view);
+        }
+        return view;
+    }
+
+    /**
+     * Returns a live view of the components of a class and of all of its
+     * subclasses.
+     *
+     * @param type
+     *            the class or superclass of the components
+     * @return view of all components assignable to that class in the scene
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends LummComponent> View<T> getComponentsOfType(Class<T> type) {
+
+        View<T> view = (View<T>) subtypeViews.get(type);
+        if (view == null) {
+            view = new View<T>();
+            for (Entry<Class<? extends LummComponent>, ArrayList<LummComponent>> entry : components.entrySet()) {
+                if (type.isAssignableFrom(entry.getKey()))
+                    view.lists.add(entry.getValue());
+            }
+            subtypeViews.put(type, view);
+        }
+        return view;
+    }
+
+    /**
+     * Returns the number of components of a class in the scene, not including
+     * subclasses or checking whether they are enabled.
+     *
+     * @param type
+     *            the class of the components
+     * @return the number of registered components of that class
+     */
+    public int count(Class<? extends LummComponent> type) {
+
+        ArrayList<LummComponent> list = components.get(type);
+        return list == null ? 0 : list.size();
+    }
+
+    final void register(LummComponent component) {
+
+        if (component.registryIndex != -1)
+            return;
+
+        ArrayList<LummComponent> list = getList(component.getClass());
+        component.registryIndex = list.size();
+        list.add(component);
+    }
+
+    final void unregister(LummComponent component) {
+
+        if (component.registryIndex == -1)
+            return;
+
+        ArrayList<LummComponent> list = components.get(component.getClass());
+        int index = component.registryIndex;
+        LummComponent last = list.remove(list.size() - 1);
+        if (last != component) {
+            list.set(index, last);
+            last.registryIndex = index;
+        }
+        component.registryIndex = -1;
+    }
+
+    private ArrayList<LummComponent> getList(Class<? extends LummComponent> type) {
+
+        ArrayList<LummComponent> list = components.get(type);
+        if (list == null) {
+            list = new ArrayList<LummComponent>();
+            components.put(type, list);
+
+            // add the new class to the views of its superclasses
+            for (Entry<Class<? extends LummComponent>, View<?>> entry : subtypeViews.entrySet()) {
+                if (entry.getKey().isAssignableFrom(type))
+                    entry.getValue().lists.add(list);
+            }
+        }
+        return list;
+    }
+
+    // endregion methods
+
+    // region classes
+
+    /**
+     * Live view of the components of one or more classes in a scene. Iterating
+     * it only returns components that are enabled, while {@link #size()} and
+     * {@link #get(int)} include disabled ones as well.
+     * <p>
+     * The view reuses its iterators, so it can't be iterated by nested loops;
+     * use {@link #size()} and {@link #get(int)} for the inner one. Components
+     * must not be created or removed while iterating.
+     */
+    public static final class View<T extends LummComponent> implements Iterable<T> {
+
+        /** Lists of the registry holding the components of the view. */
+        final List<ArrayList<LummComponent>> lists;
+
+        /** Iterators returned by {@link #iterator()}, in turns. */
+        private final EnabledIterator iterator1, iterator2;
+
+        View() {
+            lists = new ArrayList<ArrayList<LummComponent>>();
+            iterator1 = new EnabledIterator();
+            iterator2 = new EnabledIterator();
+        }
+
+        /**
+         * Returns the number of components in the view, including disabled
+         * ones.
+         *
+         * @return the number of components
+         */
+        public int size() {
+
+            int size = 0;
+            for (int i = 0; i < lists.size(); i++) {
+                size += lists.get(i).size();
+            }
+            return size;
+        }
+
+        /**
+         * Returns a component of the view, including disabled ones.
+         *
+         * @param index
+         *            index from 0 to {@link #size()}
+         * @return the component at that index
+         */
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+
+            for (int i = 0; i < lists.size(); i++) {
+                if (index < lists.get(i).size())
+                    return (T) lists.get(i).get(index);
+                index -= lists.get(i).size();
+            }
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of ComponentRegistry.View");
+        }
+
+        /**
+         * Returns an iterator over the enabled components of the view. The
+         * iterator is reused by the view, see the class documentation.
+         */
+        @Override
+        public Iterator<T> iterator() {
+
+            // returning the iterators in turns invalidates the previous one,
+            // so a loop still using it fails instead of skipping components
+            if (!iterator1.valid) {
+                iterator1.reset();
+                iterator2.valid = false;
+                return iterator1;
+            }
+            iterator2.reset();
+            iterator1.valid = false;
+            return iterator2;
+        }
+
+        private final class EnabledIterator implements Iterator<T> {
+
+            private int list;
+
+            private int index;
+
+            private T next;
+
+            /** Whether the iterator is the last one returned by the view. */
+            boolean valid;
+
+            void reset() {
+
+                list = 0;
+                index = 0;
+                valid = true;
+                advance();
+            }
+
+            @SuppressWarnings("unchecked")
+            private void advance() {
+
+                next = null;
+                while (list < lists.size()) {
+
+                    ArrayList<LummComponent> components = lists.get(list);
+                    while (index < components.size()) {
+                        LummComponent component = components.get(index++);
+                        if (component.isEnabled() && component.object.isEnabled()) {
+                            next = (T) component;
+                            return;
+                        }
+                    }
+                    list++;
+                    index = 0;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+
+                if (!valid)
+                    throw new LummException("ComponentRegistry.View can't be iterated by nested loops");
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+
+                if (!valid)
+                    throw new LummException("ComponentRegistry.View can't be iterated by nested loops");
+                if (next == null)
+                    throw new NoSuchElementException();
+
+                T result = next;
+                advance();
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("ComponentRegistry.View is read-only");
+            }
+        }
+    }
+
+    // endregion classes
+}
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.architecture;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the update of parallel-safe {@link LummComponent} types across a
+ * {@link ForkJoinPool}, used by {@link LummScene#onUpdateInternal()} when
+ * {@link LummConfiguration#parallelComponentUpdate} is set.
+ * <p>
+ * During the serial update pass, components whose
+ * {@link LummComponent#isParallelSafe()} returns true are collected by type
+ * using {@link #defer(LummComponent)} instead of being updated. Once the serial
+ * pass is done, {@link #run()} updates all collected instances of a type in
+ * parallel. Types are grouped in phases based on
+ * {@link LummComponent#getReadDependencies()} and
+ * {@link LummComponent#getWriteDependencies()}, types in the same phase
+ * running at the same time, each phase waiting for the previous one to finish.
+ *
+ * @author Claudiu Bele
+ */
+class ComponentUpdateScheduler {
+
+    // region fields
+
+    /** Number of instances below which a task is not split any further. */
+    private static final int SPLIT_THRESHOLD = 64;
+
+    private static ForkJoinPool pool;
+
+    /** Scheduling data of every component type met so far, by class. */
+    private final HashMap<Class<? extends LummComponent>, ComponentType> types;
+
+    /** Parallel-safe component types, in the order they were first met. */
+    private final List<ComponentType> parallelTypes;
+
+    /** Number of phases that {@link #parallelTypes} are split in. */
+    private int phaseCount;
+
+    // endregion fields
+
+    // region constructors
+
+    ComponentUpdateScheduler() {
+
+        types = new HashMap<Class<? extends LummComponent>, ComponentType>();
+        parallelTypes = new ArrayList<ComponentType>();
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    /**
+     * Collects the component for the parallel pass if its type is
+     * parallel-safe. Called from {@link LummObject#onUpdateInternal()}.
+     *
+     * @param component
+     *            the component to update
+     * @return true if the component will be updated in {@link #run()}, false
+     *         if it has to be updated by the caller
+     */
+    final boolean defer(LummComponent component) {
+
+        ComponentType type = types.get(component.getClass());
+        if (type == null)
+            type = addType(component);
+
+        if (!type.parallel)
+            return false;
+
+        type.instances.add(component);
+        return true;
+    }
+
+    /**
+     * Updates all components collected using {@link #defer(LummComponent)}
+     * since the last call, phase by phase.
+     */
+    final void run() {
+
+        ForkJoinPool pool = getPool();
+
+        ArrayList<UpdateTask> tasks = new ArrayList<UpdateTask>();
+        for (int phase = 0; phase < phaseCount; phase++) {
+
+            tasks.clear();
+            for (int i = 0; i < parallelTypes.size(); i++) {
+
+                ComponentType type = parallelTypes.get(i);
+                if (type.phase == phase && type.instances.size() > 0)
+                    tasks.add(new UpdateTask(type.instances, 0, type.instances.size()));
+            }
+
+            if (tasks.size() == 1)
+                pool.invoke(tasks.get(0));
+            else if (tasks.size() > 1)
+                pool.invoke(new PhaseTask(tasks));
+        }
+
+        for (int i = 0; i < parallelTypes.size(); i++) {
+            parallelTypes.get(i).instances.clear();
+        }
+    }
+
+    /**
+     * Returns the pool shared by parallel component and module updates,
+     * creating it the first time it is needed.
+     *
+     * @return the pool running parallel work
+     */
+    static synchronized ForkJoinPool getPool() {
+
+        if (pool == null)
+            pool = new ForkJoinPool();
+        return pool;
+    }
+
+    private ComponentType addType(LummComponent component) {
+
+        ComponentType type = new ComponentType(component);
+        types.put(component.getClass(), type);
+
+        if (type.parallel) {
+
+            // a type runs after every earlier type it conflicts with
+            int phase = 0;
+            for (int i = 0; i < parallelTypes.size(); i++) {
+
+                ComponentType other = parallelTypes.get(i);
+                if (other.phase >= phase && type.conflictsWith(other))
+                    phase = other.phase + 1;
+            }
+            type.phase = phase;
+            phaseCount = Math.max(phaseCount, phase + 1);
+            parallelTypes.add(type);
+        }
+
+        return type;
+    }
+
+    // endregion methods
+
+    // region classes
+
+    /** Scheduling data of a {@link LummComponent} type. */
+    private static class ComponentType {
+
+        final boolean parallel;
+
+        /** Classes read in {@link LummComponent#onUpdate()}. */
+        final List<Class<?>> reads;
+
+        /** Classes written in {@link LummComponent#onUpdate()}, including the type itself. */
+        final List<Class<?>> writes;
+
+        final ArrayList<LummComponent> instances;
+
+        int phase;
+
+        ComponentType(LummComponent component) {
+
+            parallel = component.isParallelSafe();
+
+            reads = new ArrayList<Class<?>>();
+            if (component.getReadDependencies() != null)
+                reads.addAll(component.getReadDependencies());
+
+            writes = new ArrayList<Class<?>>();
+            writes.add(component.getClass());
+            if (component.getWriteDependencies() != null)
+                writes.addAll(component.getWriteDependencies());
+
+            instances = new ArrayList<LummComponent>();
+        }
+
+        boolean conflictsWith(ComponentType other) {
+
+            return overlaps(writes, other.writes) || overlaps(writes, other.reads) || overlaps(reads, other.writes);
+        }
+
+        private static boolean overlaps(List<Class<?>> first, List<Class<?>> second) {
+
+            for (int i = 0; i < first.size(); i++) {
+                for (int j = 0; j < second.size(); j++) {
+
+                    if (first.get(i).isAssignableFrom(second.get(j)) || second.get(j).isAssignableFrom(first.get(i)))
+                        return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Updates a range of components, splitting it in halves while it is large. */
+    private static class UpdateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 4861298710564827531L;
+
+        private final List<LummComponent> components;
+
+        private final int from;
+
+        private final int to;
+
+        UpdateTask(List<LummComponent> components, int from, int to) {
+
+            this.components = components;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    components.get(i).onUpdateInternal();
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new UpdateTask(components, from, middle), new UpdateTask(components, middle, to));
+        }
+    }
+
+    /** Runs the update tasks of all types in a phase at the same time. */
+    private static class PhaseTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -2335190687126601484L;
+
+        private final List<UpdateTask> tasks;
+
+        PhaseTask(List<UpdateTask> tasks) {
+
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+
+            invokeAll(tasks);
+        }
+    }
+
+    // endregion classes
+}
@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.architecture;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Queue of events to run on the rendering thread, posted using
+ * {@link LummObject#runOnGameThread(AbstractEvent)} from any thread and run
+ * in {@link LummScene#onSyncInternal()}, while the update thread is idle.
+ * Retrieved using {@link Lumm#getGameThreadQueue()}.
+ * <p>
+ * Posting is lock-free, any number of threads being able to post at the same
+ * time while the rendering thread runs the events. If a time budget is set
+ * using {@link LummConfiguration#gameThreadEventBudget} or
+ * {@link #setTimeBudget(float)}, events left when the budget runs out are run
+ * in the next frames, spreading large batches over multiple frames.
+ * <p>
+ * Events posted by objects that were removed from the scene or disposed by the
+ * time they would run are skipped. Events posted by objects that are not added
+ * to the scene yet, such as from {@link LummObject#onCreate(Object...)}, run.
+ *
+ * @author Claudiu Bele
+ */
+public class GameThreadQueue {
+
+    // region fields
+
+    /**
+     * Last node in the queue, replaced by posting threads. The first node is
+     * only accessed by the rendering thread.
+     */
+    private final AtomicReference<Node> tail;
+
+    /** Node before the next one to run. Only accessed by the rendering thread. */
+    private Node head;
+
+    private final AtomicInteger pending;
+
+    /** Maximum time to spend running events each frame, in nanoseconds. 0 if unlimited. */
+    private volatile long timeBudget;
+
+    private long processedCount;
+
+    private int lastFrameProcessedCount;
+
+    private float lastFrameAverageLatency;
+
+    private float lastFrameMaxLatency;
+
+    // endregion fields
+
+    // region constructors
+
+    GameThreadQueue() {
+
+        head = new Node(null, null);
+        tail = new AtomicReference<Node>(head);
+        pending = new AtomicInteger();
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    /**
+     * Posts an event to run on the rendering thread. Can be called from any
+     * thread.
+     *
+     * @param owner
+     *            the object that posted the event, or null
+     * @param event
+     *            the event to run
+     */
+    final void post(LummObject owner, AbstractEvent event) {
+
+        Node node = new Node(owner, event);
+        pending.incrementAndGet();
+        Node previous = tail.getAndSet(node);
+        previous.next = node;
+    }
+
+    /**
+     * Runs queued events on the calling thread until the queue is empty or the
+     * time budget is used up. At least one event is run if the queue is not
+     * empty. Called in {@link LummScene#onSyncInternal()}.
+     */
+    final void run() {
+
+        long start = System.nanoTime();
+        long budget = timeBudget;
+        long totalLatency = 0;
+        long maxLatency = 0;
+        int processed = 0;
+
+        Node node;
+        while ((node = head.next) != null) {
+
+            // the node becomes the new stub, its data is cleared once taken
+            head = node;
+            LummObject owner = node.owner;
+            AbstractEvent event = node.event;
+            int removalCount = node.removalCount;
+            node.owner = null;
+            node.event = null;
+            pending.decrementAndGet();
+
+            long now = System.nanoTime();
+            long latency = now - node.postTime;
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+            processed++;
+
+            if (owner == null || owner.removalCount == removalCount) {
+                try {
+                    event.run();
+                } catch (Exception e) {
+                    Lumm.net.logThrowable(e);
+                    if (owner != null)
+                        Lumm.debug.logError("Game Thread Event in object ( type: " + owner.getType() + ", name:"
+                                + owner.getName() + ")", e);
+                    else
+                        Lumm.debug.logError("Game Thread Event", e);
+                }
+            }
+
+            if (budget > 0 && System.nanoTime() - start >= budget)
+                break;
+        }
+
+        processedCount += processed;
+        lastFrameProcessedCount = processed;
+        lastFrameAverageLatency = processed == 0 ? 0 : totalLatency / (processed * 1000000f);
+        lastFrameMaxLatency = maxLatency / 1000000f;
+    }
+
+    /**
+     * Sets the maximum time to spend running events each frame.
+     *
+     * @param milliseconds
+     *            the time budget, or 0 to run all events every frame
+     */
+    public void setTimeBudget(float milliseconds) {
+
+        if (milliseconds < 0) {
+            Lumm.debug.logDebug("Trying to set the game thread event budget to " + milliseconds + " milliseconds",
+                    null);
+            return;
+        }
+        this.timeBudget = (long) (milliseconds * 1000000L);
+    }
+
+    public float getTimeBudget() {
+
+        return timeBudget / 1000000f;
+    }
+
+    /**
+     * Returns the number of events posted and not run yet.
+     *
+     * @return the depth of the queue
+     */
+    public int getPendingCount() {
+
+        return pending.get();
+    }
+
+    /**
+     * Returns the number of events taken from the queue since startup,
+     * including ones that were skipped.
+     *
+     * @return the number of events processed so far
+     */
+    public long getProcessedCount() {
+
+        return processedCount;
+    }
+
+    public int getLastFrameProcessedCount() {
+
+        return lastFrameProcessedCount;
+    }
+
+    /**
+     * Returns the average time between posting and running the events
+     * processed in the last frame, in milliseconds.
+     *
+     * @return the average latency of the last frame's events
+     */
+    public float getLastFrameAverageLatency() {
+
+        return lastFrameAverageLatency;
+    }
+
+    /**
+     * Returns the longest time between posting and running an event processed
+     * in the last frame, in milliseconds.
+     *
+     * @return the maximum latency of the last frame's events
+     */
+    public float getLastFrameMaxLatency() {
+
+        return lastFrameMaxLatency;
+    }
+
+    // endregion methods
+
+    // region classes
+
+    private static final class Node {
+
+        volatile Node next;
+
+        LummObject owner;
+
+        AbstractEvent event;
+
+        /** {@link LummObject#removalCount} of the owner when the event was posted. */
+        final int removalCount;
+
+        final long postTime;
+
+        Node(LummObject owner, AbstractEvent event) {
+
+            this.owner = owner;
+            this.event = event;
+            this.removalCount = owner == null ? 0 : owner.removalCount;
+            this.postTime = System.nanoTime();
+        }
+    }
+
+    // endregion classes
+}
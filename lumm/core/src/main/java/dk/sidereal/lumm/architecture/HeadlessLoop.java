@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.architecture;
+
+import dk.sidereal.lumm.util.LummException;
+
+/**
+ * Runs a {@link Lumm} application in headless mode on the calling thread,
+ * creating it, running frames in a plain loop and disposing it once stopped.
+ * Used for dedicated servers, load tests and benchmarks on machines without a
+ * GPU, in place of a LibGDX backend's loop.
+ * <p>
+ * The {@link LummConfiguration#headless} flag must be set. Neither
+ * {@link com.badlogic.gdx.Gdx#gl} nor {@link com.badlogic.gdx.Gdx#graphics}
+ * are used, while {@link com.badlogic.gdx.Gdx#app},
+ * {@link com.badlogic.gdx.Gdx#files} and {@link com.badlogic.gdx.Gdx#input}
+ * must be set up before running, as the default modules use them.
+ * <p>
+ * Frames run as fast as possible unless a frame rate is set using
+ * {@link #setFrameRate(float)}. Each frame uses the real time elapsed since
+ * the last one, unless a fixed time is set using {@link #setFrameTime(float)},
+ * making runs repeatable regardless of how fast the machine is.
+ *
+ * @author Claudiu Bele
+ */
+public class HeadlessLoop implements Runnable {
+
+    // region fields
+
+    private final Lumm lumm;
+
+    /** Minimum time between the start of two frames, in nanoseconds. 0 if uncapped. */
+    private long frameInterval;
+
+    /** Time passed to every frame, in seconds. 0 if measured. */
+    private float frameTime;
+
+    private volatile boolean running;
+
+    private long frameCount;
+
+    // endregion fields
+
+    // region constructors
+
+    public HeadlessLoop(Lumm lumm) {
+
+        if (lumm == null)
+            throw new NullPointerException("HeadlessLoop constructor parameter 'lumm' of type Lumm is null");
+
+        this.lumm = lumm;
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    /**
+     * Sets the maximum number of frames to run per second, sleeping between
+     * frames that finish early.
+     *
+     * @param framesPerSecond
+     *            the frame rate, or 0 to run frames as fast as possible
+     * @return this instance, for chaining
+     */
+    public HeadlessLoop setFrameRate(float framesPerSecond) {
+
+        if (framesPerSecond < 0)
+            throw new LummException("HeadlessLoop.setFrameRate parameter 'framesPerSecond' can't be negative");
+
+        this.frameInterval = framesPerSecond == 0 ? 0 : (long) (1000000000L / framesPerSecond);
+        return this;
+    }
+
+    /**
+     * Sets the time to pass to every frame instead of measuring it.
+     *
+     * @param seconds
+     *            the time of a frame, or 0 to use the real time elapsed
+     * @return this instance, for chaining
+     */
+    public HeadlessLoop setFrameTime(float seconds) {
+
+        if (seconds < 0)
+            throw new LummException("HeadlessLoop.setFrameTime parameter 'seconds' can't be negative");
+
+        this.frameTime = seconds;
+        return this;
+    }
+
+    /** Runs frames until {@link #stop()} or {@link Lumm#exit()} is called. */
+    @Override
+    public void run() {
+
+        run(-1);
+    }
+
+    /**
+     * Runs the given number of frames, or fewer if {@link #stop()} or
+     * {@link Lumm#exit()} is called before.
+     *
+     * @param frames
+     *            the number of frames to run, or -1 to run until stopped
+     */
+    public void run(long frames) {
+
+        if (!lumm.configuration.headless)
+            throw new LummException("HeadlessLoop requires LummConfiguration.headless to be set");
+
+        running = true;
+        frameCount = 0;
+        lumm.headlessLoop = this;
+
+        try {
+            lumm.create();
+
+            long lastFrameStart = 0;
+            while (running && (frames < 0 || frameCount < frames)) {
+
+                long frameStart = System.nanoTime();
+                float delta = frameTime;
+                if (delta == 0 && lastFrameStart != 0)
+                    delta = (frameStart - lastFrameStart) / 1000000000f;
+                lastFrameStart = frameStart;
+
+                lumm.render(delta);
+                frameCount++;
+
+                if (frameInterval > 0) {
+                    long remaining = frameInterval - (System.nanoTime() - frameStart);
+                    if (remaining > 0)
+                        Thread.sleep(remaining / 1000000L, (int) (remaining % 1000000L));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+            lumm.dispose();
+            lumm.headlessLoop = null;
+        }
+    }
+
+    /**
+     * Stops the loop after the current frame. Can be called from any thread.
+     */
+    public void stop() {
+
+        running = false;
+    }
+
+    public boolean isRunning() {
+
+        return running;
+    }
+
+    /**
+     * Returns the number of frames run since the loop was last started.
+     *
+     * @return the number of frames run
+     */
+    public long getFrameCount() {
+
+        return frameCount;
+    }
+
+    // endregion methods
+}
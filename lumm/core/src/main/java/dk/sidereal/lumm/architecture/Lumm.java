@@ -21,7 +21,6 @@ import com.badlogic.gdx.Game;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Application.ApplicationType;
 import com.badlogic.gdx.utils.ObjectMap;
-import com.badlogic.gdx.utils.ObjectMap.Entries;
 import com.badlogic.gdx.utils.ObjectMap.Entry;
 import dk.sidereal.lumm.architecture.core.AppData;
 import dk.sidereal.lumm.architecture.core.Assets;
@@ -30,6 +29,7 @@ import dk.sidereal.lumm.architecture.core.Input;
 import dk.sidereal.lumm.architecture.core.Net;
 import dk.sidereal.lumm.architecture.core.Audio;
 import dk.sidereal.lumm.architecture.core.Time;
+import dk.sidereal.lumm.architecture.pos.Position;
 
 import dk.sidereal.lumm.util.LummException;
 
@@ -67,6 +67,24 @@ public class Lumm extends Game {
     /** Array containing all of the functionality modules. */
     static ObjectMap<Class<? extends LummModule>, LummModule> modules;
 
+    /**
+     * Order in which {@link #modules} are created and updated. Built the first
+     * time it is needed after adding a module.
+     */
+    private static ModuleScheduler moduleScheduler;
+
+    /**
+     * Timing wheel keeping track of modules, objects and components with an
+     * update frequency higher than 0. Advanced once per update pass.
+     */
+    static final UpdateWheel updateWheel = new UpdateWheel();
+
+    /**
+     * Events posted using {@link LummObject#runOnGameThread(AbstractEvent)},
+     * run before rendering the scene.
+     */
+    static final GameThreadQueue gameThreadQueue = new GameThreadQueue();
+
     private static Lumm instance;
 
     static boolean disposed;
@@ -75,12 +93,47 @@ public class Lumm extends Game {
 
     private UpdateThread updateThread;
 
-    private LummConfiguration configuration;
+    LummConfiguration configuration;
 
     private boolean inBackground;
 
     private boolean paused;
 
+    /**
+     * Time elapsed since the last frame, without scaling. Set at the start of
+     * every frame in {@link #render(float)}.
+     */
+    private static float rawDeltaTime;
+
+    /**
+     * {@link System#nanoTime()} at the start of the last frame, used for
+     * measuring {@link #rawDeltaTime} in headless mode. 0 before the first
+     * frame.
+     */
+    private long lastFrameTime;
+
+    /** Loop driving the application in headless mode, if any. */
+    HeadlessLoop headlessLoop;
+
+    /**
+     * Scene passed to {@link #preloadScene(LummScene)}, created in
+     * {@link #updatePreload()} once its assets are loaded. Null if no scene is
+     * being preloaded.
+     */
+    private LummScene preloadedScene;
+
+    /**
+     * Scenes to dispose in the next {@link #updatePreload()} call, either
+     * replaced or preloaded scenes that are no longer needed.
+     */
+    private final List<LummScene> scenesToDispose = new ArrayList<LummScene>();
+
+    /**
+     * Scene whose {@link LummScene#onCreate(Object[])} is running while not
+     * being the current scene, returned by {@link #getCreationScene()}.
+     */
+    private static LummScene creationScene;
+
 
     // endregion fields
 
@@ -163,6 +216,8 @@ public class Lumm extends Game {
             }
         }
 
+        gameThreadQueue.setTimeBudget(cfg.gameThreadEventBudget);
+
         Lumm.instance = this;
         Lumm.disposed = false;
 
@@ -174,7 +229,8 @@ public class Lumm extends Game {
     /**
      * Method called after initialising the LibGDX backend. The modules'
      * (default and custom) {@link LummModule#onCreate()} method is called, in
-     * which LibGDX data can be accessed.
+     * which LibGDX data can be accessed. Modules are created after their
+     * dependencies, as ordered by {@link ModuleScheduler}.
      * <p>
      * The method also sets the screen to render as the one passed in the
      * constructors.
@@ -189,93 +245,9 @@ public class Lumm extends Game {
         if (!Gdx.app.getType().equals(ApplicationType.Desktop))
             configuration.runInBackground = false;
 
-        List<Entry<Class<? extends LummModule>, LummModule>> itemsToProcess = new ArrayList<Entry<Class<? extends LummModule>, LummModule>>();
-
-        Entries<Class<? extends LummModule>, LummModule> entries = modules.entries();
-        while (entries.hasNext()) {
-
-            Entry<Class<? extends LummModule>, LummModule> mapEntry = entries.next();
-            Entry<Class<? extends LummModule>, LummModule> entry = new Entry<Class<? extends LummModule>, LummModule>();
-            entry.key = mapEntry.key;
-            entry.value = mapEntry.value;
-            itemsToProcess.add(entry);
-        }
-
-        int previousNumModulesToInitialize = -1;
-        boolean checkCircularDependencies = false;
-        int index = 0;
-        while (itemsToProcess.size() > 0) {
-
-            if (index > itemsToProcess.size() - 1) {
-                index = 0;
-                if (previousNumModulesToInitialize == -1) {
-                    previousNumModulesToInitialize = itemsToProcess.size();
-                } else if (previousNumModulesToInitialize == itemsToProcess.size()) {
-                    if (!checkCircularDependencies) checkCircularDependencies = true;
-                    else {
-                        Exception e = new Exception("Circular dependency in modules");
-
-
-                        StringBuilder builder = new StringBuilder();
-                        for (int i = 0; i < itemsToProcess.size(); i++) {
-                            builder.append("#");
-                            builder.append(i);
-                            builder.append(": Module ");
-                            builder.append(itemsToProcess.get(i).value.getClass().getName());
-                            builder.append(" with dependencies: ");
-
-                            List<Class<? extends LummModule>> dependencies = itemsToProcess.get(i).value.getDependencies();
-                            for (int j = 0; j < dependencies.size(); j++) {
-
-                                builder.append(dependencies.get(j).getName());
-                                if (j != dependencies.size() - 1)
-                                    builder.append(", ");
-                            }
-                            builder.append("; ");
-
-                        }
-                        Lumm.debug.logError(builder.toString(), e);
-                        Gdx.app.exit();
-
-                    }
-                }
-            }
-
-            LummModule moduleWithDependencies = itemsToProcess.get(index).value;
-            List<Class<? extends LummModule>> dependencies = moduleWithDependencies.getDependencies();
-            if (dependencies == null) {
-                moduleWithDependencies.onCreateInternal();
-                itemsToProcess.remove(index);
-                continue;
-            }
-
-            boolean allDependenciesGood = true;
-            for (int i = 0; i < dependencies.size(); i++) {
-                LummModule dependency = modules.get(dependencies.get(i));
-
-                if (dependency == null) {
-                    NullPointerException e = new NullPointerException();
-                    Lumm.debug.logError(
-                            "LummModule" + moduleWithDependencies + " has dependency class "
-                                    + dependencies.get(i).getName()
-                                    + " which was not added to the LummConfiguration. Use LummConfiguration.addModule(LummModule) to add the dependency.",
-                            e);
-                    Gdx.app.exit();
-                } else {
-                    if (!dependency.isInitialized())
-                        allDependenciesGood = false;
-                }
-            }
-
-            if (allDependenciesGood) {
-                moduleWithDependencies.onCreateInternal();
-                itemsToProcess.remove(index);
-                continue;
-            }
-
-            index++;
-
-        }
+        // modules that don't depend on each other are created in parallel if
+        // they allow it
+        getModuleScheduler().create();
 
         setScene(targetScene);
     }
@@ -285,22 +257,71 @@ public class Lumm extends Game {
      * modules( default and custom) as well as calling
      * {@link LummScene#render(float)} from the parent class implementation of
      * {@link Game#render()}.
+     * <p>
+     * If {@link #isMultiThreaded()} is true, the state of the last update pass
+     * is buffered using {@link LummScene#onSyncInternal()}, after which the
+     * next update pass runs on {@link #updateThread} while the buffered state
+     * is rendered. Otherwise, updating, buffering and rendering run one after
+     * another on the rendering thread.
      */
     @Override
     public void render() {
 
+        if (configuration.headless) {
+            long time = System.nanoTime();
+            render(lastFrameTime == 0 ? 0 : (time - lastFrameTime) / 1000000000f);
+            lastFrameTime = time;
+        } else {
+            render(Gdx.graphics.getRawDeltaTime());
+        }
+    }
+
+    /**
+     * Runs a frame as described in {@link #render()}, using the given time as
+     * the time elapsed since the last frame. Called by {@link HeadlessLoop}
+     * for running frames at a fixed rate.
+     *
+     * @param delta
+     *            time elapsed since the last frame, in seconds
+     */
+    final void render(float delta) {
+
         try {
 
+            rawDeltaTime = delta;
+
             if (getScene() != targetScene)
                 handleSceneTrasition();
-
-            updateThread.run();
-            super.render();
+            else
+                updatePreload();
+
+            if (isMultiThreaded()) {
+                getScene().onSyncInternal();
+                updateThread.startUpdate();
+                try {
+                    renderScene();
+                } finally {
+                    updateThread.waitForUpdate();
+                }
+            } else {
+                updateThread.update();
+                getScene().onSyncInternal();
+                renderScene();
+            }
         } catch (Exception e) {
             Lumm.net.logThrowable(e);
         }
     }
 
+    private void renderScene() {
+
+        // Game.render reads the delta time from Gdx.graphics
+        if (configuration.headless)
+            getScene().render(rawDeltaTime);
+        else
+            super.render();
+    }
+
     /**
      * Disposes all currently-loaded assets. Is called when the program is
      * exited.
@@ -310,6 +331,9 @@ public class Lumm extends Game {
         Lumm.debug.log("Called  Lumm.dispose", null);
         try {
 
+            updateThread.finish();
+            Lumm.disposed = true;
+
             for (Entry<Class<? extends LummModule>, LummModule> entry : modules) {
                 if (entry.value.onDisposeListener != null)
                     entry.value.onDisposeListener.onDispose(entry.value);
@@ -317,6 +341,13 @@ public class Lumm extends Game {
             LummScene currScene = getScene();
             currScene.dispose();
 
+            for (int i = 0; i < scenesToDispose.size(); i++) {
+                scenesToDispose.get(i).dispose();
+            }
+            scenesToDispose.clear();
+            if (preloadedScene != null && preloadedScene.created)
+                preloadedScene.dispose();
+
         } catch (Exception e) {
             Lumm.net.logThrowable(e);
             e.printStackTrace();
@@ -344,7 +375,7 @@ public class Lumm extends Game {
 
             if (instance.getScreen() == null) {
                 setSceneInternal(scene);
-                instance.updateThread.run();
+                instance.updateThread.update();
             } else {
                 instance.targetScene = (LummScene) scene;
 
@@ -361,10 +392,151 @@ public class Lumm extends Game {
 
     private static void setSceneInternal(LummScene scene) {
 
-        scene.onCreateSceneLayersInternal();
-        instance.setScreen(scene);
-        scene.onCreate(scene.runParameters);
+        if (instance.preloadedScene == scene)
+            instance.preloadedScene = null;
+
+        // preloaded scenes are already created, only swapping them in
+        boolean create = !scene.created;
+        if (create) {
+            scene.created = true;
+            scene.onCreateSceneLayersInternal();
+        }
+        if (instance.configuration.headless) {
+            // Game.setScreen resizes the scene using Gdx.graphics
+            if (instance.screen != null)
+                instance.screen.hide();
+            instance.screen = scene;
+            scene.show();
+        } else {
+            instance.setScreen(scene);
+        }
+        if (create)
+            scene.onCreate(scene.runParameters);
+
+    }
+
+    /**
+     * Prepares a scene in the background so a later call to
+     * {@link #setScene(LummScene)} with it doesn't have to wait for it to be
+     * created.
+     * <p>
+     * {@link LummScene#onPreload(Object[])} is called on a separate thread, in
+     * which the scene can queue its assets using
+     * {@link Assets#load(String, Class)} and prepare data that doesn't need
+     * OpenGL. The assets then load a bit every frame while the current scene
+     * keeps running, after which the scene layers are made and
+     * {@link LummScene#onCreate(Object[])} is called on the rendering thread.
+     * <p>
+     * Only one scene is preloaded at a time, preloading another one disposing
+     * the previous one if it was not set as the current scene.
+     *
+     * @param scene
+     *            the scene to preload
+     * @see #getPreloadProgress()
+     */
+    public static void preloadScene(final LummScene scene) {
+
+        if (scene == null)
+            throw new NullPointerException("Lumm.preloadScene parameter 'scene' of type LummScene is null");
+
+        if (scene == instance.preloadedScene || scene == getScene() || scene.created)
+            return;
+
+        // disposed on the rendering thread, as it might have made layers
+        if (instance.preloadedScene != null && instance.preloadedScene != instance.targetScene)
+            instance.scenesToDispose.add(instance.preloadedScene);
+        instance.preloadedScene = scene;
+
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                try {
+                    scene.onPreload(scene.runParameters);
+                } catch (Exception e) {
+                    Lumm.net.logThrowable(e);
+                    Lumm.debug.logError("Preloading scene " + scene.getClass().getName(), e);
+                } finally {
+                    scene.preloaded = true;
+                }
+            }
+        }, "Lumm scene preload");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns how far the scene passed to {@link #preloadScene(LummScene)} is
+     * from being ready.
+     *
+     * @return 1 if the scene was created, the progress of loading assets if
+     *         {@link LummScene#onPreload(Object[])} finished, 0 otherwise or
+     *         if no scene is being preloaded
+     */
+    public static float getPreloadProgress() {
+
+        LummScene scene = instance.preloadedScene;
+        if (scene == null || !scene.preloaded)
+            return 0;
+        if (scene.created)
+            return 1;
+        return Math.min(assets.getProgress(), 0.99f);
+    }
+
+    /**
+     * Returns whether a scene is created and can be set as the current scene
+     * without delay.
+     *
+     * @param scene
+     *            the scene passed to {@link #preloadScene(LummScene)}
+     * @return whether the scene finished preloading
+     */
+    public static boolean isScenePreloaded(LummScene scene) {
+
+        return scene != null && scene == instance.preloadedScene && scene.created;
+    }
+
+    /**
+     * Returns the scene that objects created without passing a scene to their
+     * constructor are added to. Is the current scene, unless a preloaded
+     * scene's {@link LummScene#onCreate(Object[])} is running.
+     *
+     * @return the scene to add new objects to
+     */
+    public static LummScene getCreationScene() {
 
+        LummScene scene = creationScene;
+        return scene != null ? scene : getScene();
+    }
+
+    /**
+     * Disposes scenes that are no longer needed and creates the preloaded
+     * scene once its assets are loaded. Called every frame from
+     * {@link #render(float)} while the update thread is idle.
+     */
+    private void updatePreload() {
+
+        for (int i = 0; i < scenesToDispose.size(); i++) {
+            scenesToDispose.get(i).dispose();
+        }
+        scenesToDispose.clear();
+
+        LummScene scene = preloadedScene;
+        if (scene == null || scene.created || !scene.preloaded || assets.getProgress() != 1)
+            return;
+
+        scene.created = true;
+        creationScene = scene;
+        try {
+            scene.onCreateSceneLayersInternal();
+            scene.onCreate(scene.runParameters);
+        } catch (Exception e) {
+            Lumm.net.logThrowable(e);
+            Lumm.debug.logError("Creating preloaded scene " + scene.getClass().getName(), e);
+        } finally {
+            creationScene = null;
+        }
     }
 
     /**
@@ -389,6 +561,72 @@ public class Lumm extends Game {
         return instance.inBackground;
     }
 
+    /**
+     * Returns whether the update pass runs on a separate thread in parallel
+     * with rendering. Is set using the {@link AppData.Settings#MULTI_THREADED}
+     * graphic setting, and is read every frame.
+     * <p>
+     * When multi-threaded, {@link LummObject#onUpdate()} and
+     * {@link LummComponent#onUpdate()} must not make OpenGL calls, use
+     * {@link LummObject#runOnGameThread(AbstractEvent)} for that instead.
+     * Rendering code should read positions using {@link Position#getRenderX()}
+     * and similar methods.
+     *
+     * @return whether the update thread runs in parallel with rendering
+     */
+    public static boolean isMultiThreaded() {
+
+        return Boolean.TRUE.equals(Lumm.data.getSettings(AppData.Settings.MULTI_THREADED));
+    }
+
+    /**
+     * Returns whether parallel-safe components are updated in parallel. Is set
+     * using {@link LummConfiguration#parallelComponentUpdate}.
+     *
+     * @return whether components can be updated in parallel
+     * @see LummComponent#isParallelSafe()
+     */
+    public static boolean isParallelComponentUpdate() {
+
+        return instance.configuration.parallelComponentUpdate;
+    }
+
+    /**
+     * Returns the queue of events posted using
+     * {@link LummObject#runOnGameThread(AbstractEvent)}, for changing its time
+     * budget or reading its depth and latency.
+     *
+     * @return the game thread event queue
+     */
+    public static GameThreadQueue getGameThreadQueue() {
+
+        return gameThreadQueue;
+    }
+
+    /**
+     * Returns whether the application runs without an OpenGL context. Is set
+     * using {@link LummConfiguration#headless}.
+     *
+     * @return whether the application is headless
+     */
+    public static boolean isHeadless() {
+
+        return instance.configuration.headless;
+    }
+
+    /**
+     * Returns the time elapsed since the last frame, without fixed time step
+     * or scaling applied. Is the value of
+     * {@link com.badlogic.gdx.Graphics#getRawDeltaTime()}, unless running in
+     * headless mode.
+     *
+     * @return the raw delta time of the current frame, in seconds
+     */
+    public static float getRawDeltaTime() {
+
+        return rawDeltaTime;
+    }
+
     public static boolean isPaused() {
         return instance.paused;
     }
@@ -480,10 +718,18 @@ public class Lumm extends Game {
                     + " is already in the list of modules");
 
         modules.put(module.getClass(), module);
+        moduleScheduler = null;
         return Lumm.class;
 
     }
 
+    static ModuleScheduler getModuleScheduler() {
+
+        if (moduleScheduler == null)
+            moduleScheduler = new ModuleScheduler(modules);
+        return moduleScheduler;
+    }
+
     /**
      * Returns a custom module, retrieved by passing the class we want the
      * Module we want to retrieve has.
@@ -563,8 +809,10 @@ public class Lumm extends Game {
             }
         }
         Lumm.setSceneInternal(targetScene);
+
+        // disposed in the next frame, keeping the switch itself short
         if (currScene != null)
-            currScene.dispose();
+            scenesToDispose.add(currScene);
     }
 
     public static void handleException(Exception e) {
@@ -573,7 +821,10 @@ public class Lumm extends Game {
     }
 
     public static void exit() {
-        Gdx.app.exit();
+        if (instance.headlessLoop != null)
+            instance.headlessLoop.stop();
+        else
+            Gdx.app.exit();
     }
 
     // endregion methods
@@ -20,7 +20,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
+import dk.sidereal.lumm.architecture.core.Time;
 import dk.sidereal.lumm.architecture.listeners.OnDisposeListener;
 import dk.sidereal.lumm.architecture.listeners.OnEnableListener;
 import dk.sidereal.lumm.architecture.listeners.OnPauseListener;
@@ -50,10 +52,10 @@ public abstract class LummComponent implements IEnableable {
     private static HashMap<Class<? extends LummComponent>, Float> defaultUpdateFrequencies = new HashMap<Class<? extends LummComponent>, Float>();
 
     /**
-     * Timestamp of last time the update function has been called in the current
-     * instance of the behavior.
+     * Entry in {@link Lumm#updateWheel}, marked as due when the time set in
+     * {@link #setUpdateFrequency(float)} has passed since the last update.
      */
-    private long lastUpdateTimestamp;
+    final UpdateWheel.Entry updateEntry;
 
     /**
      * Frequency of update calls. If set to 0, will be called every time the
@@ -62,6 +64,12 @@ public abstract class LummComponent implements IEnableable {
      */
     private float updateFrequency;
 
+    /** Value of {@link Time#getScaledTimeInGame()} in the last update, -1 before the first one. */
+    private double lastUpdateTime;
+
+    /** Time between the last two updates of the component, returned by {@link #getUpdateDeltaTime()}. */
+    private float updateDeltaTime;
+
     /**
      * The value used for sorting the priority . 0 by default . 1 would be
      * executed later.
@@ -76,25 +84,51 @@ public abstract class LummComponent implements IEnableable {
      */
     private boolean enabled;
 
+    /**
+     * Whether the component was enabled as of the last completed update pass,
+     * used when rendering. Updated in {@link #syncRenderStateInternal()}.
+     */
+    private boolean renderEnabled;
+
     /**
      * The object that the behavior is attached to. Assigned in the constructor.
      */
     public final LummObject object;
 
+    /**
+     * Index of the component in its {@link ComponentRegistry} list, or -1 if
+     * not registered.
+     */
+    int registryIndex;
+
+    /**
+     * Whether the component is skipped by the update pass until woken. Set in
+     * {@link #sleep()} and cleared in {@link #wake()}.
+     */
+    volatile boolean sleeping;
+
+    /** Entry in {@link Lumm#updateWheel} used for waking the component in {@link #sleep(float)}. */
+    final UpdateWheel.Entry wakeEntry;
+
     // endregion
 
     // region constructors
 
     public LummComponent(LummObject obj) {
 
+        this.updateEntry = new UpdateWheel.Entry();
+        this.wakeEntry = new UpdateWheel.Entry(this);
+        this.lastUpdateTime = -1;
+        this.object = obj;
         if (defaultUpdateFrequencies.containsKey(getClass()))
             setUpdateFrequency(defaultUpdateFrequencies.get(getClass()));
         else
             setUpdateFrequency(0);
 
-        this.object = obj;
         obj.components.add(this);
         Collections.sort(obj.components, LummObject.behaviorsComparator);
+        this.registryIndex = -1;
+        obj.onComponentAdded(this);
 
         initialiseClass();
 
@@ -119,12 +153,16 @@ public abstract class LummComponent implements IEnableable {
 
         try {
 
-            if (updateFrequency == -1)
+            float frequency = object.getScheduledFrequency(updateFrequency);
+            if (frequency == -1)
                 return;
 
-            if (updateFrequency == 0 || System.currentTimeMillis() - lastUpdateTimestamp > updateFrequency) {
+            if (frequency == 0 || updateEntry.due) {
 
-                lastUpdateTimestamp = System.currentTimeMillis();
+                updateEntry.due = false;
+                double time = Lumm.time.getScaledTimeInGame();
+                updateDeltaTime = lastUpdateTime == -1 ? Lumm.time.getDeltaTime() : (float) (time - lastUpdateTime);
+                lastUpdateTime = time;
 
                 try {
                     if (enabled && object.isEnabled()) {
@@ -146,7 +184,7 @@ public abstract class LummComponent implements IEnableable {
     final void onRenderInternal() {
 
         try {
-            if (enabled && object.isEnabled()) {
+            if (renderEnabled) {
                 onRender();
             }
         } catch (Exception e) {
@@ -155,6 +193,123 @@ public abstract class LummComponent implements IEnableable {
         }
     }
 
+    final void onResetInternal() {
+
+        this.enabled = true;
+        this.lastUpdateTime = -1;
+        Lumm.updateWheel.schedule(updateEntry, object.getScheduledFrequency(updateFrequency));
+
+        try {
+            onReset();
+        } catch (Exception e) {
+            Lumm.debug.logError(getClass().getName() + "(onReset), type: " + object.getType() + ", name:"
+                    + object.getName(), e);
+        }
+    }
+
+    final void onRecycleInternal() {
+
+        Lumm.updateWheel.cancel(updateEntry);
+        updateEntry.due = false;
+        Lumm.updateWheel.cancel(wakeEntry);
+        sleeping = false;
+
+        try {
+            onRecycle();
+        } catch (Exception e) {
+            Lumm.debug.logError(getClass().getName() + "(onRecycle), type: " + object.getType() + ", name:"
+                    + object.getName(), e);
+        }
+    }
+
+    final void syncRenderStateInternal() {
+
+        renderEnabled = enabled && object.isEnabled();
+
+        try {
+            onSyncRenderState();
+        } catch (Exception e) {
+            Lumm.net.logThrowable(e);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Method to be optionally overriden. Called every frame after the update
+     * pass is done and before rendering, while the update thread is idle.
+     * <p>
+     * If {@link Lumm#isMultiThreaded()} is true, {@link #onRender()} runs in
+     * parallel with the next {@link #onUpdate()}, so state changed in
+     * {@link #onUpdate()} and read in {@link #onRender()} should be copied
+     * here.
+     */
+    protected void onSyncRenderState() {
+
+    }
+
+    /**
+     * Method to be optionally overriden. Whether instances of this component
+     * type can be updated in parallel with each other, which is done if
+     * {@link LummConfiguration#parallelComponentUpdate} is set. False by
+     * default.
+     * <p>
+     * Parallel-safe components are updated after all objects and other
+     * components, and {@link #onUpdate()} may only change state of the
+     * component itself, or state declared in {@link #getWriteDependencies()}.
+     * Is read once per type, the first time an instance is updated.
+     *
+     * @return whether the component's update can run in parallel
+     */
+    protected boolean isParallelSafe() {
+        return false;
+    }
+
+    /**
+     * Method to be optionally overriden. Returns the classes of the state read
+     * in {@link #onUpdate()}, such as other component types or
+     * {@link dk.sidereal.lumm.architecture.pos.Position}. Parallel-safe types
+     * writing to one of them are not updated at the same time as this type.
+     *
+     * @return the classes read in the update, or null
+     */
+    protected List<Class<?>> getReadDependencies() {
+        return null;
+    }
+
+    /**
+     * Method to be optionally overriden. Returns the classes of the state
+     * written in {@link #onUpdate()}, other than the component itself.
+     * Parallel-safe types reading or writing one of them are not updated at
+     * the same time as this type.
+     *
+     * @return the classes written in the update, or null
+     */
+    protected List<Class<?>> getWriteDependencies() {
+        return null;
+    }
+
+    /**
+     * Method to be optionally overriden. Called when the object of the
+     * component was created using {@link LummScene#obtain(Class, Object...)}
+     * and is taken out of the pool again, before
+     * {@link LummObject#onReset(Object...)}. Should set the component back to
+     * its state after creation.
+     */
+    protected void onReset() {
+
+    }
+
+    /**
+     * Method to be optionally overriden. Called when the object of the
+     * component is removed from the scene and put in the pool of
+     * {@link LummScene#obtain(Class, Object...)}. Should release state kept
+     * outside of the component, such as entries in spatial indices, which
+     * would otherwise keep the pooled object reachable by other objects.
+     */
+    protected void onRecycle() {
+
+    }
+
     /**
      * Method to be optionally overriden. It is called the first time a behavior
      * of a particular type is created. Called in
@@ -184,7 +339,9 @@ public abstract class LummComponent implements IEnableable {
      * once every frame)
      * <p>
      * If you do not want a behavior's update to run, pass -1 as parameter, and
-     * if you want it to run every frame, pass 0 as a parameter
+     * if you want it to run every frame, pass 0 as a parameter. The first
+     * update after changing the frequency is delayed by up to one period, so
+     * instances with the same frequency don't all update in the same frame.
      *
      * @param milliseconds
      */
@@ -197,6 +354,77 @@ public abstract class LummComponent implements IEnableable {
         }
 
         this.updateFrequency = milliseconds;
+        Lumm.updateWheel.schedule(updateEntry, object.getScheduledFrequency(milliseconds));
+    }
+
+    public float getUpdateFrequency() {
+        return updateFrequency;
+    }
+
+    /**
+     * Returns the time since the previous update of the component, affected
+     * by the time scale. Is the same as {@link Time#getDeltaTime()} for
+     * components updated every pass, and longer for components with an update
+     * frequency or throttled by the update LOD of their object's scene layer.
+     *
+     * @return the time since the last update, in seconds
+     */
+    public float getUpdateDeltaTime() {
+        return updateDeltaTime;
+    }
+
+    /** Reschedules the component after its object changed update LOD band. */
+    final void onUpdateLodChanged() {
+
+        Lumm.updateWheel.schedule(updateEntry, object.getScheduledFrequency(updateFrequency));
+    }
+
+    /**
+     * Puts the component to sleep, skipping it in the update pass until it is
+     * woken using {@link #wake()}. Unlike {@link #setEnabled(boolean)}, the
+     * component is still rendered. Putting the whole object to sleep using
+     * {@link LummObject#sleep()} also skips its components.
+     */
+    public final void sleep() {
+
+        Lumm.updateWheel.cancel(wakeEntry);
+        sleeping = true;
+    }
+
+    /**
+     * Puts the component to sleep using {@link #sleep()}, waking it after the
+     * given time unless it is woken before.
+     *
+     * @param milliseconds
+     *            the time after which to wake the component
+     */
+    public final void sleep(float milliseconds) {
+
+        if (milliseconds <= 0) {
+            Lumm.debug.logDebug("Trying to put component of class " + getClass().getName() + " to sleep for "
+                    + milliseconds + " milliseconds", null);
+            return;
+        }
+
+        sleep();
+        Lumm.updateWheel.scheduleOnce(wakeEntry, milliseconds);
+    }
+
+    /**
+     * Wakes the component if it is sleeping. Can be called from any thread.
+     */
+    public final void wake() {
+
+        if (!sleeping)
+            return;
+
+        Lumm.updateWheel.cancel(wakeEntry);
+        sleeping = false;
+    }
+
+    public final boolean isSleeping() {
+
+        return sleeping;
     }
 
     /**
@@ -26,6 +26,7 @@ import com.badlogic.gdx.utils.ObjectMap;
 import dk.sidereal.lumm.architecture.core.Assets;
 import dk.sidereal.lumm.architecture.core.Debug;
 import dk.sidereal.lumm.architecture.core.Net;
+import dk.sidereal.lumm.architecture.core.Time;
 import dk.sidereal.lumm.architecture.core.Debug.Log;
 import dk.sidereal.lumm.util.LummException;
 
@@ -131,6 +132,51 @@ public class LummConfiguration {
      */
     public boolean useLNetOnFinishLogListener;
 
+    /**
+     * Duration of a fixed update step, in seconds. If set to a value higher
+     * than 0, the update pass runs at a fixed rate independent of the frame
+     * rate, and rendered positions are interpolated between steps. Is 0 by
+     * default, updating once per rendered frame.
+     *
+     * @see Time#setFixedTimeStep(float)
+     */
+    public float fixedTimeStep;
+
+    /**
+     * Maximum number of fixed update steps to run in a single frame when
+     * {@link #fixedTimeStep} is set. Is 5 by default.
+     *
+     * @see Time#setMaxFixedStepsPerFrame(int)
+     */
+    public int maxFixedStepsPerFrame;
+
+    /**
+     * Whether to update components that return true in
+     * {@link LummComponent#isParallelSafe()} in parallel, across all available
+     * cores. Is false by default.
+     */
+    public boolean parallelComponentUpdate;
+
+    /**
+     * Maximum time in milliseconds to spend each frame running events posted
+     * using {@link LummObject#runOnGameThread(AbstractEvent)}, the rest being
+     * run in the next frames. Is 0 by default, running all events every frame.
+     *
+     * @see GameThreadQueue#setTimeBudget(float)
+     */
+    public float gameThreadEventBudget;
+
+    /**
+     * Whether to run without an OpenGL context, such as on a dedicated server
+     * or when benchmarking on a machine without a GPU. Scene layers don't
+     * create a {@link com.badlogic.gdx.graphics.g2d.SpriteBatch} or a
+     * {@link com.badlogic.gdx.graphics.glutils.ShapeRenderer}, and scenes are
+     * updated and synced every frame but not drawn. Is false by default.
+     *
+     * @see HeadlessLoop
+     */
+    public boolean headless;
+
     // endregion fields
 
     // region constructors
@@ -146,6 +192,11 @@ public class LummConfiguration {
         modules = new ArrayList<Class<? extends LummModule>>();
         runInBackground = false;
         startDebugLogOnStartup = false;
+        fixedTimeStep = 0;
+        maxFixedStepsPerFrame = 5;
+        parallelComponentUpdate = false;
+        gameThreadEventBudget = 0;
+        headless = false;
 
     }
 
@@ -44,10 +44,10 @@ public abstract class LummModule implements IEnableable {
     private boolean enabled;
 
     /**
-     * Timestamp of last time the update function has been called in the current
-     * instance of the behavior.
+     * Entry in {@link Lumm#updateWheel}, marked as due when the time set in
+     * {@link #setUpdateFrequency(float)} has passed since the last update.
      */
-    private long lastUpdateTimestamp;
+    final UpdateWheel.Entry updateEntry;
 
     /**
      * Frequency of update calls. If set to 0, will be called every time the
@@ -62,6 +62,7 @@ public abstract class LummModule implements IEnableable {
      * @param updateFrequency
      */
     public LummModule(LummConfiguration config) {
+        this.updateEntry = new UpdateWheel.Entry();
         this.updateFrequency = 0;
     }
 
@@ -85,6 +86,22 @@ public abstract class LummModule implements IEnableable {
      */
     public abstract List<Class<? extends LummModule>> getDependencies();
 
+    /**
+     * Method to be optionally overriden. Whether {@link #onCreate()} and
+     * {@link #onUpdate()} can run on a worker thread, at the same time as
+     * other modules that don't depend on this one and vice versa. False by
+     * default, running them on the thread creating and updating modules.
+     * <p>
+     * Modules making OpenGL calls or changing state that other modules read
+     * without declaring it in {@link #getDependencies()} must not be
+     * parallel-safe. Is read once, when the module schedule is built.
+     *
+     * @return whether the module can be created and updated in parallel
+     */
+    protected boolean isParallelSafe() {
+        return false;
+    }
+
     /**
      * Method called after {@link Gdx} is initialized. The constructor should
      * only be used for setting parameters.
@@ -105,9 +122,9 @@ public abstract class LummModule implements IEnableable {
             if (updateFrequency == -1)
                 return;
 
-            if (updateFrequency == 0 || System.currentTimeMillis() - lastUpdateTimestamp > updateFrequency) {
+            if (updateFrequency == 0 || updateEntry.due) {
 
-                lastUpdateTimestamp = System.currentTimeMillis();
+                updateEntry.due = false;
                 onUpdate();
             }
         } catch (Exception e) {
@@ -120,7 +137,9 @@ public abstract class LummModule implements IEnableable {
      * once every frame)
      * <p>
      * If you do not want a behavior's update to run, pass -1 as parameter, and
-     * if you want it to run every frame, pass 0 as a parameter
+     * if you want it to run every frame, pass 0 as a parameter. The first
+     * update after changing the frequency is delayed by up to one period, so
+     * instances with the same frequency don't all update in the same frame.
      *
      * @param milliseconds
      */
@@ -133,6 +152,7 @@ public abstract class LummModule implements IEnableable {
         }
 
         this.updateFrequency = milliseconds;
+        Lumm.updateWheel.schedule(updateEntry, milliseconds);
 
     }
 
@@ -16,14 +16,15 @@
 
 package dk.sidereal.lumm.architecture;
 
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.badlogic.gdx.Net;
 import com.badlogic.gdx.math.Vector2;
+import dk.sidereal.lumm.architecture.core.Time;
 import dk.sidereal.lumm.architecture.listeners.OnDisposeListener;
 import dk.sidereal.lumm.architecture.listeners.OnEnableListener;
 import dk.sidereal.lumm.architecture.listeners.OnParentDisposeListener;
@@ -88,10 +89,10 @@ public abstract class LummObject implements IEnableable {
     private static HashMap<Class<? extends LummComponent>, Float> defaultUpdateFrequencies = new HashMap<Class<? extends LummComponent>, Float>();
 
     /**
-     * Timestamp of last time the update function has been called in the current
-     * instance of the behavior.
+     * Entry in {@link Lumm#updateWheel}, marked as due when the time set in
+     * {@link #setUpdateFrequency(float)} has passed since the last update.
      */
-    private long lastUpdateTimestamp;
+    final UpdateWheel.Entry updateEntry;
 
     /**
      * Frequency of update calls. If set to 0, will be called every time the
@@ -100,6 +101,27 @@ public abstract class LummObject implements IEnableable {
      */
     private float updateFrequency;
 
+    /**
+     * Update LOD band the object is in, set by its scene layer in
+     * {@link LummSceneLayer#applyUpdateLod(LummObject)}.
+     */
+    private int updateLodBand;
+
+    /**
+     * Frequency of the {@link #updateLodBand}, limiting the update frequency
+     * of the object and its components. 0 if not limited, -1 if not updated.
+     */
+    float updateLodFrequency;
+
+    /** Whether the object can be updated less often based on its distance from the camera. */
+    private boolean updateLodEnabled;
+
+    /** Value of {@link Time#getScaledTimeInGame()} in the last update, -1 before the first one. */
+    private double lastUpdateTime;
+
+    /** Time between the last two updates of the object, returned by {@link #getUpdateDeltaTime()}. */
+    private float updateDeltaTime;
+
     /**
      * Whether or not the object is persistent through scenes, automatically
      * being added to the new scene.
@@ -118,6 +140,45 @@ public abstract class LummObject implements IEnableable {
      */
     boolean inScene;
 
+    /**
+     * Whether the object was created using {@link LummScene#obtain(Class, Object...)},
+     * being put back in the scene's pool when removed instead of being
+     * disposed.
+     */
+    boolean pooled;
+
+    /** Whether the object is currently waiting in its scene's pool. */
+    boolean inPool;
+
+    /**
+     * Number of times the object was removed from the scene or disposed.
+     * Events posted using {@link #runOnGameThread(AbstractEvent)} before a
+     * removal are skipped, while the ones posted before the object is first
+     * added still run.
+     */
+    volatile int removalCount;
+
+    /**
+     * Whether the object is skipped by the update pass until woken. Set in
+     * {@link #sleep()} and cleared in {@link #wake()}.
+     */
+    volatile boolean sleeping;
+
+    /** Index of the object in {@link LummSceneLayer#awakeObjects}, or -1 if not in it. */
+    int awakeIndex;
+
+    /** Index of the object in the type list of {@link ObjectRegistry}, or -1 if not in it. */
+    int typeIndex = -1;
+
+    /** Index of the object in the name list of {@link ObjectRegistry}, or -1 if not in it. */
+    int nameIndex = -1;
+
+    /** Whether the object is in {@link LummSceneLayer#objects} of its scene layer. */
+    boolean inSceneLayer;
+
+    /** Entry in {@link Lumm#updateWheel} used for waking the object in {@link #sleep(float)}. */
+    final UpdateWheel.Entry wakeEntry;
+
     /**
      * The variable is true from after adding to the scene until we planned on
      * removing it. Can be manually set to true or false in
@@ -163,6 +224,19 @@ public abstract class LummObject implements IEnableable {
      */
     private String type;
 
+    /** Source of {@link #handle} values, never reused. */
+    private static final AtomicInteger nextHandle = new AtomicInteger();
+
+    /**
+     * Unique handle of the object, assigned in the constructor and kept for
+     * the object's lifetime, including when reused from a pool or passed to
+     * another scene.
+     */
+    private final int handle;
+
+    /** Tags of the object, null if it has none. */
+    private ArrayList<String> tags;
+
     /** The scene that the object is currently in */
     private LummScene scene;
 
@@ -172,6 +246,36 @@ public abstract class LummObject implements IEnableable {
      */
     final List<LummComponent> components;
 
+    /**
+     * The first component of each class in {@link #components}, used in
+     * {@link #getComponent(Class)}.
+     */
+    private final HashMap<Class<? extends LummComponent>, LummComponent> componentsByClass;
+
+    /**
+     * Copy of {@link #components} iterated over when rendering. Updated in
+     * {@link #syncRenderStateInternal()} if {@link #componentsChanged} is true.
+     */
+    private LummComponent[] renderComponents;
+
+    /**
+     * Whether {@link #components} changed since {@link #renderComponents} was
+     * last updated.
+     */
+    boolean componentsChanged;
+
+    /**
+     * Value of {@link #isEnabled()} as of the last completed update pass, used
+     * when rendering. Updated in {@link #syncRenderStateInternal()}.
+     */
+    private boolean renderEnabled;
+
+    /**
+     * Index of the object in the render order of its {@link LummSceneLayer} as
+     * of the last sync. Set in {@link LummSceneLayer#syncRenderState()}.
+     */
+    int renderIndex;
+
     /**
      * Comparator used for sorting the behaviors, set based on priority by
      * default;
@@ -186,9 +290,6 @@ public abstract class LummObject implements IEnableable {
 
     };
 
-    /** Queue of events to run in the main game thread. */
-    private final List<AbstractEvent> gameThreadEvents;
-
     /**
      * Object that represents the object's position. Assigned in
      * {@link LummObject#LummObject(LummScene, Object...)}.
@@ -200,11 +301,11 @@ public abstract class LummObject implements IEnableable {
     // region constructors
 
     public LummObject() {
-        this(Lumm.getScene(), (Object[]) null);
+        this(Lumm.getCreationScene(), (Object[]) null);
     }
 
     public LummObject(Object... params) {
-        this(Lumm.getScene(), params);
+        this(Lumm.getCreationScene(), params);
     }
 
     /**
@@ -216,6 +317,12 @@ public abstract class LummObject implements IEnableable {
      */
     public LummObject(LummScene scene, Object... params) {
 
+        this.updateEntry = new UpdateWheel.Entry();
+        this.wakeEntry = new UpdateWheel.Entry(this);
+        this.awakeIndex = -1;
+        this.updateLodEnabled = true;
+        this.lastUpdateTime = -1;
+        this.handle = nextHandle.incrementAndGet();
         if (defaultUpdateFrequencies.containsKey(getClass()))
             setUpdateFrequency(defaultUpdateFrequencies.get(getClass()));
         else
@@ -223,12 +330,13 @@ public abstract class LummObject implements IEnableable {
 
         this.isPersistent = false;
         this.components = new ArrayList<LummComponent>();
-        this.gameThreadEvents = new ArrayList<AbstractEvent>();
+        this.componentsByClass = new HashMap<Class<? extends LummComponent>, LummComponent>();
+        this.renderComponents = new LummComponent[0];
         this.children = new ArrayList<LummObject>();
         this.scene = scene;
         this.position = new Position(this);
         this.type = (getClass().getSimpleName());
-        this.name = (this.getType() + " " + System.nanoTime());
+        this.name = (this.getType() + " " + handle);
         this.enabled = true;
         this.isEnabledInHierarchy = true;
 
@@ -263,6 +371,8 @@ public abstract class LummObject implements IEnableable {
      */
     final void onDisposeInternal() {
 
+        removalCount++;
+
         // removes itself from the parent's list of children if the object has
         // parents
         if (parent != null) {
@@ -281,6 +391,12 @@ public abstract class LummObject implements IEnableable {
             }
         }
 
+        Lumm.updateWheel.cancel(updateEntry);
+        Lumm.updateWheel.cancel(wakeEntry);
+
+        if (scene != null && scene.entityStore != null)
+            scene.entityStore.destroy(this);
+
         // calls the same method in all of the chilldren
         if (onDisposeListener != null)
             onDisposeListener.onDispose(this);
@@ -294,13 +410,86 @@ public abstract class LummObject implements IEnableable {
                 // children
                 if (components.get(i).onDisposeListener != null)
                     components.get(i).onDisposeListener.onDispose(components.get(i));
-                new WeakReference<LummComponent>(components.get(i));
+                Lumm.updateWheel.cancel(components.get(i).updateEntry);
+                Lumm.updateWheel.cancel(components.get(i).wakeEntry);
+                if (scene != null)
+                    scene.componentRegistry.unregister(components.get(i));
             }
             components.clear();
+            componentsByClass.clear();
+            componentsChanged = true;
+        }
+
+    }
+
+    /**
+     * Takes the object out of the scene when it is removed and put in the
+     * scene's pool. Children are removed from the scene, the object and its
+     * components are no longer updated, {@link LummComponent#onRecycle()} is
+     * called in each component and the object's entity is destroyed.
+     */
+    final void onRecycleInternal() {
+
+        setParent(null);
+
+        for (int i = children.size() - 1; i >= 0; i--) {
+            LummObject child = children.get(i);
+            child.setParent(null);
+            scene.removeobject(child);
+        }
+
+        Lumm.updateWheel.cancel(updateEntry);
+        updateEntry.due = false;
+        Lumm.updateWheel.cancel(wakeEntry);
+        sleeping = false;
+        updateLodBand = LummSceneLayer.UPDATE_LOD_FULL;
+        updateLodFrequency = 0;
+        lastUpdateTime = -1;
+
+        for (int i = 0; i < components.size(); i++) {
+            components.get(i).onRecycleInternal();
+            scene.componentRegistry.unregister(components.get(i));
         }
 
-        new WeakReference<LummObject>(this);
+        // data systems don't process pooled objects, the entity is created
+        // again by the data components when the object is reused
+        if (scene.entityStore != null)
+            scene.entityStore.destroy(this);
+    }
+
+    /**
+     * Puts a pooled object back in the scene, calling {@link #onReset(Object...)}
+     * instead of {@link #onCreate(Object...)}.
+     */
+    final void onReuseInternal(Object... params) {
+
+        // the object is registered again by scene.addObject, under the name,
+        // type and tags it has after onReset instead of the ones it was pooled with
+        scene.objectRegistry.remove(this);
+        this.type = getClass().getSimpleName();
+        this.name = type + " " + handle;
+        if (tags != null)
+            tags.clear();
+
+        this.enabled = true;
+        this.isEnabledInHierarchy = true;
+        this.componentsChanged = true;
+        position.reset();
+        setSceneLayer(scene.defaultBatch.name);
+        Lumm.updateWheel.schedule(updateEntry, updateFrequency);
+
+        for (int i = 0; i < components.size(); i++) {
+            scene.componentRegistry.register(components.get(i));
+            components.get(i).onResetInternal();
+        }
+
+        try {
+            onReset(params);
+        } catch (Exception e) {
+            Lumm.debug.logError("onReset in object ( type: " + getType() + ", name:" + getName() + " )", e);
+        }
 
+        scene.addObject(this);
     }
 
     /**
@@ -309,9 +498,9 @@ public abstract class LummObject implements IEnableable {
      * @param info
      */
     final void onDebugInternal() {
-        if (!isEnabled())
+        if (!renderEnabled)
             return;
-        for (LummComponent behavior : components) {
+        for (LummComponent behavior : renderComponents) {
             if (Lumm.debug.isEnabled() && Lumm.debug.getComponentDebugger(behavior.getClass()).enabled) {
                 behavior.onDebug();
             }
@@ -338,10 +527,17 @@ public abstract class LummObject implements IEnableable {
             if (!isEnabled())
                 return;
 
-            if ((updateFrequency == 0 || System.currentTimeMillis() - lastUpdateTimestamp > updateFrequency)
-                    && updateFrequency != -1) {
+            // too far from the camera, components included
+            if (updateLodFrequency == -1)
+                return;
+
+            float frequency = getScheduledFrequency(updateFrequency);
+            if ((frequency == 0 || updateEntry.due) && frequency != -1) {
 
-                lastUpdateTimestamp = System.currentTimeMillis();
+                updateEntry.due = false;
+                double time = Lumm.time.getScaledTimeInGame();
+                updateDeltaTime = lastUpdateTime == -1 ? Lumm.time.getDeltaTime() : (float) (time - lastUpdateTime);
+                lastUpdateTime = time;
                 try {
                     onUpdate();
                 } catch (Exception e) {
@@ -350,8 +546,16 @@ public abstract class LummObject implements IEnableable {
                 }
             }
 
+            ComponentUpdateScheduler scheduler = scene != null ? scene.componentScheduler : null;
             for (int i = 0; i < components.size(); i++) {
 
+                if (components.get(i).sleeping)
+                    continue;
+
+                // parallel-safe components are updated after the serial pass
+                if (scheduler != null && scheduler.defer(components.get(i)))
+                    continue;
+
                 components.get(i).onUpdateInternal();
             }
 
@@ -369,28 +573,19 @@ public abstract class LummObject implements IEnableable {
 
         try {
 
-            if (!isEnabled())
+            if (!renderEnabled)
                 return;
 
             try {
 
                 onRender();
-                while (gameThreadEvents.size() > 0) {
-                    try {
-                        gameThreadEvents.remove(0).run();
-                    } catch (Exception e) {
-                        Lumm.net.logThrowable(e);
-                        Lumm.debug.logError(
-                                "Game Thread Event in object ( type: " + getType() + ", name:" + getName() + ")", e);
-                    }
-                }
             } catch (Exception e) {
                 Lumm.debug.logError("RenderInternal in object ( type: " + getType() + ", name:" + getName() + " )", e);
             }
 
-            for (int i = 0; i < components.size(); i++) {
+            for (int i = 0; i < renderComponents.length; i++) {
 
-                components.get(i).onRenderInternal();
+                renderComponents[i].onRenderInternal();
             }
         } catch (Exception e) {
             Lumm.handleException(e);
@@ -398,6 +593,28 @@ public abstract class LummObject implements IEnableable {
 
     }
 
+    /**
+     * Buffers the state read when rendering the object: the position, whether
+     * the object is enabled and the list of components, after which
+     * {@link LummComponent#syncRenderStateInternal()} is called on each
+     * component. Called from {@link LummSceneLayer#syncRenderState()} while
+     * the update thread is idle.
+     */
+    final void syncRenderStateInternal() {
+
+        position.syncRenderState();
+        renderEnabled = isEnabled();
+
+        if (componentsChanged) {
+            renderComponents = components.toArray(new LummComponent[components.size()]);
+            componentsChanged = false;
+        }
+
+        for (int i = 0; i < renderComponents.length; i++) {
+            renderComponents[i].syncRenderStateInternal();
+        }
+    }
+
     /**
      * Internally pauses the game, calling {@link #onPause(boolean)} and the
      * {@link LummComponent#onPause(boolean)} for each component attached to
@@ -447,6 +664,25 @@ public abstract class LummObject implements IEnableable {
      */
     protected abstract void onSceneChange();
 
+    /**
+     * Method to be optionally overriden. Called instead of
+     * {@link #onCreate(Object...)} when an object created using
+     * {@link LummScene#obtain(Class, Object...)} is taken out of the pool again,
+     * after {@link LummComponent#onReset()} is called in its components.
+     * <p>
+     * Components created in {@link #onCreate(Object...)} are kept, so this
+     * should only set the object's state back to how it is after creation. The
+     * position is set to 0 beforehand, the type and name are set back to their
+     * defaults and the tags are cleared, so ones set in
+     * {@link #onCreate(Object...)} have to be set here again.
+     *
+     * @param params
+     *            parameters passed to {@link LummScene#obtain(Class, Object...)}
+     */
+    protected void onReset(Object... params) {
+
+    }
+
     // endregion
 
     // region getters/setters
@@ -461,14 +697,10 @@ public abstract class LummObject implements IEnableable {
         for (int i = 0; i < scene.sceneLayers.size(); i++) {
 
             if (scene.sceneLayers.get(i).name.equals(newTag)) {
-                if (SceneLayer != null) {
-                    if (SceneLayer.objects.contains(this))
-                        SceneLayer.objects.remove(this);
-                }
+                if (SceneLayer != null)
+                    SceneLayer.removeObject(this);
                 SceneLayer = scene.sceneLayers.get(i);
-                if (!SceneLayer.objects.contains(this)) {
-                    SceneLayer.objects.add(this);
-                }
+                SceneLayer.addObject(this);
                 return;
 
             }
@@ -511,10 +743,13 @@ public abstract class LummObject implements IEnableable {
                 return;
             else {
                 // local position is hierarchial position
+                float x = position.getX();
+                float y = position.getY();
+                float z = position.getZ();
                 if (parent.children != null)
                     parent.children.remove(this);
                 parent = null;
-                position.setLocal(position.get());
+                position.setLocal(x, y, z);
                 updateOnEnable(isEnabled(), isEnabled(), true);
                 // updating child position based on parent position
                 position.ensureHierarchialMatch();
@@ -559,7 +794,9 @@ public abstract class LummObject implements IEnableable {
      * once every frame)
      * <p>
      * If you do not want a behavior's update to run, pass -1 as parameter, and
-     * if you want it to run every frame, pass 0 as a parameter
+     * if you want it to run every frame, pass 0 as a parameter. The first
+     * update after changing the frequency is delayed by up to one period, so
+     * instances with the same frequency don't all update in the same frame.
      *
      * @param milliseconds
      */
@@ -572,6 +809,7 @@ public abstract class LummObject implements IEnableable {
         }
 
         this.updateFrequency = milliseconds;
+        Lumm.updateWheel.schedule(updateEntry, getScheduledFrequency(milliseconds));
 
     }
 
@@ -579,8 +817,149 @@ public abstract class LummObject implements IEnableable {
         return updateFrequency;
     }
 
+    /**
+     * Returns the time since the previous update of the object, affected by
+     * the time scale. Is the same as {@link Time#getDeltaTime()} for objects
+     * updated every pass, and longer for objects with an update frequency or
+     * throttled by the update LOD of their scene layer.
+     *
+     * @return the time since the last update, in seconds
+     */
+    public float getUpdateDeltaTime() {
+        return updateDeltaTime;
+    }
+
+    /**
+     * Returns the frequency an instance of the object updates at, given its
+     * own frequency, after applying the limit set by the update LOD band.
+     */
+    final float getScheduledFrequency(float frequency) {
+
+        if (frequency == -1 || updateLodFrequency == -1)
+            return -1;
+        return Math.max(frequency, updateLodFrequency);
+    }
+
+    // endregion
+
+    // region update LOD
+
+    /**
+     * Sets whether the object can be updated less often when far from the
+     * camera, if {@link LummSceneLayer#setUpdateLod(boolean, float, float, float)}
+     * is used in its scene layer. True by default; objects that have to keep
+     * updating regardless of their position, such as ones managing game
+     * state, should disable it.
+     *
+     * @param enabled
+     *            whether the object can be throttled
+     */
+    public final void setUpdateLodEnabled(boolean enabled) {
+
+        this.updateLodEnabled = enabled;
+    }
+
+    public final boolean isUpdateLodEnabled() {
+
+        return updateLodEnabled;
+    }
+
+    /**
+     * Returns the update LOD band the object was last put in, one of
+     * {@link LummSceneLayer#UPDATE_LOD_FULL},
+     * {@link LummSceneLayer#UPDATE_LOD_MARGIN} and
+     * {@link LummSceneLayer#UPDATE_LOD_FAR}.
+     *
+     * @return the update LOD band of the object
+     */
+    public final int getUpdateLodBand() {
+
+        return updateLodBand;
+    }
+
+    /**
+     * Moves the object to an update LOD band, rescheduling it and its
+     * components if the frequency changed.
+     */
+    final void setUpdateLodBand(int band, float frequency) {
+
+        updateLodBand = band;
+        if (frequency == updateLodFrequency)
+            return;
+
+        updateLodFrequency = frequency;
+        Lumm.updateWheel.schedule(updateEntry, getScheduledFrequency(updateFrequency));
+        for (int i = 0; i < components.size(); i++) {
+            components.get(i).onUpdateLodChanged();
+        }
+    }
+
     // endregion
 
+    // region sleeping
+
+    /**
+     * Puts the object to sleep, skipping it and its components in the update
+     * pass until it is woken using {@link #wake()}, which also happens when
+     * its position is changed, when it is part of a collision reported by a
+     * {@link dk.sidereal.lumm.components.triggers.Collider} or when it is
+     * clicked through a {@link dk.sidereal.lumm.components.input.Clickable}.
+     * <p>
+     * Sleeping objects are still rendered. The object is taken out of the
+     * update pass at the start of the next one.
+     */
+    public final void sleep() {
+
+        Lumm.updateWheel.cancel(wakeEntry);
+        if (sleeping)
+            return;
+
+        sleeping = true;
+        if (SceneLayer != null)
+            SceneLayer.onSleepChanged(this);
+    }
+
+    /**
+     * Puts the object to sleep using {@link #sleep()}, waking it after the
+     * given time unless it is woken before.
+     *
+     * @param milliseconds
+     *            the time after which to wake the object
+     */
+    public final void sleep(float milliseconds) {
+
+        if (milliseconds <= 0) {
+            Lumm.debug.logDebug("Trying to put object of class " + getClass().getName() + " to sleep for "
+                    + milliseconds + " milliseconds", null);
+            return;
+        }
+
+        sleep();
+        Lumm.updateWheel.scheduleOnce(wakeEntry, milliseconds);
+    }
+
+    /**
+     * Wakes the object if it is sleeping, putting it back in the update pass
+     * starting with the next one. Can be called from any thread.
+     */
+    public final void wake() {
+
+        if (!sleeping)
+            return;
+
+        Lumm.updateWheel.cancel(wakeEntry);
+        sleeping = false;
+        if (SceneLayer != null)
+            SceneLayer.onSleepChanged(this);
+    }
+
+    public final boolean isSleeping() {
+
+        return sleeping;
+    }
+
+    // endregion sleeping
+
     // region enabled
 
     /**
@@ -728,10 +1107,71 @@ public abstract class LummObject implements IEnableable {
     // region name
 
     /**
-     * Default name getter
+     * Returns the unique handle of the object, which can be used for finding
+     * it using {@link ObjectRegistry#get(int)} and doesn't change for the
+     * lifetime of the object.
      *
-     * @return
+     * @return the handle of the object
      */
+    public final int getHandle() {
+
+        return handle;
+    }
+
+    // region tags
+
+    /**
+     * Adds a tag to the object, used for finding it using
+     * {@link ObjectRegistry#getObjectsWithTag(String)}. Does nothing if the
+     * object already has the tag.
+     *
+     * @param tag
+     *            the tag to add
+     */
+    public final void addTag(String tag) {
+
+        if (tag == null)
+            throw new NullPointerException("LummObject.addTag parameter 'tag' of type String is null");
+
+        if (hasTag(tag))
+            return;
+
+        if (tags == null)
+            tags = new ArrayList<String>(2);
+        tags.add(tag);
+
+        if (scene != null)
+            scene.objectRegistry.addTag(this, tag);
+    }
+
+    public final boolean removeTag(String tag) {
+
+        if (!hasTag(tag))
+            return false;
+
+        if (scene != null)
+            scene.objectRegistry.removeTag(this, tag);
+        tags.remove(tag);
+        return true;
+    }
+
+    public final boolean hasTag(String tag) {
+
+        return tags != null && tags.contains(tag);
+    }
+
+    public final int getTagCount() {
+
+        return tags == null ? 0 : tags.size();
+    }
+
+    public final String getTag(int index) {
+
+        return tags.get(index);
+    }
+
+    // endregion tags
+
     public final String getName() {
 
         return name;
@@ -746,8 +1186,7 @@ public abstract class LummObject implements IEnableable {
      * <p>
      * This method can be used in {@link #onCreate(Object...)} as well as
      * outside of it, being an alternative to explicitly changing {@link #name},
-     * removing the object from its' previous place in
-     * {@link LummScene#objectsMap } if necessary.
+     * updating its' place in the scene's {@link ObjectRegistry}.
      *
      * @param name
      *            The new name of the LummObject. If value passed is the same as
@@ -760,15 +1199,7 @@ public abstract class LummObject implements IEnableable {
         if (scene == null)
             return;
 
-        if (!scene.objectsMap.containsKey(this.getType())) {
-            scene.objectsMap.put(this.getType(), new HashMap<String, LummObject>());
-        } else {
-            if (scene.objectsMap.get(this.getType()).containsValue(this))
-                scene.objectsMap.get(this.getType()).remove(this.name);
-        }
-
-        scene.objectsMap.get(this.getType()).put(name, this);
-
+        scene.objectRegistry.rename(this, name);
         this.name = name;
     }
 
@@ -795,9 +1226,7 @@ public abstract class LummObject implements IEnableable {
      * <p>
      * This method can be used in {@link #onCreate(Object...)} as well as
      * outside of it, being an alternative to explicitly changing {@link #type},
-     * removing the object from its' previous place in
-     * {@link LummScene#objectsMap } if necessary. A new Map will be created if
-     * there isn't one already for the new LummObject type.
+     * updating its' place in the scene's {@link ObjectRegistry}.
      *
      * @param type
      *            The new type of the LummObject. If value passed is the same as
@@ -810,15 +1239,7 @@ public abstract class LummObject implements IEnableable {
         if (scene == null)
             return;
 
-        if (scene.objectsMap.containsKey(this.type) && scene.objectsMap.get(this.type).containsValue(this)) {
-            scene.objectsMap.get(this.type).remove(this.getName());
-
-        }
-        if (!scene.objectsMap.containsKey(type)) {
-            scene.objectsMap.put(type, new HashMap<String, LummObject>());
-        }
-        scene.objectsMap.get(type).put(this.getName(), this);
-
+        scene.objectRegistry.retype(this, type);
         this.type = type;
 
     }
@@ -832,6 +1253,21 @@ public abstract class LummObject implements IEnableable {
     }
 
     public final void setScene(LummScene scene) {
+
+        if (this.scene != null && this.scene.objectRegistry.contains(this)) {
+            this.scene.objectRegistry.remove(this);
+            if (scene != null)
+                scene.objectRegistry.add(this);
+        }
+
+        // move the components to the registry of the new scene
+        for (int i = 0; i < components.size(); i++) {
+            if (this.scene != null)
+                this.scene.componentRegistry.unregister(components.get(i));
+            if (scene != null)
+                scene.componentRegistry.register(components.get(i));
+        }
+
         this.scene = scene;
         setSceneLayer(getSceneLayer().name);
 
@@ -854,15 +1290,20 @@ public abstract class LummObject implements IEnableable {
     // endregion
 
     // region behaviors
+
+    /**
+     * Returns the component of the given class attached to the object. Does not
+     * return components of subclasses.
+     *
+     * @param component
+     *            the class of the component
+     * @return the component, or null if the object doesn't have one of that
+     *         class
+     */
     @SuppressWarnings("unchecked")
     public final <T extends LummComponent> T getComponent(Class<T> component) {
 
-        for (int i = 0; i < components.size(); i++) {
-            if (components.get(i).getClass().equals(component))
-                return (T) components.get(i);
-        }
-        return null;
-
+        return (T) componentsByClass.get(component);
     }
 
     public final boolean removeComponent(Class<? extends LummComponent> behaviorClass) {
@@ -873,11 +1314,50 @@ public abstract class LummObject implements IEnableable {
 
         if (targetBehavior.onDisposeListener != null)
             targetBehavior.onDisposeListener.onDispose(targetBehavior);
+
+        components.remove(targetBehavior);
+        componentsChanged = true;
+        Lumm.updateWheel.cancel(targetBehavior.updateEntry);
+        Lumm.updateWheel.cancel(targetBehavior.wakeEntry);
+        if (scene != null)
+            scene.componentRegistry.unregister(targetBehavior);
+
+        // another component of the same class can take its place
+        componentsByClass.remove(behaviorClass);
+        for (int i = 0; i < components.size(); i++) {
+            if (components.get(i).getClass().equals(behaviorClass)) {
+                componentsByClass.put(behaviorClass, components.get(i));
+                break;
+            }
+        }
         return true;
     }
 
+    /** Called in the {@link LummComponent} constructor after adding the component to {@link #components}. */
+    final void onComponentAdded(LummComponent component) {
+
+        if (!componentsByClass.containsKey(component.getClass()))
+            componentsByClass.put(component.getClass(), component);
+
+        componentsChanged = true;
+        if (scene != null)
+            scene.componentRegistry.register(component);
+    }
+
     // endregion
 
+    /**
+     * Returns the position of the object in the render order of its
+     * {@link LummSceneLayer} as of the last frame. Objects with a higher index
+     * are drawn later, on top of the ones with a lower index.
+     *
+     * @return the render index of the object
+     */
+    public final int getRenderIndex() {
+
+        return renderIndex;
+    }
+
     /**
      * Returns whether or not the user is to be removed or is in scene.
      * <p>
@@ -899,13 +1379,22 @@ public abstract class LummObject implements IEnableable {
      * {@link Net#sendHttpRequest(com.badlogic.gdx.Net.HttpRequest, com.badlogic.gdx.Net.HttpResponseListener)}
      * .
      * <p>
-     * The event will run at the end of the update loop of the object that this
-     * method was called.
+     * Can be called from any thread. The event runs on the rendering thread
+     * at the start of the next frame, while the update thread is idle, or in
+     * a later frame if the events posted before it use up the budget set in
+     * {@link LummConfiguration#gameThreadEventBudget}. The event is skipped
+     * if the object was removed from the scene or disposed by then.
      *
      * @param event
+     * @see Lumm#getGameThreadQueue()
      */
     public void runOnGameThread(AbstractEvent event) {
-        gameThreadEvents.add(event);
+
+        if (event == null)
+            throw new NullPointerException(
+                    "LummObject.runOnGameThread parameter 'event' of type AbstractEvent is null");
+
+        Lumm.gameThreadQueue.post(this, event);
     }
 
     /**
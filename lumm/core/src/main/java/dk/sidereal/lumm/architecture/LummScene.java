@@ -16,7 +16,7 @@
 
 package dk.sidereal.lumm.architecture;
 
-import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -27,8 +27,12 @@ import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import dk.sidereal.lumm.architecture.concrete.ConcreteLummSceneLayer;
+import dk.sidereal.lumm.architecture.data.DataComponent;
+import dk.sidereal.lumm.architecture.data.EntityStore;
 import dk.sidereal.lumm.architecture.listeners.OnEnableListener;
 import dk.sidereal.lumm.architecture.listeners.OnUpdateListener;
+import dk.sidereal.lumm.architecture.pos.Position;
+import dk.sidereal.lumm.util.LummException;
 
 /**
  * Scene of the game. Handles updating all of the objects tied to the scene by
@@ -77,9 +81,9 @@ public abstract class LummScene implements Screen {
 
     /**
      * List of objects that will not be disposed, and will be passed and updated
-     * in the next scene, being added to {@link #objectsList} and
-     * {@link #objectsMap} as well as having the {@link LummObject#gameBatch}
-     * set to the one with the same tag in the new scene
+     * in the next scene, being added to {@link #objectRegistry} as well as
+     * having the {@link LummObject#gameBatch} set to the one with the same tag
+     * in the new scene
      */
     ArrayList<LummObject> toKeepForNextScene;
 
@@ -101,13 +105,11 @@ public abstract class LummScene implements Screen {
     private ArrayList<LummObject> toAdd;
 
     /**
-     * Objects Organised in a map, by type, the value baing another map, where
-     * the key is the name of the Object
-     * <p>
-     * To get a specific object you need his {@link LummObject#name} and
-     * {@link LummObject#type}
+     * Index of the objects in the scene by type and name, handle and tag.
+     * Objects are added in {@link #addObjects()} and removed in
+     * {@link #removeObjects()}.
      */
-    public HashMap<String, HashMap<String, LummObject>> objectsMap;
+    final ObjectRegistry objectRegistry;
 
     /**
      * Comparator used for sorting the game batches. Used in
@@ -117,6 +119,42 @@ public abstract class LummScene implements Screen {
      */
     protected Comparator<LummSceneLayer> sceneLayerComparator;
 
+    /**
+     * Scheduler running parallel-safe components after the serial update pass.
+     * Is null unless {@link Lumm#isParallelComponentUpdate()} is true.
+     */
+    ComponentUpdateScheduler componentScheduler;
+
+    /**
+     * Data-oriented storage of component data. Is created the first time
+     * {@link #getEntityStore()} is called.
+     */
+    EntityStore entityStore;
+
+    /**
+     * Objects created using {@link #obtain(Class, Object...)} that were removed
+     * from the scene, by class, waiting to be reused.
+     */
+    private final HashMap<Class<? extends LummObject>, ArrayList<LummObject>> pools;
+
+    /** Structural changes recorded from other threads, replayed in {@link #onSyncInternal()}. */
+    private final SceneCommandBuffer commandBuffer;
+
+    /** Components of all objects in the scene, by class. */
+    final ComponentRegistry componentRegistry;
+
+    /**
+     * Whether the scene layers were made and {@link #onCreate(Object[])} was
+     * called, either when setting the scene or when preloading it.
+     */
+    boolean created;
+
+    /**
+     * Whether {@link #onPreload(Object[])} finished running, set on the
+     * preloading thread.
+     */
+    volatile boolean preloaded;
+
     // endregion
 
     /**
@@ -152,8 +190,11 @@ public abstract class LummScene implements Screen {
 
         this.toAdd = new ArrayList<LummObject>();
         this.toRemove = new ArrayList<LummObject>();
-        this.objectsMap = new HashMap<String, HashMap<String, LummObject>>();
+        this.objectRegistry = new ObjectRegistry();
         this.toKeepForNextScene = new ArrayList<LummObject>();
+        this.componentRegistry = new ComponentRegistry();
+        this.commandBuffer = new SceneCommandBuffer(this);
+        this.pools = new HashMap<Class<? extends LummObject>, ArrayList<LummObject>>();
         this.bgColor = new Color(1, 1, 1, 1);
         this.runParameters = params;
     }
@@ -205,6 +246,25 @@ public abstract class LummScene implements Screen {
      */
     protected abstract void onPause(boolean value);
 
+    /**
+     * Called on a background thread when the scene is passed to
+     * {@link Lumm#preloadScene(LummScene)}, before
+     * {@link #onCreateSceneLayers()} and {@link #onCreate(Object[])}.
+     * <p>
+     * Queue the assets the scene needs using
+     * {@link dk.sidereal.lumm.architecture.core.Assets#load(String, Class)}
+     * here, so they are loaded by the time the scene is created instead of on
+     * demand. Work that doesn't need OpenGL, such as reading level files, can
+     * be done here as well. Objects must not be created in this method.
+     * <p>
+     * Does nothing by default.
+     *
+     * @param params
+     *            the parameters passed to {@link #LummScene(Object...)}
+     */
+    protected void onPreload(Object[] params) {
+    }
+
     // endregion
 
     // region methods
@@ -332,7 +392,9 @@ public abstract class LummScene implements Screen {
      */
     public void addObject(LummObject obj) {
 
-        toAdd.add(obj);
+        synchronized (toAdd) {
+            toAdd.add(obj);
+        }
     }
 
     /**
@@ -343,6 +405,7 @@ public abstract class LummScene implements Screen {
     public void removeobject(LummObject obj) {
 
         obj.inScene = false;
+        obj.removalCount++;
 
         synchronized (toRemove) {
             toRemove.add(obj);
@@ -351,27 +414,212 @@ public abstract class LummScene implements Screen {
 
     /**
      * Retrieves the object with the expected type and name , or if it can't be
-     * found, returns null. This method is very expensive as it queries all
-     * objects (until the first one is found) in all gamebatches for a potential
-     * match. If no object is found, null will be returned.
+     * found, returns null. Objects are only found after being added to the
+     * scene, at the end of the frame they were created in.
      *
      * @param type
      *            The type of the object to find
      * @param name
      *            The name of the object to find
-     * @return the first object with the given type and name, otherwise null.
+     * @return the object with the given type and name, otherwise null.
      */
     public LummObject getObject(String type, String name) {
 
+        return objectRegistry.get(type, name);
+    }
+
+    /**
+     * Retrieves the object with the given handle, or null if it isn't in the
+     * scene.
+     *
+     * @param handle
+     *            The value of {@link LummObject#getHandle()}
+     * @return the object with the given handle, otherwise null.
+     */
+    public LummObject getObject(int handle) {
+
+        return objectRegistry.get(handle);
+    }
+
+    /**
+     * Returns the buffer used for creating and removing objects or changing
+     * their hierarchy, layer or components from threads other than the update
+     * thread. Recorded changes are applied before the next frame is rendered.
+     *
+     * @return the command buffer of the scene
+     */
+    public final SceneCommandBuffer getCommandBuffer() {
+
+        return commandBuffer;
+    }
+
+    /**
+     * Returns the index of the objects in the scene, which can be used to find
+     * objects by type and name, handle or tag.
+     *
+     * @return the object registry of the scene
+     */
+    public final ObjectRegistry getObjectRegistry() {
+
+        return objectRegistry;
+    }
+
+    /**
+     * Returns the number of objects in the scene that are updated, summed
+     * over all scene layers.
+     *
+     * @return the number of objects that are not sleeping
+     */
+    public final int getAwakeObjectCount() {
+
+        int count = 0;
         for (int i = 0; i < sceneLayers.size(); i++) {
-            for (int j = 0; j < sceneLayers.get(i).objects.size(); i++) {
-                if (sceneLayers.get(i).objects.get(j).getName().equals(name)
-                        && sceneLayers.get(i).objects.get(j).getType().equals(type))
-                    return sceneLayers.get(i).objects.get(j);
-            }
+            count += sceneLayers.get(i).getAwakeObjectCount();
         }
+        return count;
+    }
 
-        return null;
+    /**
+     * Returns the number of objects in the scene that are skipped by the
+     * update pass because they are sleeping, as set using
+     * {@link LummObject#sleep()}.
+     *
+     * @return the number of sleeping objects
+     */
+    public final int getSleepingObjectCount() {
+
+        int count = 0;
+        for (int i = 0; i < sceneLayers.size(); i++) {
+            count += sceneLayers.get(i).getSleepingObjectCount();
+        }
+        return count;
+    }
+
+    // region pooling
+
+    /**
+     * Returns an object of the given class, reusing one that was removed from
+     * the scene if possible, or creating a new one otherwise.
+     * <p>
+     * Objects returned by this method are put back in the scene's pool when
+     * removed using {@link #removeobject(LummObject)}, instead of being
+     * disposed. When reused, {@link LummObject#onReset(Object...)} is called
+     * instead of {@link LummObject#onCreate(Object...)}.
+     *
+     * @throws LummException
+     *             if the class doesn't have a public constructor taking a
+     *             {@link LummScene} and an Object array or varargs parameter
+     * @param type
+     *            the class of the object
+     * @param params
+     *            parameters passed to {@link LummObject#onCreate(Object...)} or
+     *            {@link LummObject#onReset(Object...)}
+     * @return an object of the given class, added to the scene
+     */
+    @SuppressWarnings("unchecked")
+    public final <T extends LummObject> T obtain(Class<T> type, Object... params) {
+
+        ArrayList<LummObject> pool = pools.get(type);
+        if (pool != null && pool.size() > 0) {
+            T obj = (T) pool.remove(pool.size() - 1);
+            obj.inPool = false;
+            obj.onReuseInternal(params);
+            return obj;
+        }
+
+        T obj = instantiate(type, params);
+        obj.pooled = true;
+        return obj;
+    }
+
+    /**
+     * Creates an object using its (LummScene, Object...) constructor.
+     *
+     * @throws LummException
+     *             if the class doesn't have such a constructor or it fails
+     */
+    final <T extends LummObject> T instantiate(Class<T> type, Object... params) {
+
+        try {
+            return type.getConstructor(LummScene.class, Object[].class).newInstance(this, params);
+        } catch (NoSuchMethodException e) {
+            throw new LummException("LummScene class " + type.getName()
+                    + " requires a public constructor with the parameters (LummScene, Object...)");
+        } catch (InvocationTargetException e) {
+            throw new LummException("LummScene failed to create object of class " + type.getName() + ": "
+                    + e.getCause());
+        } catch (Exception e) {
+            throw new LummException("LummScene failed to create object of class " + type.getName() + ": " + e);
+        }
+    }
+
+    /**
+     * Returns the number of objects of a class waiting to be reused in
+     * {@link #obtain(Class, Object...)}.
+     *
+     * @param type
+     *            the class of the objects
+     * @return the number of pooled objects of that class
+     */
+    public final int getPooledCount(Class<? extends LummObject> type) {
+
+        ArrayList<LummObject> pool = pools.get(type);
+        return pool == null ? 0 : pool.size();
+    }
+
+    /**
+     * Disposes all pooled objects of a class, so new ones will be created in
+     * {@link #obtain(Class, Object...)}.
+     *
+     * @param type
+     *            the class of the objects
+     */
+    public final void clearPool(Class<? extends LummObject> type) {
+
+        ArrayList<LummObject> pool = pools.remove(type);
+        if (pool == null)
+            return;
+
+        for (int i = 0; i < pool.size(); i++) {
+            pool.get(i).onDisposeInternal();
+        }
+    }
+
+    private ArrayList<LummObject> getPool(Class<? extends LummObject> type) {
+
+        ArrayList<LummObject> pool = pools.get(type);
+        if (pool == null) {
+            pool = new ArrayList<LummObject>();
+            pools.put(type, pool);
+        }
+        return pool;
+    }
+
+    // endregion pooling
+
+    /**
+     * Returns the registry of all components attached to objects in the scene,
+     * used for retrieving all components of a class without going through the
+     * objects.
+     *
+     * @return the component registry of the scene
+     */
+    public final ComponentRegistry getComponentRegistry() {
+
+        return componentRegistry;
+    }
+
+    /**
+     * Returns the store keeping data of {@link DataComponent}s and other
+     * entities of the scene, creating it the first time it is requested.
+     *
+     * @return the entity store of the scene
+     */
+    public final EntityStore getEntityStore() {
+
+        if (entityStore == null)
+            entityStore = new EntityStore();
+        return entityStore;
     }
 
     // endregion
@@ -389,29 +637,17 @@ public abstract class LummScene implements Screen {
 
         try {
 
+            if (Lumm.isHeadless())
+                return;
+
             Gdx.gl.glClearColor(bgColor.r, bgColor.g, bgColor.b, bgColor.a);
             Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
             if (sceneLayers == null)
                 return;
             for (int i = 0; i < sceneLayers.size(); i++) {
-                sceneLayers.get(i).updateMousePosition();
                 sceneLayers.get(i).onRenderInternal();
             }
-
-            for (int i = 0; i < sceneLayers.size(); i++) {
-                // camera view is different from screen size => resize
-                if ((Gdx.graphics.getWidth() != sceneLayers.get(i).camera.viewportWidth
-                        || Gdx.graphics.getHeight() != sceneLayers.get(i).camera.viewportHeight)
-                        && sceneLayers.get(i).referencingBatch == null)
-
-                {
-                    sceneLayers.get(i).onResizeInternal();
-                }
-            }
-
-            addObjects();
-            removeObjects();
         } catch (Exception e) {
             Lumm.net.logThrowable(e);
         }
@@ -480,14 +716,28 @@ public abstract class LummScene implements Screen {
     @Override
     public final void dispose() {
 
+        // objects made in onCreate of a preloaded scene that was never shown
+        synchronized (toAdd) {
+            for (int i = 0; i < toAdd.size(); i++) {
+                // children are disposed along with their parent
+                if (toAdd.get(i).getParent() == null)
+                    toAdd.get(i).onDisposeInternal();
+            }
+            toAdd.clear();
+        }
+
         for (int i = 0; i < sceneLayers.size(); i++) {
             sceneLayers.get(i).onDisposeInternal();
         }
+        for (ArrayList<LummObject> pool : pools.values()) {
+            for (int i = 0; i < pool.size(); i++) {
+                pool.get(i).onDisposeInternal();
+            }
+        }
+        pools.clear();
         sceneLayers = null;
         sceneLayerComparator = null;
         defaultBatch = null;
-        objectsMap = null;
-        new WeakReference<LummScene>(this);
     }
 
     // endregion
@@ -500,20 +750,13 @@ public abstract class LummScene implements Screen {
      */
     private final void addObjects() {
 
-        for (int i = 0; i < toAdd.size(); i++) {
-            toAdd.get(i).inScene = true;
-
-            if (objectsMap.containsKey(toAdd.get(i).getType())
-                    && objectsMap.get(toAdd.get(i).getType()).containsValue(toAdd.get(i))) {
-            } else {
-                if (!objectsMap.containsKey(toAdd.get(i).getType())) {
-                    objectsMap.put(toAdd.get(i).getType(), new HashMap<String, LummObject>());
-                }
-                objectsMap.get(toAdd.get(i).getType()).put(toAdd.get(i).getName(), toAdd.get(i));
+        synchronized (toAdd) {
+            for (int i = 0; i < toAdd.size(); i++) {
+                toAdd.get(i).inScene = true;
+                objectRegistry.add(toAdd.get(i));
             }
-
+            toAdd.clear();
         }
-        toAdd.clear();
 
     }
 
@@ -524,27 +767,29 @@ public abstract class LummScene implements Screen {
      */
     private final void removeObjects() {
 
-        // handles removing objects that were to be removed during this
-        // frame
-        for (int i = 0; i < toRemove.size(); i++) {
-            // Checks whether or not the object we want to remove exists
-            if (objectsMap.containsKey(toRemove.get(i).getType())) {
-
-                if (objectsMap.get(toRemove.get(i).getType()).containsKey(toRemove.get(i).getName())) {
-
-                    objectsMap.get(toRemove.get(i).getType()).remove(toRemove.get(i).getName());
-
+        synchronized (toRemove) {
+            // handles removing objects that were to be removed during this
+            // frame
+            for (int i = 0; i < toRemove.size(); i++) {
+                objectRegistry.remove(toRemove.get(i));
+
+                toRemove.get(i).getSceneLayer().removeObject(toRemove.get(i));
+
+                if (toRemove.get(i).pooled) {
+                    // removed more than once in the same frame
+                    if (toRemove.get(i).inPool)
+                        continue;
+                    toRemove.get(i).inPool = true;
+                    toRemove.get(i).onRecycleInternal();
+                    getPool(toRemove.get(i).getClass()).add(toRemove.get(i));
+                } else {
+                    toRemove.get(i).onDisposeInternal();
                 }
-            }
-
-            if (toRemove.get(i).getSceneLayer().objects.contains(toRemove.get(i)))
-                toRemove.get(i).getSceneLayer().objects.remove(toRemove.get(i));
-            toRemove.get(i).onDisposeInternal();
-            new WeakReference<LummObject>(toRemove.get(i));
 
+            }
+            if (toRemove.size() > 0)
+                toRemove.clear();
         }
-        if (toRemove.size() > 0)
-            toRemove.clear();
     }
 
     final void onCreateSceneLayersInternal() {
@@ -558,6 +803,52 @@ public abstract class LummScene implements Screen {
         }
     }
 
+    /**
+     * Sync point between updating and rendering, called every frame from
+     * {@link Lumm#render()} while the update thread is idle.
+     * <p>
+     * Runs the events posted using
+     * {@link LummObject#runOnGameThread(AbstractEvent)}, handles resizing and
+     * mouse position translation of the scene layers, adds and removes the
+     * objects queued during the last update pass and copies the state read by
+     * the rendering thread using {@link LummSceneLayer#syncRenderState()}.
+     */
+    final void onSyncInternal() {
+
+        try {
+
+            // run while the update thread is idle, as events change objects
+            // that the update pass reads
+            Lumm.gameThreadQueue.run();
+
+            if (sceneLayers == null)
+                return;
+
+            for (int i = 0; i < sceneLayers.size() && !Lumm.isHeadless(); i++) {
+                // camera view is different from screen size => resize
+                if ((Gdx.graphics.getWidth() != sceneLayers.get(i).camera.viewportWidth
+                        || Gdx.graphics.getHeight() != sceneLayers.get(i).camera.viewportHeight)
+                        && sceneLayers.get(i).referencingBatch == null)
+
+                {
+                    sceneLayers.get(i).onResizeInternal();
+                }
+                sceneLayers.get(i).updateMousePosition();
+            }
+
+            commandBuffer.replay();
+            addObjects();
+            removeObjects();
+
+            Position.resolveDirty();
+            for (int i = 0; i < sceneLayers.size(); i++) {
+                sceneLayers.get(i).syncRenderState();
+            }
+        } catch (Exception e) {
+            Lumm.net.logThrowable(e);
+        }
+    }
+
     final void onPauseInternal(boolean value) {
         onPause(value);
         if (value)
@@ -583,16 +874,63 @@ public abstract class LummScene implements Screen {
         if (onUpdateListener != null)
             onUpdateListener.onUpdate(this);
 
+        if (Lumm.isParallelComponentUpdate()) {
+            if (componentScheduler == null)
+                componentScheduler = new ComponentUpdateScheduler();
+        } else {
+            componentScheduler = null;
+        }
+
         try {
 
+            for (int i = 0; i < sceneLayers.size(); i++) {
+                sceneLayers.get(i).applySleepChanges();
+            }
+
+            // positions moved by game thread events or the last pass
+            Position.resolveDirty();
+
+            // store positions at the start of the step for render
+            // interpolation. Sleeping objects are skipped, as they only move
+            // along with a parent, in which case Position stores their
+            // previous position before resolving the new one.
+            if (Lumm.time.isFixedTimeStep()) {
+                long step = Lumm.time.getFixedStepCount();
+                for (int i = 0; i < sceneLayers.size(); i++) {
+
+                    LummSceneLayer currBatch = sceneLayers.get(i);
+                    for (int j = 0; j < currBatch.awakeObjects.size(); j++) {
+                        currBatch.awakeObjects.get(j).position.storePrevious(step);
+                    }
+                }
+            }
+
+            // only objects that are not sleeping are updated
             for (int i = 0; i < sceneLayers.size(); i++) {
 
                 LummSceneLayer currBatch = sceneLayers.get(i);
-                for (int j = 0; j < currBatch.objects.size(); j++) {
-                    currBatch.objects.get(j).onUpdateInternal();
+                for (int j = 0; j < currBatch.awakeObjects.size(); j++) {
+                    LummObject object = currBatch.awakeObjects.get(j);
+                    if (!object.sleeping) {
+                        currBatch.applyUpdateLod(object);
+                        object.onUpdateInternal();
+                    }
                 }
 
             }
+
+            if (componentScheduler != null) {
+                // so positions read by parallel components are up to date
+                Position.resolveDirty();
+                componentScheduler.run();
+            }
+
+            for (int i = 0; i < sceneLayers.size(); i++) {
+                sceneLayers.get(i).onUpdatedInternal();
+            }
+
+            if (entityStore != null)
+                entityStore.update();
         } catch (Exception e) {
             Lumm.net.logThrowable(e);
             e.printStackTrace();
@@ -13,8 +13,8 @@
 
 package dk.sidereal.lumm.architecture;
 
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -34,7 +34,11 @@ import dk.sidereal.lumm.architecture.listeners.OnDisposeListener;
 import dk.sidereal.lumm.architecture.listeners.OnEnableListener;
 import dk.sidereal.lumm.architecture.listeners.OnPauseListener;
 import dk.sidereal.lumm.architecture.listeners.OnResizeListener;
+import dk.sidereal.lumm.architecture.pos.Position;
 import dk.sidereal.lumm.components.input.Clickable;
+import dk.sidereal.lumm.components.input.ClickableIndex;
+import dk.sidereal.lumm.components.triggers.CollisionGrid;
+import dk.sidereal.lumm.components.triggers.HoverTracker;
 import dk.sidereal.lumm.components.triggers.Hoverable;
 import dk.sidereal.lumm.architecture.core.AppData;
 
@@ -59,6 +63,15 @@ public abstract class LummSceneLayer implements IEnableable {
      */
     public static final String DEFAULT_SCENE_LAYER = "Default";
 
+    /** Update LOD band of objects inside the camera's view, updated at their own frequency. */
+    public static final int UPDATE_LOD_FULL = 0;
+
+    /** Update LOD band of objects within the margin around the camera's view. */
+    public static final int UPDATE_LOD_MARGIN = 1;
+
+    /** Update LOD band of objects further than the margin around the camera's view. */
+    public static final int UPDATE_LOD_FAR = 2;
+
     // region fields
 
     public OnPauseListener<LummSceneLayer> onPauseListener;
@@ -71,6 +84,28 @@ public abstract class LummSceneLayer implements IEnableable {
      */
     public Rectangle renderingArea;
 
+    /** Whether objects are updated less often the further they are from the camera's view. */
+    private boolean updateLod;
+
+    /** Distance around the camera's view within which objects are in {@link #UPDATE_LOD_MARGIN}. */
+    private float updateLodMargin;
+
+    /** Update frequency of objects in {@link #UPDATE_LOD_MARGIN}, in milliseconds. */
+    private float updateLodMarginFrequency;
+
+    /**
+     * Update frequency of objects in {@link #UPDATE_LOD_FAR}, in milliseconds,
+     * or -1 if they are not updated.
+     */
+    private float updateLodFarFrequency;
+
+    /**
+     * Area the camera sees, used for picking the update LOD band of objects.
+     * Copied from the camera in {@link #syncRenderState()}, as
+     * {@link #renderingArea} is written by the rendering thread.
+     */
+    private final Rectangle updateLodArea = new Rectangle();
+
     public enum ShaderType {
         Initialisation, Update, Resize
     }
@@ -88,7 +123,11 @@ public abstract class LummSceneLayer implements IEnableable {
      */
     public SpriteBatch spriteBatch;
 
-    /** Shape renderer focused on the {@link LummSceneLayer}'s camera. */
+    /**
+     * Shape renderer focused on the {@link LummSceneLayer}'s camera.
+     * <p>
+     * Null in headless mode, along with {@link #spriteBatch}.
+     */
     public ShapeRenderer shapeRenderer;
 
     /**
@@ -117,6 +156,26 @@ public abstract class LummSceneLayer implements IEnableable {
      */
     public List<LummObject> objects;
 
+    /**
+     * Objects of {@link #objects} that are not sleeping, iterated over in the
+     * update pass. Objects are removed by moving the last one in their place,
+     * using {@link LummObject#awakeIndex}.
+     */
+    final ArrayList<LummObject> awakeObjects = new ArrayList<LummObject>();
+
+    /**
+     * Objects that were put to sleep or woken since the last update pass,
+     * applied to {@link #awakeObjects} in {@link #applySleepChanges()}.
+     */
+    private final ArrayList<LummObject> sleepChanges = new ArrayList<LummObject>();
+
+    /**
+     * Copy of {@link #objects} iterated over when rendering, so objects can be
+     * added or removed by the update thread in the meantime. Updated in
+     * {@link #syncRenderState()}.
+     */
+    List<LummObject> renderObjects;
+
     /**
      * Whether to translate the mouse position to the {@link #camera}'s
      * projection matrix. This will make using certain IO-related behaviors such
@@ -138,15 +197,20 @@ public abstract class LummSceneLayer implements IEnableable {
      */
     private boolean sort;
 
+    /**
+     * Orders objects by ascending z and then by descending y. When used,
+     * objects are sorted by {@link #getSortKey(Position)} in
+     * {@link #radixSort()} instead of using the comparator, in the same order.
+     */
     private static Comparator<LummObject> defaultComparator = new Comparator<LummObject>() {
 
         @Override
         public int compare(LummObject o1, LummObject o2) {
 
-            if (o1.position.getZ() != o2.position.getZ()) {
-                return (int) (o1.position.getZ() - o2.position.getZ());
+            if (o1.position.getRenderZ() != o2.position.getRenderZ()) {
+                return Float.compare(o1.position.getRenderZ(), o2.position.getRenderZ());
             } else {
-                return (int) o2.position.getY() - (int) o1.position.getY();
+                return Float.compare(o2.position.getRenderY(), o1.position.getRenderY());
             }
 
         }
@@ -161,6 +225,23 @@ public abstract class LummSceneLayer implements IEnableable {
      */
     private Comparator<LummObject> objectComparator;
 
+    /**
+     * Objects of {@link #objects} in the order they were in when
+     * {@link #renderObjects} was last sorted. If {@link #objects} still holds
+     * the same objects in the same order and no object's render order changed,
+     * sorting is skipped. Has a length of -1 if the sort has to run.
+     */
+    private LummObject[] sortedFrom;
+
+    private int sortedFromSize;
+
+    /** Buffers used by {@link #radixSort()}. */
+    private long[] sortKeys, sortKeysBuffer;
+
+    private int[] sortIndices, sortIndicesBuffer;
+
+    private final int[] radixCounts = new int[256];
+
     /**
      * The {@link LummScene} that the batch is found in. Set up in
      * {@link #initialiseBatch(LummScene, String)}.
@@ -179,6 +260,31 @@ public abstract class LummSceneLayer implements IEnableable {
      */
     public Vector2 mousePosition;
 
+    /**
+     * Events run when {@link #mousePosition} changes, either because the mouse
+     * moved or because the camera did. Added using
+     * {@link #addOnMouseMovedEvent(AbstractEvent)}.
+     */
+    private final List<AbstractEvent> onMouseMovedEvents = new ArrayList<AbstractEvent>();
+
+    /**
+     * Events run after all objects and components of the scene were updated in
+     * an update pass. Added using {@link #addOnUpdatedEvent(AbstractEvent)}.
+     */
+    private final List<AbstractEvent> onUpdatedEvents = new ArrayList<AbstractEvent>();
+
+    /** Broadphase of the colliders in the layer, created in {@link #getCollisionGrid()}. */
+    private CollisionGrid collisionGrid;
+
+    /** Hit-testing of the clickables in the layer, created in {@link #getClickableIndex()}. */
+    private ClickableIndex clickableIndex;
+
+    /** Hover state of the hoverables in the layer, created in {@link #getHoverTracker()}. */
+    private HoverTracker hoverTracker;
+
+    /** {@link #mousePosition} when {@link #onMouseMovedEvents} were last run. */
+    private float lastMouseX = Float.NaN, lastMouseY = Float.NaN;
+
     /**
      * Shader to run every frame on {@link #spriteBatch}. Is set in
      * {@link #setShader(ShaderProgram, AbstractEvent, ShaderType)}.
@@ -229,7 +335,8 @@ public abstract class LummSceneLayer implements IEnableable {
         this.mousePosition = new Vector2();
 
         this.camera = new OrthographicCamera();
-        camera.setToOrtho(false, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        if (!Lumm.isHeadless())
+            camera.setToOrtho(false, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
 
         this.translateMousePosition = false;
 
@@ -288,10 +395,14 @@ public abstract class LummSceneLayer implements IEnableable {
         this.scene = scene;
         this.name = name;
 
-        this.shapeRenderer = new ShapeRenderer();
-        this.shapeRenderer.setAutoShapeType(true);
-        this.spriteBatch = new SpriteBatch();
+        // both need an OpenGL context
+        if (!Lumm.isHeadless()) {
+            this.shapeRenderer = new ShapeRenderer();
+            this.shapeRenderer.setAutoShapeType(true);
+            this.spriteBatch = new SpriteBatch();
+        }
         this.objects = new ArrayList<LummObject>();
+        this.renderObjects = new ArrayList<LummObject>();
         this.priorityLevel = 0;
         this.sort = true;
         setSort(true, defaultComparator);
@@ -302,17 +413,214 @@ public abstract class LummSceneLayer implements IEnableable {
 
     // region methods
 
+    // region objects
+
+    /** Adds an object to {@link #objects}, and to {@link #awakeObjects} if it is not sleeping. */
+    final void addObject(LummObject object) {
+
+        if (object.inSceneLayer)
+            return;
+
+        object.inSceneLayer = true;
+        objects.add(object);
+        if (!object.sleeping)
+            addAwake(object);
+    }
+
+    /** Removes an object from {@link #objects} and {@link #awakeObjects}. */
+    final void removeObject(LummObject object) {
+
+        if (!object.inSceneLayer)
+            return;
+
+        object.inSceneLayer = false;
+        objects.remove(object);
+        removeAwake(object);
+    }
+
+    /**
+     * Records that an object was put to sleep or woken. Can be called from any
+     * thread.
+     */
+    final void onSleepChanged(LummObject object) {
+
+        synchronized (sleepChanges) {
+            sleepChanges.add(object);
+        }
+    }
+
+    /**
+     * Adds woken objects to {@link #awakeObjects} and removes the ones put to
+     * sleep. Called at the start of {@link LummScene#onUpdateInternal()}, so
+     * the list doesn't change while iterated over.
+     */
+    final void applySleepChanges() {
+
+        synchronized (sleepChanges) {
+            for (int i = 0; i < sleepChanges.size(); i++) {
+
+                LummObject object = sleepChanges.get(i);
+
+                // moved to another scene layer or removed in the meantime
+                if (object.getSceneLayer() != this || !object.inSceneLayer)
+                    continue;
+
+                if (object.sleeping)
+                    removeAwake(object);
+                else
+                    addAwake(object);
+            }
+            sleepChanges.clear();
+        }
+    }
+
+    private void addAwake(LummObject object) {
+
+        if (object.awakeIndex != -1)
+            return;
+
+        object.awakeIndex = awakeObjects.size();
+        awakeObjects.add(object);
+    }
+
+    private void removeAwake(LummObject object) {
+
+        int index = object.awakeIndex;
+        if (index == -1)
+            return;
+
+        LummObject last = awakeObjects.remove(awakeObjects.size() - 1);
+        if (last != object) {
+            awakeObjects.set(index, last);
+            last.awakeIndex = index;
+        }
+        object.awakeIndex = -1;
+    }
+
+    /**
+     * Returns the number of objects in the scene layer that are updated.
+     *
+     * @return the number of objects that are not sleeping
+     */
+    public int getAwakeObjectCount() {
+
+        return awakeObjects.size();
+    }
+
+    /**
+     * Returns the number of objects in the scene layer that are skipped by
+     * the update pass because they are sleeping.
+     *
+     * @return the number of sleeping objects
+     */
+    public int getSleepingObjectCount() {
+
+        return objects.size() - awakeObjects.size();
+    }
+
+    // endregion objects
+
     /** Updates the area within which objects will be drawn. */
     private final void updateRenderingArea() {
 
-        renderingArea.set(camera.position.x - ((camera.viewportWidth / 2f) * camera.zoom),
+        getCameraArea(renderingArea);
+    }
+
+    /** Sets <code>out</code> to the area the camera sees. */
+    private final void getCameraArea(Rectangle out) {
+
+        out.set(camera.position.x - ((camera.viewportWidth / 2f) * camera.zoom),
                 camera.position.y - ((camera.viewportHeight / 2f) * camera.zoom), camera.viewportWidth * camera.zoom,
                 camera.viewportHeight * camera.zoom);
     }
 
+    // region update LOD
+
+    /**
+     * Updates objects less often the further they are from the camera's view.
+     * Objects inside the view are in {@link #UPDATE_LOD_FULL} and update at
+     * their own frequency, objects within <code>margin</code> of it are in
+     * {@link #UPDATE_LOD_MARGIN} and objects further away are in
+     * {@link #UPDATE_LOD_FAR}. Components of an object are updated at the same
+     * reduced rate.
+     * <p>
+     * The band of an object is picked from its hierarchial position before
+     * each update pass. An object that was throttled reads the time since its
+     * last update using {@link LummObject#getUpdateDeltaTime()}. Objects that
+     * have to update at full rate regardless of their position can opt out
+     * using {@link LummObject#setUpdateLodEnabled(boolean)}.
+     *
+     * @param enabled
+     *            whether to use update LOD in the scene layer
+     * @param margin
+     *            distance around the camera's view, in world units
+     * @param marginFrequency
+     *            update frequency in the margin, in milliseconds
+     * @param farFrequency
+     *            update frequency outside the margin, in milliseconds, or -1
+     *            to not update far objects at all
+     */
+    public void setUpdateLod(boolean enabled, float margin, float marginFrequency, float farFrequency) {
+
+        if (margin < 0 || marginFrequency < 0 || (farFrequency < 0 && farFrequency != -1)) {
+            Lumm.debug.logDebug("Trying to set the update LOD of scene layer " + name + " to a margin of " + margin
+                    + " with frequencies " + marginFrequency + " and " + farFrequency, null);
+            return;
+        }
+
+        this.updateLod = enabled;
+        this.updateLodMargin = margin;
+        this.updateLodMarginFrequency = marginFrequency;
+        this.updateLodFarFrequency = farFrequency;
+
+        // objects go back to their own frequency
+        if (!enabled) {
+            for (int i = 0; i < objects.size(); i++) {
+                objects.get(i).setUpdateLodBand(UPDATE_LOD_FULL, 0);
+            }
+        }
+    }
+
+    public boolean isUpdateLod() {
+
+        return updateLod;
+    }
+
+    /**
+     * Picks the update LOD band of an object and sets its frequency if the
+     * band changed. Called before updating the object.
+     */
+    final void applyUpdateLod(LummObject object) {
+
+        if (!updateLod)
+            return;
+
+        if (!object.isUpdateLodEnabled()) {
+            object.setUpdateLodBand(UPDATE_LOD_FULL, 0);
+            return;
+        }
+
+        float x = object.position.getX();
+        float y = object.position.getY();
+        Rectangle area = updateLodArea;
+
+        if (area.contains(x, y)) {
+            object.setUpdateLodBand(UPDATE_LOD_FULL, 0);
+        } else if (x >= area.x - updateLodMargin && x <= area.x + area.width + updateLodMargin
+                && y >= area.y - updateLodMargin && y <= area.y + area.height + updateLodMargin) {
+            object.setUpdateLodBand(UPDATE_LOD_MARGIN, updateLodMarginFrequency);
+        } else {
+            object.setUpdateLodBand(UPDATE_LOD_FAR, updateLodFarFrequency);
+        }
+    }
+
+    // endregion update LOD
+
     /**
      * Runs every frame, u the mouse position to the camera's location. Gets
-     * called from {@link LummScene#render(float)}
+     * called from {@link LummScene#onSyncInternal()}. Runs the events added
+     * using {@link #addOnMouseMovedEvent(AbstractEvent)} if the position
+     * changed.
      */
     final void updateMousePosition() {
         if (translateMousePosition) {
@@ -325,6 +633,111 @@ public abstract class LummSceneLayer implements IEnableable {
             mousePosition.x = tempMousePosition.x;
             mousePosition.y = tempMousePosition.y;
         }
+
+        // the position may also be changed by the layer this one references
+        if (mousePosition.x != lastMouseX || mousePosition.y != lastMouseY) {
+            lastMouseX = mousePosition.x;
+            lastMouseY = mousePosition.y;
+            for (int i = 0; i < onMouseMovedEvents.size(); i++) {
+                onMouseMovedEvents.get(i).run();
+            }
+        }
+    }
+
+    /**
+     * Adds an event to run when {@link #mousePosition} changes, because the
+     * mouse or the camera moved. Events run while the update thread is idle,
+     * before the scene is rendered.
+     *
+     * @param event
+     *            the event to run
+     */
+    public void addOnMouseMovedEvent(AbstractEvent event) {
+
+        if (event == null)
+            throw new NullPointerException("LummSceneLayer.addOnMouseMovedEvent parameter 'event' of type AbstractEvent is null");
+
+        onMouseMovedEvents.add(event);
+    }
+
+    public boolean removeOnMouseMovedEvent(AbstractEvent event) {
+
+        return onMouseMovedEvents.remove(event);
+    }
+
+    /**
+     * Runs the events added using {@link #addOnUpdatedEvent(AbstractEvent)}.
+     * Called from {@link LummScene#onUpdateInternal()} after the component
+     * pass.
+     */
+    final void onUpdatedInternal() {
+
+        for (int i = 0; i < onUpdatedEvents.size(); i++) {
+            onUpdatedEvents.get(i).run();
+        }
+    }
+
+    /**
+     * Adds an event to run on the update thread after all objects and
+     * components of the scene were updated, once per update pass. Used for
+     * work that needs the results of every update, such as reporting
+     * collisions.
+     *
+     * @param event
+     *            the event to run
+     */
+    public void addOnUpdatedEvent(AbstractEvent event) {
+
+        if (event == null)
+            throw new NullPointerException("LummSceneLayer.addOnUpdatedEvent parameter 'event' of type AbstractEvent is null");
+
+        onUpdatedEvents.add(event);
+    }
+
+    public boolean removeOnUpdatedEvent(AbstractEvent event) {
+
+        return onUpdatedEvents.remove(event);
+    }
+
+    /**
+     * Returns the grid used by the {@link dk.sidereal.lumm.components.triggers.Collider}
+     * instances in the layer, creating it the first time. Is to be called from
+     * the update thread.
+     *
+     * @return the collision grid of the layer
+     */
+    public CollisionGrid getCollisionGrid() {
+
+        if (collisionGrid == null)
+            collisionGrid = new CollisionGrid(this);
+        return collisionGrid;
+    }
+
+    /**
+     * Returns the index used by the {@link Clickable} instances in the layer,
+     * creating it the first time. Is to be called from the update thread.
+     *
+     * @return the clickable index of the layer
+     */
+    public ClickableIndex getClickableIndex() {
+
+        if (clickableIndex == null)
+            clickableIndex = new ClickableIndex(this);
+        return clickableIndex;
+    }
+
+    /**
+     * Returns the tracker used by the {@link Hoverable} instances in the
+     * layer, creating it the first time. Is to be called from the update
+     * thread.
+     *
+     * @return the hover tracker of the layer
+     */
+    public HoverTracker getHoverTracker() {
+
+        if (hoverTracker == null)
+            hoverTracker = new HoverTracker(this);
+        return hoverTracker;
     }
 
     /**
@@ -394,7 +807,164 @@ public abstract class LummSceneLayer implements IEnableable {
 
     }
 
-    /** Method that updates all objects in {@link #objects}. */
+    /**
+     * Copies {@link #objects} to {@link #renderObjects}, sorting them if
+     * {@link #sort} is true, and buffers the state of each object using
+     * {@link LummObject#syncRenderStateInternal()}. Called from
+     * {@link LummScene#onSyncInternal()} while the update thread is idle.
+     */
+    final void syncRenderState() {
+
+        if (objects == null) {
+            renderObjects.clear();
+            return;
+        }
+
+        if (updateLod)
+            getCameraArea(updateLodArea);
+
+        boolean orderDirty = false;
+        for (int i = 0; i < objects.size(); i++) {
+
+            Position position = objects.get(i).position;
+            objects.get(i).syncRenderStateInternal();
+            if (position.isRenderOrderDirty()) {
+                position.clearRenderOrderDirty();
+                orderDirty = true;
+            }
+        }
+
+        // the default order is sorted by key, other comparators every frame
+        if (!sort || objectComparator != defaultComparator) {
+
+            sortedFromSize = -1;
+            renderObjects.clear();
+            renderObjects.addAll(objects);
+
+            if (sort) {
+                try {
+                    Collections.sort(renderObjects, objectComparator);
+                } catch (Exception e) {
+                    Lumm.debug.logError("Unable to sort list of objects in the batch", e);
+                    e.printStackTrace();
+                }
+            }
+            updateRenderIndices();
+            return;
+        }
+
+        if (!orderDirty && isSortedFromObjects())
+            return;
+
+        radixSort();
+        updateRenderIndices();
+    }
+
+    /** Stores the index of each object in {@link #renderObjects} in the object. */
+    private void updateRenderIndices() {
+
+        for (int i = 0; i < renderObjects.size(); i++) {
+            renderObjects.get(i).renderIndex = i;
+        }
+    }
+
+    /**
+     * Returns whether {@link #objects} holds the same objects in the same order
+     * as when {@link #renderObjects} was last sorted.
+     */
+    private boolean isSortedFromObjects() {
+
+        if (sortedFromSize != objects.size())
+            return false;
+
+        for (int i = 0; i < sortedFromSize; i++) {
+            if (sortedFrom[i] != objects.get(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the key objects are sorted by by default, ordering them by
+     * ascending z and then by descending y. Float bits are flipped so that the
+     * keys compare as unsigned integers in the same order as the floats.
+     */
+    private static long getSortKey(Position position) {
+
+        int z = Float.floatToIntBits(position.getRenderZ() + 0f);
+        int y = Float.floatToIntBits(-position.getRenderY() + 0f);
+        z ^= (z >> 31) | 0x80000000;
+        y ^= (y >> 31) | 0x80000000;
+        return ((long) z << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Sorts {@link #objects} into {@link #renderObjects} by
+     * {@link #getSortKey(Position)}, using a stable least significant digit
+     * radix sort over the bytes of the keys. Bytes that are the same in all
+     * keys are skipped.
+     */
+    private void radixSort() {
+
+        int size = objects.size();
+        if (sortKeys == null || sortKeys.length < size) {
+            int capacity = Math.max(16, size + (size >> 1));
+            sortKeys = new long[capacity];
+            sortKeysBuffer = new long[capacity];
+            sortIndices = new int[capacity];
+            sortIndicesBuffer = new int[capacity];
+            sortedFrom = new LummObject[capacity];
+        }
+
+        for (int i = 0; i < size; i++) {
+            sortedFrom[i] = objects.get(i);
+            sortKeys[i] = getSortKey(sortedFrom[i].position);
+            sortIndices[i] = i;
+        }
+        sortedFromSize = size;
+
+        long[] keys = sortKeys, keysBuffer = sortKeysBuffer;
+        int[] indices = sortIndices, indicesBuffer = sortIndicesBuffer;
+
+        for (int shift = 0; shift < 64; shift += 8) {
+
+            Arrays.fill(radixCounts, 0);
+            for (int i = 0; i < size; i++) {
+                radixCounts[(int) (keys[i] >>> shift) & 0xFF]++;
+            }
+
+            // all keys have the same byte, order doesn't change
+            if (size == 0 || radixCounts[(int) (keys[0] >>> shift) & 0xFF] == size)
+                continue;
+
+            int offset = 0;
+            for (int i = 0; i < radixCounts.length; i++) {
+                int count = radixCounts[i];
+                radixCounts[i] = offset;
+                offset += count;
+            }
+
+            for (int i = 0; i < size; i++) {
+                int position = radixCounts[(int) (keys[i] >>> shift) & 0xFF]++;
+                keysBuffer[position] = keys[i];
+                indicesBuffer[position] = indices[i];
+            }
+
+            long[] tempKeys = keys;
+            keys = keysBuffer;
+            keysBuffer = tempKeys;
+            int[] tempIndices = indices;
+            indices = indicesBuffer;
+            indicesBuffer = tempIndices;
+        }
+
+        renderObjects.clear();
+        for (int i = 0; i < size; i++) {
+            renderObjects.add(sortedFrom[indices[i]]);
+        }
+    }
+
+    /** Method that renders all objects in {@link #renderObjects}. */
     final void onRenderInternal() {
 
         try {
@@ -407,18 +977,9 @@ public abstract class LummSceneLayer implements IEnableable {
                 scene = null;
                 return;
             }
-            if (objects.size() == 0)
+            if (renderObjects.size() == 0)
                 return;
 
-            if (sort) {
-                try {
-                    Collections.sort(objects, objectComparator);
-                } catch (Exception e) {
-                    Lumm.debug.logError("Unable to sort list of objects in the batch", e);
-                    e.printStackTrace();
-                }
-            }
-
             updateRenderingArea();
 
             if (shaderUniformValuesEvent != null && shaderType.equals(ShaderType.Update)
@@ -434,20 +995,18 @@ public abstract class LummSceneLayer implements IEnableable {
             spriteBatch.setProjectionMatrix(camera.combined);
             spriteBatch.begin();
 
-            // update objects
-            if (objects != null) {
-                for (int i = 0; i < objects.size(); i++) {
-                    objects.get(i).onRenderInternal();
-                    if (objects == null)
-                        return;
-                }
-                if (Lumm.debug.isEnabled()) {
-                    for (int i = 0; i < objects.size(); i++) {
-                        objects.get(i).onDebugInternal();
-                    }
+            // render objects
+            for (int i = 0; i < renderObjects.size(); i++) {
+                renderObjects.get(i).onRenderInternal();
+                if (objects == null)
+                    return;
+            }
+            if (Lumm.debug.isEnabled()) {
+                for (int i = 0; i < renderObjects.size(); i++) {
+                    renderObjects.get(i).onDebugInternal();
                 }
-
             }
+
             spriteBatch.end();
         } catch (Exception e) {
             Lumm.net.logThrowable(e);
@@ -463,16 +1022,19 @@ public abstract class LummSceneLayer implements IEnableable {
             objects.get(i).onDisposeInternal();
         }
 
-        if (spriteBatch.isDrawing())
-            spriteBatch.end();
+        if (spriteBatch != null) {
+            if (spriteBatch.isDrawing())
+                spriteBatch.end();
 
-        spriteBatch.dispose();
+            spriteBatch.dispose();
+        }
 
-        if (shapeRenderer.isDrawing())
-            shapeRenderer.end();
+        if (shapeRenderer != null) {
+            if (shapeRenderer.isDrawing())
+                shapeRenderer.end();
 
-        shapeRenderer.dispose();
-        new WeakReference<LummSceneLayer>(this);
+            shapeRenderer.dispose();
+        }
 
     }
 
@@ -490,7 +1052,7 @@ public abstract class LummSceneLayer implements IEnableable {
     public final void setShader(ShaderProgram program, AbstractEvent uniformValuesEvent, ShaderType type) {
 
         // not using shaders in the settings.
-        if (!((Boolean) Lumm.data.getSettings(AppData.Settings.USE_SHADERS)))
+        if (!((Boolean) Lumm.data.getSettings(AppData.Settings.USE_SHADERS)) || Lumm.isHeadless())
             return;
 
         // don't handle shader if it GLSL failed compilation
@@ -549,6 +1111,7 @@ public abstract class LummSceneLayer implements IEnableable {
         sort = enabled;
         if (comparator != null)
             objectComparator = comparator;
+        sortedFromSize = -1;
 
     }
 
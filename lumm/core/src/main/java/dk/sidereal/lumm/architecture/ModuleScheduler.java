@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.architecture;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.ObjectMap.Entry;
+
+/**
+ * Order in which {@link LummModule}s are created and updated, built from
+ * {@link LummModule#getDependencies()}.
+ * <p>
+ * Modules are split in levels, every module being in the level after the
+ * highest level of its dependencies. Levels run one after another, while
+ * modules in the same level don't depend on each other, so the ones whose
+ * {@link LummModule#isParallelSafe()} returns true run on a
+ * {@link ForkJoinPool} while the rest run on the calling thread. In levels
+ * without such modules, the calling thread runs one of the parallel modules
+ * itself, so levels with a single module never use the pool.
+ * <p>
+ * Modules with a missing dependency or in a dependency cycle are logged and
+ * left out of the schedule, after which the application exits.
+ *
+ * @author Claudiu Bele
+ */
+class ModuleScheduler {
+
+    // region fields
+
+    private final List<Level> levels;
+
+    // endregion fields
+
+    // region constructors
+
+    ModuleScheduler(ObjectMap<Class<? extends LummModule>, LummModule> modules) {
+
+        levels = new ArrayList<Level>();
+
+        HashMap<LummModule, Integer> depths = new HashMap<LummModule, Integer>();
+        for (Entry<Class<? extends LummModule>, LummModule> entry : modules.entries()) {
+            getDepth(entry.value, modules, depths, new ArrayList<LummModule>());
+        }
+
+        for (Entry<Class<? extends LummModule>, LummModule> entry : modules.entries()) {
+
+            int depth = depths.get(entry.value);
+            if (depth == -1)
+                continue;
+
+            while (levels.size() <= depth) {
+                levels.add(new Level());
+            }
+            if (entry.value.isParallelSafe())
+                levels.get(depth).parallel.add(entry.value);
+            else
+                levels.get(depth).serial.add(entry.value);
+        }
+
+        for (int i = 0; i < levels.size(); i++) {
+            levels.get(i).createTasks();
+        }
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    /** Calls {@link LummModule#onCreateInternal()} on modules not yet initialized. */
+    final void create() {
+
+        run(true);
+    }
+
+    /** Calls {@link LummModule#onUpdateInternal()} on all modules. */
+    final void update() {
+
+        run(false);
+    }
+
+    private void run(boolean create) {
+
+        for (int i = 0; i < levels.size(); i++) {
+
+            Level level = levels.get(i);
+
+            int count = 0;
+            for (int j = 0; j < level.tasks.length; j++) {
+                ModuleTask task = level.tasks[j];
+                if (!create || !task.module.isInitialized()) {
+                    task.create = create;
+                    level.pending[count++] = task;
+                }
+            }
+
+            // without serial modules the calling thread runs the last parallel
+            // module instead of waiting, so single-module levels aren't forked
+            int forked = level.serial.size() == 0 ? count - 1 : count;
+            ForkJoinPool pool = forked > 0 ? ComponentUpdateScheduler.getPool() : null;
+            for (int j = 0; j < forked; j++) {
+                level.pending[j].reinitialize();
+                pool.execute(level.pending[j]);
+            }
+            if (forked < count)
+                level.pending[forked].compute();
+
+            for (int j = 0; j < level.serial.size(); j++) {
+                LummModule module = level.serial.get(j);
+                if (!create)
+                    module.onUpdateInternal();
+                else if (!module.isInitialized())
+                    module.onCreateInternal();
+            }
+
+            for (int j = 0; j < forked; j++) {
+                level.pending[j].join();
+            }
+        }
+    }
+
+    /**
+     * Computes the level of a module, as one more than the highest level of
+     * its dependencies.
+     *
+     * @return the level, or -1 if the module can't be scheduled
+     */
+    private static int getDepth(LummModule module, ObjectMap<Class<? extends LummModule>, LummModule> modules,
+                                HashMap<LummModule, Integer> depths, List<LummModule> path) {
+
+        Integer known = depths.get(module);
+        if (known != null)
+            return known;
+
+        if (path.contains(module)) {
+
+            StringBuilder builder = new StringBuilder("Circular dependency in modules: ");
+            for (int i = path.indexOf(module); i < path.size(); i++) {
+                builder.append(path.get(i).getClass().getName());
+                builder.append(" -> ");
+            }
+            builder.append(module.getClass().getName());
+            Lumm.debug.logError(builder.toString(), new Exception("Circular dependency in modules"));
+            Gdx.app.exit();
+            return -1;
+        }
+
+        path.add(module);
+
+        int depth = 0;
+        List<Class<? extends LummModule>> dependencies = module.getDependencies();
+        for (int i = 0; dependencies != null && i < dependencies.size(); i++) {
+
+            LummModule dependency = modules.get(dependencies.get(i));
+            if (dependency == null) {
+                Lumm.debug.logError("LummModule " + module.getClass().getName() + " has dependency class "
+                        + dependencies.get(i).getName()
+                        + " which was not added to the LummConfiguration. Use LummConfiguration.addModule(LummModule) to add the dependency.",
+                        new NullPointerException());
+                Gdx.app.exit();
+                depth = -1;
+                break;
+            }
+
+            int dependencyDepth = getDepth(dependency, modules, depths, path);
+            if (dependencyDepth == -1) {
+                depth = -1;
+                break;
+            }
+            depth = Math.max(depth, dependencyDepth + 1);
+        }
+
+        path.remove(path.size() - 1);
+        depths.put(module, depth);
+        return depth;
+    }
+
+    // endregion methods
+
+    // region classes
+
+    /** Modules that only depend on modules in earlier levels. */
+    private static class Level {
+
+        final List<LummModule> parallel = new ArrayList<LummModule>();
+
+        final List<LummModule> serial = new ArrayList<LummModule>();
+
+        /** Tasks of the parallel modules, reused every frame. */
+        ModuleTask[] tasks;
+
+        /** Tasks that run in the current pass, the first ones in the array. */
+        ModuleTask[] pending;
+
+        void createTasks() {
+
+            tasks = new ModuleTask[parallel.size()];
+            pending = new ModuleTask[parallel.size()];
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i] = new ModuleTask(parallel.get(i));
+            }
+        }
+    }
+
+    private static class ModuleTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final LummModule module;
+
+        /** Whether the task creates the module or updates it, set before each run. */
+        boolean create;
+
+        ModuleTask(LummModule module) {
+
+            this.module = module;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (create)
+                module.onCreateInternal();
+            else
+                module.onUpdateInternal();
+        }
+    }
+
+    // endregion classes
+}
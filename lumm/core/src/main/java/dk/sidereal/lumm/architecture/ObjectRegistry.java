@@ -0,0 +1,347 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.architecture;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ * Index of the objects in a {@link LummScene}, retrieved using
+ * {@link LummScene#getObjectRegistry()}. Objects can be found in constant time
+ * by {@link LummObject#getType()} and {@link LummObject#getName()}, by
+ * {@link LummObject#getHandle()} and by tag.
+ * <p>
+ * Objects are added when they are added to the scene and removed when they are
+ * removed from it. The indexes are kept up to date when changing the name, type
+ * or tags of an object. Lists returned by {@link #getObjectsOfType(String)} and
+ * {@link #getObjectsWithTag(String)} are read-only live views that can be
+ * iterated by index without allocating.
+ *
+ * @author Claudiu Bele
+ */
+public class ObjectRegistry {
+
+    // region fields
+
+    private static final List<LummObject> EMPTY = Collections.emptyList();
+
+    private final HashMap<String, TypeIndex> types;
+
+    private final IntMap<LummObject> handles;
+
+    private final HashMap<String, Group> tags;
+
+    // endregion fields
+
+    // region constructors
+
+    ObjectRegistry() {
+
+        types = new HashMap<String, TypeIndex>();
+        handles = new IntMap<LummObject>();
+        tags = new HashMap<String, Group>();
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    // region queries
+
+    /**
+     * Returns the object with the given type and name. If more objects share
+     * them, returns one of them.
+     *
+     * @param type
+     *            the type of the object
+     * @param name
+     *            the name of the object
+     * @return the object, or null if none was found
+     */
+    public LummObject get(String type, String name) {
+
+        TypeIndex index = types.get(type);
+        if (index == null)
+            return null;
+
+        ArrayList<LummObject> named = index.names.get(name);
+        return named == null ? null : named.get(named.size() - 1);
+    }
+
+    /**
+     * Returns the object with the given handle.
+     *
+     * @param handle
+     *            the value of {@link LummObject#getHandle()}
+     * @return the object, or null if it is not in the scene
+     */
+    public LummObject get(int handle) {
+
+        return handles.get(handle);
+    }
+
+    /**
+     * Returns all objects of a type.
+     *
+     * @param type
+     *            the type of the objects
+     * @return read-only live list of the objects
+     */
+    public List<LummObject> getObjectsOfType(String type) {
+
+        TypeIndex index = types.get(type);
+        return index == null ? EMPTY : index.view;
+    }
+
+    /**
+     * Returns all objects with a tag.
+     *
+     * @param tag
+     *            the tag of the objects
+     * @return read-only live list of the objects
+     */
+    public List<LummObject> getObjectsWithTag(String tag) {
+
+        Group group = tags.get(tag);
+        return group == null ? EMPTY : group.view;
+    }
+
+    /**
+     * Returns one of the objects with a tag.
+     *
+     * @param tag
+     *            the tag of the object
+     * @return the first object with the tag, or null if there is none
+     */
+    public LummObject getWithTag(String tag) {
+
+        Group group = tags.get(tag);
+        return group == null || group.objects.size() == 0 ? null : group.objects.get(0);
+    }
+
+    public boolean contains(LummObject object) {
+
+        return handles.get(object.getHandle()) == object;
+    }
+
+    /**
+     * Returns the number of objects in the registry.
+     *
+     * @return the number of objects
+     */
+    public int size() {
+
+        return handles.size;
+    }
+
+    // endregion queries
+
+    // region maintenance
+
+    final void add(LummObject object) {
+
+        if (contains(object))
+            return;
+
+        handles.put(object.getHandle(), object);
+        addToType(object, object.getType(), object.getName());
+
+        for (int i = 0; i < object.getTagCount(); i++) {
+            getGroup(object.getTag(i)).objects.add(object);
+        }
+    }
+
+    final void remove(LummObject object) {
+
+        if (!contains(object))
+            return;
+
+        handles.remove(object.getHandle());
+        removeFromType(object, object.getType(), object.getName());
+
+        for (int i = 0; i < object.getTagCount(); i++) {
+            removeFromTag(object, object.getTag(i));
+        }
+    }
+
+    /** Called by {@link LummObject#setName(String)} before the name changes. */
+    final void rename(LummObject object, String newName) {
+
+        if (!contains(object))
+            return;
+
+        TypeIndex index = types.get(object.getType());
+        removeFromName(index, object, object.getName());
+        addToName(index, object, newName);
+    }
+
+    /** Called by {@link LummObject#setType(String)} before the type changes. */
+    final void retype(LummObject object, String newType) {
+
+        if (!contains(object))
+            return;
+
+        removeFromType(object, object.getType(), object.getName());
+        addToType(object, newType, object.getName());
+    }
+
+    final void addTag(LummObject object, String tag) {
+
+        if (contains(object))
+            getGroup(tag).objects.add(object);
+    }
+
+    final void removeTag(LummObject object, String tag) {
+
+        if (contains(object))
+            removeFromTag(object, tag);
+    }
+
+    private void addToType(LummObject object, String type, String name) {
+
+        TypeIndex index = getTypeIndex(type);
+        object.typeIndex = index.objects.size();
+        index.objects.add(object);
+        addToName(index, object, name);
+    }
+
+    private void removeFromType(LummObject object, String type, String name) {
+
+        TypeIndex index = types.get(type);
+        if (index == null || object.typeIndex == -1)
+            return;
+
+        removeFromName(index, object, name);
+
+        // move the last object in its place
+        LummObject last = index.objects.remove(index.objects.size() - 1);
+        if (last != object) {
+            index.objects.set(object.typeIndex, last);
+            last.typeIndex = object.typeIndex;
+        }
+        object.typeIndex = -1;
+    }
+
+    private static void addToName(TypeIndex index, LummObject object, String name) {
+
+        ArrayList<LummObject> named = index.names.get(name);
+        if (named == null) {
+            named = new ArrayList<LummObject>(1);
+            index.names.put(name, named);
+        }
+        object.nameIndex = named.size();
+        named.add(object);
+    }
+
+    /**
+     * Removes an object from the objects sharing its name, so the name is
+     * found again through any of the objects left.
+     */
+    private static void removeFromName(TypeIndex index, LummObject object, String name) {
+
+        ArrayList<LummObject> named = index.names.get(name);
+        if (named == null || object.nameIndex == -1)
+            return;
+
+        LummObject last = named.remove(named.size() - 1);
+        if (last != object) {
+            named.set(object.nameIndex, last);
+            last.nameIndex = object.nameIndex;
+        }
+        object.nameIndex = -1;
+
+        if (named.size() == 0)
+            index.names.remove(name);
+    }
+
+    private void removeFromTag(LummObject object, String tag) {
+
+        Group group = tags.get(tag);
+        if (group != null)
+            removeIdentity(group.objects, object);
+    }
+
+    /** Removes an object by moving the last element in its place. */
+    private static void removeIdentity(ArrayList<LummObject> list, LummObject object) {
+
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == object) {
+                LummObject last = list.remove(list.size() - 1);
+                if (i < list.size())
+                    list.set(i, last);
+                return;
+            }
+        }
+    }
+
+    private TypeIndex getTypeIndex(String type) {
+
+        TypeIndex index = types.get(type);
+        if (index == null) {
+            index = new TypeIndex();
+            types.put(type, index);
+        }
+        return index;
+    }
+
+    private Group getGroup(String tag) {
+
+        Group group = tags.get(tag);
+        if (group == null) {
+            group = new Group();
+            tags.put(tag, group);
+        }
+        return group;
+    }
+
+    // endregion maintenance
+
+    // endregion methods
+
+    // region classes
+
+    /** Objects sharing a tag. */
+    private static class Group {
+
+        final ArrayList<LummObject> objects;
+
+        /** Read-only view of {@link #objects}, created once. */
+        final List<LummObject> view;
+
+        Group() {
+            objects = new ArrayList<LummObject>();
+            view = Collections.unmodifiableList(objects);
+        }
+    }
+
+    /** Objects sharing a type, also indexed by name. */
+    private static class TypeIndex extends Group {
+
+        /** Objects by name, each knowing its index in {@link LummObject#nameIndex}. */
+        final HashMap<String, ArrayList<LummObject>> names;
+
+        TypeIndex() {
+            names = new HashMap<String, ArrayList<LummObject>>();
+        }
+    }
+
+    // endregion classes
+}
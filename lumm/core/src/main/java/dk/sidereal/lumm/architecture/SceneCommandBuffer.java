@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.architecture;
+
+import java.util.Arrays;
+
+/**
+ * Records structural changes to a {@link LummScene} from any thread, applying
+ * them in the order they were recorded the next time the scene is synced,
+ * while the update thread is idle and before rendering. Retrieved using
+ * {@link LummScene#getCommandBuffer()}.
+ * <p>
+ * Creating or removing objects, changing their parent or scene layer and
+ * adding or removing components directly is only safe from the update thread.
+ * Other threads, such as ones used for pathfinding or loading, should record
+ * those changes here instead.
+ * <p>
+ * Commands are kept in arrays that are reused between frames, so recording
+ * doesn't allocate once the buffer has grown to the number of commands used
+ * per frame.
+ *
+ * @author Claudiu Bele
+ */
+public class SceneCommandBuffer {
+
+    // region fields
+
+    private static final int CREATE = 0;
+    private static final int OBTAIN = 1;
+    private static final int DESTROY = 2;
+    private static final int SET_PARENT = 3;
+    private static final int SET_SCENE_LAYER = 4;
+    private static final int ADD_COMPONENT = 5;
+    private static final int REMOVE_COMPONENT = 6;
+    private static final int RUN = 7;
+
+    private static final Object[] NO_PARAMS = new Object[0];
+
+    private final LummScene scene;
+
+    /** Commands recorded since the last {@link #replay()}. */
+    private Commands recording;
+
+    /** Commands being replayed, swapped with {@link #recording} in {@link #replay()}. */
+    private Commands replaying;
+
+    // endregion fields
+
+    // region constructors
+
+    SceneCommandBuffer(LummScene scene) {
+
+        this.scene = scene;
+        this.recording = new Commands();
+        this.replaying = new Commands();
+    }
+
+    // endregion constructors
+
+    // region recording
+
+    /**
+     * Creates an object of the given class using its (LummScene, Object...)
+     * constructor.
+     *
+     * @param type
+     *            the class of the object
+     * @param params
+     *            parameters passed to {@link LummObject#onCreate(Object...)}
+     */
+    public void create(Class<? extends LummObject> type, Object... params) {
+
+        if (type == null)
+            throw new NullPointerException("SceneCommandBuffer.create parameter 'type' of type Class is null");
+
+        record(CREATE, type, params == null ? NO_PARAMS : params);
+    }
+
+    /**
+     * Gets an object of the given class using
+     * {@link LummScene#obtain(Class, Object...)}.
+     *
+     * @param type
+     *            the class of the object
+     * @param params
+     *            parameters passed to {@link LummObject#onCreate(Object...)}
+     *            or {@link LummObject#onReset(Object...)}
+     */
+    public void obtain(Class<? extends LummObject> type, Object... params) {
+
+        if (type == null)
+            throw new NullPointerException("SceneCommandBuffer.obtain parameter 'type' of type Class is null");
+
+        record(OBTAIN, type, params == null ? NO_PARAMS : params);
+    }
+
+    /**
+     * Removes an object from the scene using
+     * {@link LummScene#removeobject(LummObject)}.
+     *
+     * @param object
+     *            the object to remove
+     */
+    public void destroy(LummObject object) {
+
+        if (object == null)
+            throw new NullPointerException("SceneCommandBuffer.destroy parameter 'object' of type LummObject is null");
+
+        record(DESTROY, object, null);
+    }
+
+    /**
+     * Changes the parent of an object using
+     * {@link LummObject#setParent(LummObject)}.
+     *
+     * @param object
+     *            the child object
+     * @param parent
+     *            the new parent, or null to remove the current one
+     */
+    public void setParent(LummObject object, LummObject parent) {
+
+        if (object == null)
+            throw new NullPointerException("SceneCommandBuffer.setParent parameter 'object' of type LummObject is null");
+
+        record(SET_PARENT, object, parent);
+    }
+
+    /**
+     * Moves an object to another scene layer using
+     * {@link LummObject#setSceneLayer(String)}.
+     *
+     * @param object
+     *            the object to move
+     * @param layerName
+     *            the name of the target scene layer
+     */
+    public void setSceneLayer(LummObject object, String layerName) {
+
+        if (object == null)
+            throw new NullPointerException(
+                    "SceneCommandBuffer.setSceneLayer parameter 'object' of type LummObject is null");
+
+        record(SET_SCENE_LAYER, object, layerName);
+    }
+
+    /**
+     * Adds a component to an object using the component's (LummObject)
+     * constructor.
+     *
+     * @param object
+     *            the object to add the component to
+     * @param type
+     *            the class of the component
+     */
+    public void addComponent(LummObject object, Class<? extends LummComponent> type) {
+
+        if (object == null || type == null)
+            throw new NullPointerException("SceneCommandBuffer.addComponent parameters can't be null");
+
+        record(ADD_COMPONENT, object, type);
+    }
+
+    /**
+     * Removes a component from an object using
+     * {@link LummObject#removeComponent(Class)}.
+     *
+     * @param object
+     *            the object to remove the component from
+     * @param type
+     *            the class of the component
+     */
+    public void removeComponent(LummObject object, Class<? extends LummComponent> type) {
+
+        if (object == null || type == null)
+            throw new NullPointerException("SceneCommandBuffer.removeComponent parameters can't be null");
+
+        record(REMOVE_COMPONENT, object, type);
+    }
+
+    /**
+     * Runs an event when the buffer is replayed, for changes that need more
+     * than the other commands, such as configuring a newly created object.
+     *
+     * @param event
+     *            the event to run
+     * @param params
+     *            parameters passed to {@link AbstractEvent#run(Object...)}
+     */
+    public void run(AbstractEvent event, Object... params) {
+
+        if (event == null)
+            throw new NullPointerException("SceneCommandBuffer.run parameter 'event' of type AbstractEvent is null");
+
+        record(RUN, event, params == null ? NO_PARAMS : params);
+    }
+
+    private void record(int command, Object first, Object second) {
+
+        synchronized (this) {
+            recording.add(command, first, second);
+        }
+    }
+
+    // endregion recording
+
+    // region replaying
+
+    /**
+     * Returns the number of commands recorded and not yet replayed.
+     *
+     * @return the number of pending commands
+     */
+    public synchronized int size() {
+
+        return recording.size;
+    }
+
+    /**
+     * Applies all commands recorded so far. Called from
+     * {@link LummScene#onSyncInternal()}. Commands recorded while replaying
+     * are applied in the next sync.
+     */
+    @SuppressWarnings("unchecked")
+    final void replay() {
+
+        Commands commands;
+        synchronized (this) {
+            if (recording.size == 0)
+                return;
+
+            commands = recording;
+            recording = replaying;
+            replaying = commands;
+        }
+
+        for (int i = 0; i < commands.size; i++) {
+
+            Object first = commands.first[i];
+            Object second = commands.second[i];
+
+            try {
+                switch (commands.types[i]) {
+                    case CREATE:
+                        scene.instantiate((Class<? extends LummObject>) first, (Object[]) second);
+                        break;
+                    case OBTAIN:
+                        scene.obtain((Class<? extends LummObject>) first, (Object[]) second);
+                        break;
+                    case DESTROY:
+                        scene.removeobject((LummObject) first);
+                        break;
+                    case SET_PARENT:
+                        ((LummObject) first).setParent((LummObject) second);
+                        break;
+                    case SET_SCENE_LAYER:
+                        ((LummObject) first).setSceneLayer((String) second);
+                        break;
+                    case ADD_COMPONENT:
+                        ((Class<? extends LummComponent>) second).getConstructor(LummObject.class)
+                                .newInstance(first);
+                        break;
+                    case REMOVE_COMPONENT:
+                        ((LummObject) first).removeComponent((Class<? extends LummComponent>) second);
+                        break;
+                    case RUN:
+                        ((AbstractEvent) first).run((Object[]) second);
+                        break;
+                }
+            } catch (Exception e) {
+                Lumm.debug.logError("SceneCommandBuffer failed to replay command " + commands.types[i], e);
+            }
+        }
+
+        commands.clear();
+    }
+
+    // endregion replaying
+
+    // region classes
+
+    /** Growable arrays holding recorded commands and their arguments. */
+    private static final class Commands {
+
+        int[] types = new int[32];
+
+        Object[] first = new Object[32];
+
+        Object[] second = new Object[32];
+
+        int size;
+
+        void add(int type, Object firstArgument, Object secondArgument) {
+
+            if (size == types.length) {
+                int capacity = size * 2;
+                types = Arrays.copyOf(types, capacity);
+                first = Arrays.copyOf(first, capacity);
+                second = Arrays.copyOf(second, capacity);
+            }
+
+            types[size] = type;
+            first[size] = firstArgument;
+            second[size] = secondArgument;
+            size++;
+        }
+
+        /** Releases references to the arguments so they can be collected. */
+        void clear() {
+
+            Arrays.fill(first, 0, size, null);
+            Arrays.fill(second, 0, size, null);
+            size = 0;
+        }
+    }
+
+    // endregion classes
+}
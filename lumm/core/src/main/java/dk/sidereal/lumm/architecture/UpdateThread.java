@@ -1,34 +1,163 @@
 package dk.sidereal.lumm.architecture;
 
-import com.badlogic.gdx.utils.ObjectMap.Entry;
 
+import dk.sidereal.lumm.architecture.core.AppData;
+import dk.sidereal.lumm.architecture.core.Time;
+
+/**
+ * Runs the update pass of all {@link LummModule} instances and of the current
+ * {@link LummScene}.
+ * <p>
+ * If {@link AppData.Settings#MULTI_THREADED} is disabled, {@link Lumm#render()}
+ * calls {@link #update()} on the rendering thread before rendering the scene.
+ * <p>
+ * If the setting is enabled, the thread is started the first time an update is
+ * requested using {@link #startUpdate()}. The update pass then runs in parallel
+ * with rendering, the rendering thread reading the state buffered in
+ * {@link LummScene#onSyncInternal()} and waiting for the pass to finish using
+ * {@link #waitForUpdate()} at the end of the frame.
+ *
+ * @author Claudiu Bele
+ */
 public class UpdateThread extends Thread {
 
+    /** Monitor used for signalling between the rendering and update thread. */
+    private final Object lock;
+
+    /**
+     * Whether an update pass has been requested in {@link #startUpdate()} and
+     * has not finished yet.
+     */
+    private boolean updating;
+
+    /** Whether the thread loop should keep running. Set to false in {@link #finish()}. */
+    private volatile boolean running;
+
+    public UpdateThread() {
+        super("Lumm update thread");
+        setDaemon(true);
+        this.lock = new Object();
+    }
+
+    /**
+     * Thread loop, running an update pass every time one is requested using
+     * {@link #startUpdate()}. Do not call this manually, use {@link #update()}
+     * for updating on the calling thread.
+     */
     @Override
     public void run() {
 
+        while (running) {
+
+            synchronized (lock) {
+                while (running && !updating) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                }
+            }
+
+            if (running)
+                update();
+
+            synchronized (lock) {
+                updating = false;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Updates all modules and the current scene on the calling thread. Modules
+     * are updated once per frame. If {@link Time#isFixedTimeStep()} is true,
+     * the scene's update pass runs once for every fixed step elapsed since the
+     * last frame, as returned by {@link Time#accumulateFrameTime(float)}.
+     */
+    final void update() {
+
         if (!Lumm.disposed) {
 
             try {
 
-                // update all modules
-                for (Entry<Class<? extends LummModule>, LummModule> entry : Lumm.modules.entries()) {
-                    entry.value.onUpdateInternal();
+                // update all modules, after the modules they depend on. Input
+                // and asset polling only need to run once per frame
+                Lumm.getModuleScheduler().update();
+
+                int steps = Lumm.time.accumulateFrameTime(Lumm.getRawDeltaTime());
+                for (int i = 0; i < steps; i++) {
+
+                    Lumm.time.advance();
+
+                    // mark instances with an update frequency that are due
+                    Lumm.updateWheel.advance();
+
+                    // wake instances whose sleep time has passed
+                    UpdateWheel.Entry fired;
+                    while ((fired = Lumm.updateWheel.pollFired()) != null) {
+                        if (fired.owner instanceof LummObject)
+                            ((LummObject) fired.owner).wake();
+                        else if (fired.owner instanceof LummComponent)
+                            ((LummComponent) fired.owner).wake();
+                    }
+
+                    Lumm.getScene().onUpdateInternal();
                 }
+            } catch (Exception e) {
+                Lumm.net.logThrowable(e);
+            }
+        }
 
+    }
 
-                Lumm.getScene().onUpdateInternal();
+    /**
+     * Requests an update pass to run on this thread, starting the thread if it
+     * hasn't been started before. Returns without waiting for the pass to
+     * finish.
+     */
+    final void startUpdate() {
 
+        if (getState() == State.NEW) {
+            running = true;
+            start();
+        }
+
+        synchronized (lock) {
+            updating = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until the update pass requested in {@link #startUpdate()} is
+     * finished. Returns immediately if no pass is in progress or if called
+     * from the update thread itself.
+     */
+    final void waitForUpdate() {
+
+        if (Thread.currentThread() == this)
+            return;
+
+        synchronized (lock) {
+            while (updating) {
                 try {
-                    Thread.sleep(1);
+                    lock.wait();
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    Thread.currentThread().interrupt();
+                    return;
                 }
-            } catch (Exception e) {
-                Lumm.net.logThrowable(e);
             }
         }
+    }
 
+    /** Stops the thread loop after the current update pass, if any. */
+    final void finish() {
+
+        running = false;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
     }
 
 }
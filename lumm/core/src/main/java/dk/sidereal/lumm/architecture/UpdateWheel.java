@@ -0,0 +1,379 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.architecture;
+
+import java.util.ArrayList;
+
+/**
+ * Hierarchical timing wheel keeping track of when {@link LummModule},
+ * {@link LummObject} and {@link LummComponent} instances with an update
+ * frequency higher than 0 have to update.
+ * <p>
+ * Instead of every instance reading the clock each update pass, the wheel is
+ * advanced once per pass in {@link UpdateThread#update()}, only visiting the
+ * entries that are due and setting {@link Entry#due} on them. The update pass
+ * then runs the instances whose flag is set, and clears it.
+ * <p>
+ * The wheel uses ticks of one millisecond, split over {@link #LEVELS} levels of
+ * {@link #SLOTS} slots, each level covering {@link #SLOTS} times the range of
+ * the previous one. Entries are moved to lower levels as their time gets
+ * closer. The first update of a newly scheduled entry is delayed by a part of
+ * its period, so instances with the same frequency are spread over different
+ * passes instead of all updating in the same one.
+ * <p>
+ * Entries scheduled using {@link #scheduleOnce(Entry, float)} are used for
+ * waking sleeping instances. They fire only once and are collected until
+ * taken using {@link #pollFired()}.
+ *
+ * @author Claudiu Bele
+ */
+class UpdateWheel {
+
+    // region fields
+
+    private static final int SLOT_BITS = 6;
+
+    private static final int SLOTS = 1 << SLOT_BITS;
+
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private static final int LEVELS = 4;
+
+    /** Number of ticks covered by all levels of the wheel. */
+    private static final long RANGE = 1L << (SLOT_BITS * LEVELS);
+
+    /**
+     * Number of ticks above which {@link #advance()} rebuilds the wheel instead
+     * of going through the elapsed ticks one by one, for example after the
+     * application was paused.
+     */
+    private static final long MAX_CATCH_UP = 1L << (SLOT_BITS * 2);
+
+    /** Fractional part of the golden ratio, used for spreading entries. */
+    private static final double STAGGER_STEP = 0.6180339887498949;
+
+    /** Heads of the entry lists in each slot, by level. */
+    private final Entry[][] slots;
+
+    /** Time the wheel was created at, ticks being measured from it. */
+    private final long startNanos;
+
+    /** The last tick that was processed. */
+    private long currentTick;
+
+    /** Number of entries in the wheel. */
+    private int size;
+
+    /** Low-discrepancy sequence used for picking the delay of new entries. */
+    private double stagger;
+
+    /** One-shot entries that fired and were not yet taken in {@link #pollFired()}. */
+    private final ArrayList<Entry> fired;
+
+    // endregion fields
+
+    // region constructors
+
+    UpdateWheel() {
+
+        slots = new Entry[LEVELS][SLOTS];
+        startNanos = System.nanoTime();
+        fired = new ArrayList<Entry>();
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    /**
+     * Schedules an entry to become due every <code>milliseconds</code>,
+     * removing it from the wheel if the value is 0 or -1. Does nothing if the
+     * entry is already scheduled with the same frequency.
+     *
+     * @param entry
+     *            the entry of the instance to update
+     * @param milliseconds
+     *            the update frequency of the instance
+     */
+    final synchronized void schedule(Entry entry, float milliseconds) {
+
+        if (milliseconds <= 0) {
+            cancel(entry);
+            entry.due = false;
+            return;
+        }
+
+        long period = Math.max(1, (long) Math.ceil(milliseconds));
+        if (entry.level != -1 && entry.period == period)
+            return;
+
+        cancel(entry);
+        entry.oneShot = false;
+
+        stagger += STAGGER_STEP;
+        if (stagger >= 1)
+            stagger -= 1;
+
+        entry.period = period;
+        entry.dueTick = currentTick + 1 + (long) (stagger * period);
+        insert(entry);
+    }
+
+    /**
+     * Schedules an entry to fire once after <code>milliseconds</code>, after
+     * which it is returned by {@link #pollFired()}. Replaces the previous time
+     * if the entry is already scheduled.
+     *
+     * @param entry
+     *            the entry of the instance to wake
+     * @param milliseconds
+     *            the time until the entry fires
+     */
+    final synchronized void scheduleOnce(Entry entry, float milliseconds) {
+
+        cancel(entry);
+
+        entry.oneShot = true;
+        entry.period = 0;
+        entry.dueTick = currentTick + Math.max(1, (long) Math.ceil(milliseconds));
+        insert(entry);
+    }
+
+    /**
+     * Takes one of the one-shot entries that fired since the last call.
+     *
+     * @return the entry, or null if none fired
+     */
+    final synchronized Entry pollFired() {
+
+        return fired.size() == 0 ? null : fired.remove(fired.size() - 1);
+    }
+
+    /**
+     * Removes an entry from the wheel, if it is in it.
+     *
+     * @param entry
+     *            the entry to remove
+     */
+    final synchronized void cancel(Entry entry) {
+
+        if (entry.level == -1) {
+            // fired but not yet taken
+            if (entry.oneShot)
+                fired.remove(entry);
+            return;
+        }
+
+        if (entry.prev != null)
+            entry.prev.next = entry.next;
+        else
+            slots[entry.level][entry.slot] = entry.next;
+
+        if (entry.next != null)
+            entry.next.prev = entry.prev;
+
+        entry.prev = entry.next = null;
+        entry.level = -1;
+        size--;
+    }
+
+    /**
+     * Processes all ticks elapsed since the last call, setting
+     * {@link Entry#due} on the entries whose time has come and scheduling
+     * their next update.
+     */
+    final synchronized void advance() {
+
+        long now = (System.nanoTime() - startNanos) / 1000000L;
+
+        if (now - currentTick > MAX_CATCH_UP) {
+            rebuild(now);
+            return;
+        }
+
+        while (currentTick < now) {
+
+            currentTick++;
+
+            // move entries from higher levels when a lower level wraps around
+            for (int level = 1; level < LEVELS; level++) {
+
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0)
+                    break;
+
+                Entry entry = detach(level, (int) (currentTick >> (SLOT_BITS * level)) & SLOT_MASK);
+                while (entry != null) {
+                    Entry next = entry.next;
+                    insert(entry);
+                    entry = next;
+                }
+            }
+
+            Entry entry = detach(0, (int) currentTick & SLOT_MASK);
+            while (entry != null) {
+                Entry next = entry.next;
+                expire(entry);
+                entry = next;
+            }
+        }
+    }
+
+    /**
+     * Sets the entry as due if its tick has come and schedules it again, or
+     * puts it back in the wheel otherwise.
+     */
+    private void expire(Entry entry) {
+
+        if (entry.oneShot && entry.dueTick <= currentTick) {
+            fired.add(entry);
+            return;
+        }
+
+        if (entry.dueTick <= currentTick) {
+            entry.due = true;
+            entry.dueTick = currentTick + entry.period;
+        }
+        insert(entry);
+    }
+
+    /**
+     * Takes all entries out of the wheel and puts them back relative to
+     * <code>now</code>, setting the ones whose time has passed as due.
+     */
+    private void rebuild(long now) {
+
+        Entry all = null;
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+
+                Entry entry = detach(level, slot);
+                while (entry != null) {
+                    Entry next = entry.next;
+                    entry.next = all;
+                    all = entry;
+                    entry = next;
+                }
+            }
+        }
+
+        currentTick = now;
+        while (all != null) {
+            Entry next = all.next;
+            expire(all);
+            all = next;
+        }
+    }
+
+    private void insert(Entry entry) {
+
+        long delta = entry.dueTick - currentTick;
+        long tick = entry.dueTick;
+
+        // entries further than the wheel's range are moved again when reached
+        if (delta >= RANGE) {
+            delta = RANGE - 1;
+            tick = currentTick + delta;
+        }
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1))))
+            level++;
+
+        int slot = (int) (tick >> (SLOT_BITS * level)) & SLOT_MASK;
+
+        entry.level = level;
+        entry.slot = slot;
+        entry.prev = null;
+        entry.next = slots[level][slot];
+        if (entry.next != null)
+            entry.next.prev = entry;
+        slots[level][slot] = entry;
+        size++;
+    }
+
+    /** Removes and returns the list of entries in a slot. */
+    private Entry detach(int level, int slot) {
+
+        Entry head = slots[level][slot];
+        slots[level][slot] = null;
+
+        for (Entry entry = head; entry != null; entry = entry.next) {
+            entry.level = -1;
+            entry.prev = null;
+            size--;
+        }
+        return head;
+    }
+
+    /**
+     * Returns the number of instances with an update frequency higher than 0.
+     *
+     * @return the number of entries in the wheel
+     */
+    final synchronized int size() {
+
+        return size;
+    }
+
+    // endregion methods
+
+    // region classes
+
+    /**
+     * Scheduling data of an instance that can be updated at a set frequency.
+     * Each instance holds its own entry.
+     */
+    static final class Entry {
+
+        Entry prev;
+
+        Entry next;
+
+        /** Level of the wheel the entry is in, or -1 if not in the wheel. */
+        int level = -1;
+
+        int slot;
+
+        long dueTick;
+
+        /** Number of ticks between updates. */
+        long period;
+
+        /**
+         * Whether the instance has to update in the current pass. Set by
+         * {@link UpdateWheel#advance()} and cleared by the instance when
+         * updating.
+         */
+        boolean due;
+
+        /** Whether the entry fires once, scheduled using {@link UpdateWheel#scheduleOnce(Entry, float)}. */
+        boolean oneShot;
+
+        /** The {@link LummObject} or {@link LummComponent} to wake when a one-shot entry fires. */
+        final Object owner;
+
+        Entry() {
+            this(null);
+        }
+
+        Entry(Object owner) {
+            this.owner = owner;
+        }
+    }
+
+    // endregion classes
+}
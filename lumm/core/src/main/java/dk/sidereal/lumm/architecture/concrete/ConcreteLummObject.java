@@ -14,11 +14,11 @@ import dk.sidereal.lumm.architecture.LummScene;
 public class ConcreteLummObject extends LummObject {
 
     public ConcreteLummObject() {
-        this(Lumm.getScene(), (Object[]) null);
+        this(Lumm.getCreationScene(), (Object[]) null);
     }
 
     public ConcreteLummObject(Object... params) {
-        this(Lumm.getScene(), params);
+        this(Lumm.getCreationScene(), params);
     }
 
     /**
@@ -732,6 +732,12 @@ public class AppData extends LummModule {
         return modules;
     }
 
+    /** Scanning the data folder only touches files, so it can run with other modules. */
+    @Override
+    protected boolean isParallelSafe() {
+        return true;
+    }
+
 
     // endregion internal
 
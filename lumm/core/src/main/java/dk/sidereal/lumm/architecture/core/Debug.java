@@ -276,7 +276,7 @@ public class Debug extends LummModule {
      * @param tag     log tag
      * @param message
      */
-    private void log(String logType, String tag, String message, Throwable exception) {
+    private synchronized void log(String logType, String tag, String message, Throwable exception) {
 
         if (logType.equals(Log.LOG_ERROR)) {
             if (exception != null)
@@ -633,4 +633,10 @@ public class Net extends LummModule {
         return null;
     }
 
+    /** Requests are sent asynchronously and only touch the module's own state. */
+    @Override
+    protected boolean isParallelSafe() {
+        return true;
+    }
+
 }
@@ -2,10 +2,22 @@ package dk.sidereal.lumm.architecture.core;
 
 import java.util.List;
 
-import com.badlogic.gdx.Gdx;
+import dk.sidereal.lumm.architecture.Lumm;
 import dk.sidereal.lumm.architecture.LummConfiguration;
 import dk.sidereal.lumm.architecture.LummModule;
-
+import dk.sidereal.lumm.architecture.pos.Position;
+
+/**
+ * Keeps track of the time between update passes, as well as the time scale.
+ * <p>
+ * By default an update pass runs once per rendered frame, using the time
+ * between frames as delta time. If a fixed time step is set using
+ * {@link LummConfiguration#fixedTimeStep} or {@link #setFixedTimeStep(float)},
+ * frame time is accumulated and the update pass runs once for every elapsed
+ * time step, at most {@link #getMaxFixedStepsPerFrame()} times per frame. The
+ * remainder is exposed as {@link #getInterpolationAlpha()}, used to blend
+ * between the previous and current {@link Position} when rendering.
+ */
 public class Time extends LummModule {
 
     float timeScale;
@@ -16,10 +28,40 @@ public class Time extends LummModule {
 
     float deltaTime;
 
+    /**
+     * Sum of {@link #getDeltaTime()} over all update passes, in seconds. Kept
+     * as a double so differences stay precise in long sessions.
+     */
+    double scaledTimeInGame;
+
+    /** Duration of a fixed update step, in seconds. 0 if not using fixed steps. */
+    float fixedTimeStep;
+
+    /**
+     * Maximum number of fixed steps to run in one frame. Time exceeding it is
+     * dropped, so slow frames don't cause more and more catch-up steps.
+     */
+    int maxFixedStepsPerFrame;
+
+    /** Frame time not yet consumed by fixed steps. */
+    float accumulator;
+
+    /** Ratio between {@link #accumulator} and {@link #fixedTimeStep}. */
+    float interpolationAlpha;
+
+    /** Number of fixed steps run since startup. */
+    long fixedStepCount;
+
+    /** Number of fixed steps dropped due to {@link #maxFixedStepsPerFrame}. */
+    long droppedFixedSteps;
+
     public Time(LummConfiguration cfg) {
         super(cfg);
         timeScale = 1;
         timeInGame = timeInScene = 0;
+        interpolationAlpha = 1;
+        maxFixedStepsPerFrame = Math.max(1, cfg.maxFixedStepsPerFrame);
+        setFixedTimeStep(cfg.fixedTimeStep);
     }
 
     public float getDeltaTime() {
@@ -51,15 +93,156 @@ public class Time extends LummModule {
         return 0;
     }
 
+    /**
+     * Returns the time passed in update passes since startup, affected by the
+     * time scale. Used for measuring the time between two updates of an
+     * instance that doesn't update every pass.
+     *
+     * @return the sum of {@link #getDeltaTime()} over all update passes
+     */
+    public double getScaledTimeInGame() {
+
+        return scaledTimeInGame;
+    }
+
+    // region fixed time step
+
+    /**
+     * Sets the duration of a fixed update step, in seconds. Pass 0 to update
+     * once per rendered frame using the frame time.
+     *
+     * @param seconds
+     *            duration of a step, for example 1/30f for 30 updates per
+     *            second.
+     */
+    public void setFixedTimeStep(float seconds) {
+
+        if (seconds < 0) {
+            Lumm.debug.logDebug("Trying to set the fixed time step to " + seconds + " seconds", null);
+            return;
+        }
+
+        this.fixedTimeStep = seconds;
+        this.accumulator = 0;
+        this.interpolationAlpha = 1;
+    }
+
+    public float getFixedTimeStep() {
+
+        return fixedTimeStep;
+    }
+
+    public boolean isFixedTimeStep() {
+
+        return fixedTimeStep > 0;
+    }
+
+    public void setMaxFixedStepsPerFrame(int steps) {
+
+        this.maxFixedStepsPerFrame = Math.max(1, steps);
+    }
+
+    public int getMaxFixedStepsPerFrame() {
+
+        return maxFixedStepsPerFrame;
+    }
+
+    /**
+     * Returns how far the current frame is between the previous and the last
+     * fixed step, from 0 to 1. Is always 1 if not using a fixed time step.
+     *
+     * @return interpolation factor between previous and current state
+     */
+    public float getInterpolationAlpha() {
+
+        return interpolationAlpha;
+    }
+
+    /**
+     * Returns the number of fixed steps run since startup. Is used by
+     * {@link Position} to know whether its previous position was stored in the
+     * last step.
+     *
+     * @return number of fixed steps run so far
+     */
+    public long getFixedStepCount() {
+
+        return fixedStepCount;
+    }
+
+    /**
+     * Returns the number of fixed steps that were dropped because a frame took
+     * longer than {@link #getMaxFixedStepsPerFrame()} steps.
+     *
+     * @return number of fixed steps dropped so far
+     */
+    public long getDroppedFixedSteps() {
+
+        return droppedFixedSteps;
+    }
+
+    /**
+     * Adds the frame time to the accumulator and returns how many update passes
+     * to run this frame. Called internally once per frame before updating.
+     * <p>
+     * Returns 1 if not using a fixed time step.
+     *
+     * @param frameTime
+     *            time since the last frame, in seconds
+     * @return number of update passes to run
+     */
+    public int accumulateFrameTime(float frameTime) {
+
+        if (!isFixedTimeStep())
+            return 1;
+
+        accumulator += frameTime;
+
+        int steps = (int) (accumulator / fixedTimeStep);
+        if (steps > maxFixedStepsPerFrame) {
+            droppedFixedSteps += steps - maxFixedStepsPerFrame;
+            steps = maxFixedStepsPerFrame;
+        }
+        accumulator -= steps * fixedTimeStep;
+
+        // drop time that couldn't be caught up on
+        if (accumulator >= fixedTimeStep)
+            accumulator %= fixedTimeStep;
+
+        interpolationAlpha = accumulator / fixedTimeStep;
+        return steps;
+    }
+
+    // endregion
+
     @Override
     public void onCreate() {
     }
 
+    /**
+     * Time is advanced per update pass in {@link #advance()} instead, as the
+     * modules are only updated once per frame.
+     */
     @Override
     public void onUpdate() {
-        deltaTime = Gdx.graphics.getRawDeltaTime();
-        timeInGame += Gdx.graphics.getRawDeltaTime();
-        timeInScene += Gdx.graphics.getRawDeltaTime();
+    }
+
+    /**
+     * Advances the time by one update pass: a fixed step if using a fixed time
+     * step, or the frame time otherwise. Called internally before every update
+     * pass of the scene.
+     */
+    public void advance() {
+
+        if (isFixedTimeStep()) {
+            fixedStepCount++;
+            deltaTime = fixedTimeStep;
+        } else {
+            deltaTime = Lumm.getRawDeltaTime();
+        }
+        timeInGame += deltaTime;
+        timeInScene += deltaTime;
+        scaledTimeInGame += deltaTime * timeScale;
     }
 
     @Override
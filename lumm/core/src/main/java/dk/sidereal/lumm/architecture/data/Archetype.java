@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.architecture.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import dk.sidereal.lumm.architecture.LummObject;
+
+/**
+ * Storage of all entities in an {@link EntityStore} that have the same set of
+ * {@link DataType}s. Every field of every type is kept in its own primitive
+ * array, entity <code>i</code> of the archetype being at index <code>i</code>
+ * in all of them, so a {@link DataSystem} can go through the entities
+ * linearly.
+ * <p>
+ * Arrays returned by {@link #getFloats(DataType, int)} and
+ * {@link #getInts(DataType, int)} are only valid until entities are added to or
+ * removed from the archetype, and may be longer than {@link #size()}.
+ *
+ * @author Claudiu Bele
+ */
+public final class Archetype {
+
+    // region fields
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Types of the archetype, sorted by {@link DataType#id}. */
+    final DataType[] types;
+
+    /** Ids of the types in {@link #types}. */
+    final BitSet signature;
+
+    /** Float fields, by type index and field index. */
+    private float[][][] floats;
+
+    /** Int fields, by type index and field index. */
+    private int[][][] ints;
+
+    /** Entity at each row. */
+    private int[] entities;
+
+    /** Object each row belongs to, if created through {@link DataComponent}. */
+    private LummObject[] objects;
+
+    private int size;
+
+    private int capacity;
+
+    /**
+     * Archetypes entities move to when adding a type, by {@link DataType#id},
+     * filled in by {@link EntityStore} as they are used.
+     */
+    private Archetype[] addTransitions;
+
+    /** Archetypes entities move to when removing a type, by {@link DataType#id}. */
+    private Archetype[] removeTransitions;
+
+    // endregion fields
+
+    // region constructors
+
+    Archetype(DataType[] types, BitSet signature) {
+
+        this.types = types;
+        this.signature = signature;
+        this.capacity = INITIAL_CAPACITY;
+        this.entities = new int[capacity];
+        this.objects = new LummObject[capacity];
+        this.floats = new float[types.length][][];
+        this.ints = new int[types.length][][];
+        this.addTransitions = new Archetype[0];
+        this.removeTransitions = new Archetype[0];
+
+        for (int i = 0; i < types.length; i++) {
+            floats[i] = new float[types[i].floatFields][capacity];
+            ints[i] = new int[types[i].intFields][capacity];
+        }
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    /**
+     * Returns the number of entities in the archetype.
+     *
+     * @return the number of rows in use in each array
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean has(DataType type) {
+        return signature.get(type.id);
+    }
+
+    public DataType[] getTypes() {
+        return types.clone();
+    }
+
+    /**
+     * Returns the array holding a float field of a type for all entities in
+     * the archetype.
+     *
+     * @param type
+     *            the type of the field
+     * @param field
+     *            the index of the field in the type
+     * @return the field's array
+     * @throws IllegalArgumentException
+     *             if the archetype doesn't contain the type
+     */
+    public float[] getFloats(DataType type, int field) {
+        return floats[indexOf(type)][field];
+    }
+
+    /**
+     * Returns the array holding an int field of a type for all entities in the
+     * archetype.
+     *
+     * @param type
+     *            the type of the field
+     * @param field
+     *            the index of the field in the type
+     * @return the field's array
+     * @throws IllegalArgumentException
+     *             if the archetype doesn't contain the type
+     */
+    public int[] getInts(DataType type, int field) {
+        return ints[indexOf(type)][field];
+    }
+
+    public int getEntity(int row) {
+        return entities[row];
+    }
+
+    /**
+     * Returns the object that the entity at a row was created for, if any.
+     *
+     * @param row
+     *            the row of the entity
+     * @return the object, or null if the entity was created without one
+     */
+    public LummObject getObject(int row) {
+        return objects[row];
+    }
+
+    /** Returns the archetype having this one's types plus a type, null if not known yet. */
+    Archetype getAddTransition(DataType type) {
+        return type.id < addTransitions.length ? addTransitions[type.id] : null;
+    }
+
+    void setAddTransition(DataType type, Archetype archetype) {
+
+        if (type.id >= addTransitions.length)
+            addTransitions = Arrays.copyOf(addTransitions, type.id + 1);
+        addTransitions[type.id] = archetype;
+    }
+
+    /** Returns the archetype having this one's types minus a type, null if not known yet. */
+    Archetype getRemoveTransition(DataType type) {
+        return type.id < removeTransitions.length ? removeTransitions[type.id] : null;
+    }
+
+    void setRemoveTransition(DataType type, Archetype archetype) {
+
+        if (type.id >= removeTransitions.length)
+            removeTransitions = Arrays.copyOf(removeTransitions, type.id + 1);
+        removeTransitions[type.id] = archetype;
+    }
+
+    int indexOf(DataType type) {
+
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == type)
+                return i;
+        }
+        throw new IllegalArgumentException("Archetype does not contain data type " + type.name);
+    }
+
+    /**
+     * Adds a row for an entity, with all fields set to 0.
+     *
+     * @return the row of the entity
+     */
+    int add(int entity, LummObject object) {
+
+        if (size == capacity)
+            grow();
+
+        entities[size] = entity;
+        objects[size] = object;
+        for (int i = 0; i < types.length; i++) {
+            for (int j = 0; j < floats[i].length; j++)
+                floats[i][j][size] = 0;
+            for (int j = 0; j < ints[i].length; j++)
+                ints[i][j][size] = 0;
+        }
+        return size++;
+    }
+
+    /**
+     * Removes a row by moving the last row in its place.
+     *
+     * @return the entity that was moved to the row, or -1 if the last row was
+     *         removed
+     */
+    int remove(int row) {
+
+        int last = --size;
+        int moved = -1;
+
+        if (row != last) {
+            moved = entities[last];
+            entities[row] = entities[last];
+            objects[row] = objects[last];
+            for (int i = 0; i < types.length; i++) {
+                for (int j = 0; j < floats[i].length; j++)
+                    floats[i][j][row] = floats[i][j][last];
+                for (int j = 0; j < ints[i].length; j++)
+                    ints[i][j][row] = ints[i][j][last];
+            }
+        }
+        objects[last] = null;
+        return moved;
+    }
+
+    /** Copies the fields of all types both archetypes have from one row to another. */
+    void copyTo(int row, Archetype target, int targetRow) {
+
+        for (int i = 0; i < types.length; i++) {
+
+            if (!target.signature.get(types[i].id))
+                continue;
+
+            int targetIndex = target.indexOf(types[i]);
+            for (int j = 0; j < floats[i].length; j++)
+                target.floats[targetIndex][j][targetRow] = floats[i][j][row];
+            for (int j = 0; j < ints[i].length; j++)
+                target.ints[targetIndex][j][targetRow] = ints[i][j][row];
+        }
+    }
+
+    private void grow() {
+
+        int newCapacity = capacity * 2;
+
+        int[] newEntities = new int[newCapacity];
+        System.arraycopy(entities, 0, newEntities, 0, size);
+        entities = newEntities;
+
+        LummObject[] newObjects = new LummObject[newCapacity];
+        System.arraycopy(objects, 0, newObjects, 0, size);
+        objects = newObjects;
+
+        for (int i = 0; i < types.length; i++) {
+            for (int j = 0; j < floats[i].length; j++) {
+                float[] array = new float[newCapacity];
+                System.arraycopy(floats[i][j], 0, array, 0, size);
+                floats[i][j] = array;
+            }
+            for (int j = 0; j < ints[i].length; j++) {
+                int[] array = new int[newCapacity];
+                System.arraycopy(ints[i][j], 0, array, 0, size);
+                ints[i][j] = array;
+            }
+        }
+
+        capacity = newCapacity;
+    }
+
+    // endregion methods
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.architecture.data;
+
+import dk.sidereal.lumm.architecture.LummComponent;
+import dk.sidereal.lumm.architecture.LummObject;
+import dk.sidereal.lumm.architecture.listeners.OnDisposeListener;
+
+/**
+ * {@link LummComponent} whose data is kept in the {@link EntityStore} of the
+ * object's scene instead of in fields, so it can be processed by
+ * {@link DataSystem}s while keeping the object and component API.
+ * <p>
+ * All data components of an object share one entity, created by the first one.
+ * Removing a data component removes its type from the entity, and the entity
+ * is destroyed once it has no types left or when the object is disposed. Implementations
+ * usually expose the fields of their {@link DataType} through getters and
+ * setters using {@link #getFloat(int)} and {@link #setFloat(int, float)}.
+ *
+ * @author Claudiu Bele
+ */
+public abstract class DataComponent extends LummComponent {
+
+    // region fields
+
+    /** The type of data the component adds to the object's entity. */
+    protected final DataType type;
+
+    protected final EntityStore store;
+
+    /** The entity of the object, -1 once the component's type was removed from it. */
+    private int entity;
+
+    // endregion fields
+
+    // region constructors
+
+    public DataComponent(LummObject obj, DataType type) {
+
+        super(obj);
+
+        if (type == null)
+            throw new NullPointerException("DataComponent constructor parameter 'type' of type DataType is null");
+
+        this.type = type;
+        this.store = obj.getScene().getEntityStore();
+
+        int existing = store.getEntity(obj);
+        if (existing == -1) {
+            this.entity = store.create(obj, type);
+        } else {
+            this.entity = existing;
+            store.add(entity, type);
+        }
+
+        onDisposeListener = new OnDisposeListener<LummComponent>() {
+
+            @Override
+            public void onDispose(LummComponent caller) {
+
+                removeFromEntity();
+            }
+        };
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    /**
+     * Returns the entity of the object in {@link #store}.
+     *
+     * @return the entity the component's data belongs to
+     */
+    public final int getEntity() {
+        return entity;
+    }
+
+    /**
+     * Removes the component's type from the entity, so {@link DataSystem}s no
+     * longer process it, destroying the entity if it was the last type.
+     */
+    private void removeFromEntity() {
+
+        // the entity is destroyed before the components when the object is disposed
+        if (entity == -1 || store.getEntity(object) != entity) {
+            entity = -1;
+            return;
+        }
+
+        store.remove(entity, type);
+        if (store.getArchetypeOf(entity).types.length == 0)
+            store.destroy(entity);
+        entity = -1;
+    }
+
+    /**
+     * Adds the component's type back to the object's entity, creating the
+     * entity if the component is the first to do so, as the entity is
+     * destroyed when the object is pooled. Implementations overriding this
+     * must call <code>super.onReset()</code>.
+     */
+    @Override
+    protected void onReset() {
+
+        int existing = store.getEntity(object);
+        if (existing == -1) {
+            entity = store.create(object, type);
+        } else {
+            entity = existing;
+            store.add(entity, type);
+        }
+    }
+
+    /**
+     * The entity is destroyed by the object when it is pooled. Implementations
+     * overriding this must call <code>super.onRecycle()</code>.
+     */
+    @Override
+    protected void onRecycle() {
+
+        entity = -1;
+    }
+
+    protected final float getFloat(int field) {
+        return store.getFloat(entity, type, field);
+    }
+
+    protected final void setFloat(int field, float value) {
+        store.setFloat(entity, type, field, value);
+    }
+
+    protected final int getInt(int field) {
+        return store.getInt(entity, type, field);
+    }
+
+    protected final void setInt(int field, int value) {
+        store.setInt(entity, type, field, value);
+    }
+
+    /** Data is usually updated by a {@link DataSystem}, so does nothing by default. */
+    @Override
+    protected void onUpdate() {
+    }
+
+    @Override
+    protected void onRender() {
+    }
+
+    @Override
+    protected void onDebug() {
+    }
+
+    // endregion methods
+}
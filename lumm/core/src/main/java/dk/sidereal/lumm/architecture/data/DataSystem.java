@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.architecture.data;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * Logic running every update pass over all entities of an {@link EntityStore}
+ * that have a set of {@link DataType}s. Added using
+ * {@link EntityStore#addSystem(DataSystem)}.
+ * <p>
+ * {@link #process(Archetype)} is called once for every non-empty
+ * {@link Archetype} containing all types passed in the constructor, and should
+ * go through its arrays from 0 to {@link Archetype#size()}:
+ *
+ * <pre>
+ * protected void process(Archetype archetype) {
+ *     float[] x = archetype.getFloats(POSITION, POSITION_X);
+ *     float[] velocityX = archetype.getFloats(VELOCITY, VELOCITY_X);
+ *     float delta = Lumm.time.getDeltaTime();
+ *     for (int i = 0; i &lt; archetype.size(); i++)
+ *         x[i] += velocityX[i] * delta;
+ * }
+ * </pre>
+ *
+ * @author Claudiu Bele
+ */
+public abstract class DataSystem {
+
+    // region fields
+
+    /** Whether the system runs in {@link EntityStore#update()}. True by default. */
+    public boolean enabled;
+
+    /** Ids of the types an archetype must have for the system to process it. */
+    final BitSet signature;
+
+    /** Archetypes matching {@link #signature}, kept up to date by the store. */
+    final ArrayList<Archetype> archetypes;
+
+    // endregion fields
+
+    // region constructors
+
+    public DataSystem(DataType... types) {
+
+        this.enabled = true;
+        this.signature = new BitSet();
+        this.archetypes = new ArrayList<Archetype>();
+
+        for (int i = 0; i < types.length; i++) {
+            signature.set(types[i].id);
+        }
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    boolean matches(Archetype archetype) {
+
+        BitSet missing = (BitSet) signature.clone();
+        missing.andNot(archetype.signature);
+        return missing.isEmpty();
+    }
+
+    /**
+     * Processes all entities in an archetype that has the types of the system.
+     * Entities must not be added or removed from the store in this method.
+     *
+     * @param archetype
+     *            an archetype with at least one entity
+     */
+    protected abstract void process(Archetype archetype);
+
+    // endregion methods
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.architecture.data;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Describes the data of a kind of component kept in an {@link EntityStore},
+ * as a number of float and int fields. Each field is stored in its own array
+ * in every {@link Archetype} containing the type.
+ * <p>
+ * Types are meant to be created once and kept in constants, with the field
+ * indices as constants as well:
+ *
+ * <pre>
+ * public static final DataType VELOCITY = new DataType("Velocity", 2, 0);
+ * public static final int VELOCITY_X = 0, VELOCITY_Y = 1;
+ * </pre>
+ *
+ * @author Claudiu Bele
+ */
+public final class DataType {
+
+    // region fields
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /** Unique index of the type, used in archetype signatures. */
+    final int id;
+
+    public final String name;
+
+    /** Number of float fields of the type. */
+    public final int floatFields;
+
+    /** Number of int fields of the type. */
+    public final int intFields;
+
+    // endregion fields
+
+    // region constructors
+
+    public DataType(String name, int floatFields, int intFields) {
+
+        if (name == null)
+            throw new NullPointerException("DataType constructor parameter 'name' of type String is null");
+
+        if (floatFields < 0 || intFields < 0)
+            throw new IllegalArgumentException("DataType " + name + " can't have a negative number of fields");
+
+        this.id = nextId.getAndIncrement();
+        this.name = name;
+        this.floatFields = floatFields;
+        this.intFields = intFields;
+    }
+
+    // endregion constructors
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
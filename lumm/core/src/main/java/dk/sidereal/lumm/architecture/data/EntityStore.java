@@ -0,0 +1,459 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.architecture.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import dk.sidereal.lumm.architecture.Lumm;
+import dk.sidereal.lumm.architecture.LummObject;
+import dk.sidereal.lumm.architecture.LummScene;
+import dk.sidereal.lumm.util.LummException;
+
+/**
+ * Optional data-oriented storage of component data in a {@link LummScene},
+ * retrieved using {@link LummScene#getEntityStore()}.
+ * <p>
+ * An entity is an int handle with a set of {@link DataType}s. Entities with
+ * the same set of types are kept together in an {@link Archetype}, where each
+ * field is stored in a primitive array, and are processed by
+ * {@link DataSystem}s in {@link #update()}, which runs after the objects of
+ * the scene are updated.
+ * <p>
+ * Entities can be created directly using {@link #create(DataType...)}, or
+ * through a {@link DataComponent} attached to a {@link LummObject}, in which
+ * case the entity is destroyed when the object is disposed.
+ *
+ * @author Claudiu Bele
+ */
+public class EntityStore {
+
+    // region fields
+
+    private static final Comparator<DataType> typeComparator = new Comparator<DataType>() {
+
+        @Override
+        public int compare(DataType o1, DataType o2) {
+            return o1.id < o2.id ? -1 : (o1.id == o2.id ? 0 : 1);
+        }
+    };
+
+    private final ArrayList<Archetype> archetypes;
+
+    private final HashMap<BitSet, Archetype> archetypesBySignature;
+
+    /** Used for looking up archetypes by their types without allocating. */
+    private final BitSet scratchSignature;
+
+    private final ArrayList<DataSystem> systems;
+
+    /** Entities created for objects through {@link DataComponent}. */
+    private final IdentityHashMap<LummObject, Integer> objectEntities;
+
+    /** Archetype of each entity, null if the id is not in use. */
+    private Archetype[] entityArchetypes;
+
+    /** Row of each entity in its archetype. */
+    private int[] entityRows;
+
+    /** Ids of destroyed entities, reused when creating new ones. */
+    private int[] freeIds;
+
+    private int freeCount;
+
+    /** Lowest id that was never used. */
+    private int nextId;
+
+    private int size;
+
+    // endregion fields
+
+    // region constructors
+
+    public EntityStore() {
+
+        archetypes = new ArrayList<Archetype>();
+        archetypesBySignature = new HashMap<BitSet, Archetype>();
+        scratchSignature = new BitSet();
+        systems = new ArrayList<DataSystem>();
+        objectEntities = new IdentityHashMap<LummObject, Integer>();
+        entityArchetypes = new Archetype[64];
+        entityRows = new int[64];
+        freeIds = new int[16];
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    // region entities
+
+    /**
+     * Creates an entity with a set of types, all fields being 0.
+     *
+     * @param types
+     *            the types of the entity
+     * @return the entity
+     */
+    public int create(DataType... types) {
+
+        return create(null, types);
+    }
+
+    /**
+     * Creates an entity tied to an object, all fields being 0. The entity is
+     * destroyed when calling {@link #destroy(LummObject)}.
+     *
+     * @param object
+     *            the object the entity belongs to
+     * @param types
+     *            the types of the entity
+     * @return the entity
+     */
+    public int create(LummObject object, DataType... types) {
+
+        if (object != null && objectEntities.containsKey(object))
+            throw new LummException("EntityStore.create object " + object.getName() + " already has an entity");
+
+        int entity;
+        if (freeCount > 0) {
+            entity = freeIds[--freeCount];
+        } else {
+            entity = nextId++;
+            if (entity == entityArchetypes.length) {
+                entityArchetypes = Arrays.copyOf(entityArchetypes, entity * 2);
+                entityRows = Arrays.copyOf(entityRows, entity * 2);
+            }
+        }
+
+        Archetype archetype = getArchetype(types);
+        entityArchetypes[entity] = archetype;
+        entityRows[entity] = archetype.add(entity, object);
+
+        if (object != null)
+            objectEntities.put(object, entity);
+
+        size++;
+        return entity;
+    }
+
+    /**
+     * Destroys an entity, its id being reused by later entities.
+     *
+     * @param entity
+     *            the entity to destroy
+     */
+    public void destroy(int entity) {
+
+        Archetype archetype = getArchetypeOf(entity);
+
+        LummObject object = archetype.getObject(entityRows[entity]);
+        if (object != null)
+            objectEntities.remove(object);
+
+        removeRow(archetype, entityRows[entity]);
+        entityArchetypes[entity] = null;
+
+        if (freeCount == freeIds.length)
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        freeIds[freeCount++] = entity;
+        size--;
+    }
+
+    /**
+     * Destroys the entity of an object, if it has one. Called when the object
+     * is disposed.
+     *
+     * @param object
+     *            the object whose entity to destroy
+     */
+    public void destroy(LummObject object) {
+
+        Integer entity = objectEntities.get(object);
+        if (entity != null)
+            destroy(entity);
+    }
+
+    /**
+     * Returns the entity tied to an object.
+     *
+     * @param object
+     *            the object
+     * @return the entity, or -1 if the object doesn't have one
+     */
+    public int getEntity(LummObject object) {
+
+        Integer entity = objectEntities.get(object);
+        return entity == null ? -1 : entity;
+    }
+
+    public boolean exists(int entity) {
+
+        return entity >= 0 && entity < nextId && entityArchetypes[entity] != null;
+    }
+
+    /**
+     * Returns the number of entities in the store.
+     *
+     * @return the number of entities
+     */
+    public int size() {
+
+        return size;
+    }
+
+    // endregion entities
+
+    // region types
+
+    /**
+     * Adds a type to an entity, moving the entity to the archetype having the
+     * new set of types. The fields of the new type are set to 0. Does nothing
+     * if the entity already has the type.
+     *
+     * @param entity
+     *            the entity
+     * @param type
+     *            the type to add
+     */
+    public void add(int entity, DataType type) {
+
+        Archetype archetype = getArchetypeOf(entity);
+        if (archetype.has(type))
+            return;
+
+        Archetype target = archetype.getAddTransition(type);
+        if (target == null) {
+            DataType[] types = Arrays.copyOf(archetype.types, archetype.types.length + 1);
+            types[types.length - 1] = type;
+            target = getArchetype(types);
+            archetype.setAddTransition(type, target);
+        }
+        move(entity, archetype, target);
+    }
+
+    /**
+     * Removes a type from an entity, moving the entity to the archetype having
+     * the new set of types. Does nothing if the entity doesn't have the type.
+     *
+     * @param entity
+     *            the entity
+     * @param type
+     *            the type to remove
+     */
+    public void remove(int entity, DataType type) {
+
+        Archetype archetype = getArchetypeOf(entity);
+        if (!archetype.has(type))
+            return;
+
+        Archetype target = archetype.getRemoveTransition(type);
+        if (target == null) {
+            DataType[] types = new DataType[archetype.types.length - 1];
+            for (int i = 0, j = 0; i < archetype.types.length; i++) {
+                if (archetype.types[i] != type)
+                    types[j++] = archetype.types[i];
+            }
+            target = getArchetype(types);
+            archetype.setRemoveTransition(type, target);
+        }
+        move(entity, archetype, target);
+    }
+
+    public boolean has(int entity, DataType type) {
+
+        return getArchetypeOf(entity).has(type);
+    }
+
+    // endregion types
+
+    // region fields access
+
+    public float getFloat(int entity, DataType type, int field) {
+
+        return getArchetypeOf(entity).getFloats(type, field)[entityRows[entity]];
+    }
+
+    public void setFloat(int entity, DataType type, int field, float value) {
+
+        getArchetypeOf(entity).getFloats(type, field)[entityRows[entity]] = value;
+    }
+
+    public int getInt(int entity, DataType type, int field) {
+
+        return getArchetypeOf(entity).getInts(type, field)[entityRows[entity]];
+    }
+
+    public void setInt(int entity, DataType type, int field, int value) {
+
+        getArchetypeOf(entity).getInts(type, field)[entityRows[entity]] = value;
+    }
+
+    /**
+     * Returns the archetype an entity is currently in. Changes when adding or
+     * removing types from the entity.
+     *
+     * @param entity
+     *            the entity
+     * @return the archetype of the entity
+     */
+    public Archetype getArchetypeOf(int entity) {
+
+        if (!exists(entity))
+            throw new LummException("EntityStore entity " + entity + " does not exist");
+
+        return entityArchetypes[entity];
+    }
+
+    /**
+     * Returns the row of an entity in the arrays of {@link #getArchetypeOf(int)}.
+     *
+     * @param entity
+     *            the entity
+     * @return the index of the entity's fields
+     */
+    public int getRow(int entity) {
+
+        getArchetypeOf(entity);
+        return entityRows[entity];
+    }
+
+    public List<Archetype> getArchetypes() {
+
+        return Collections.unmodifiableList(archetypes);
+    }
+
+    // endregion fields access
+
+    // region systems
+
+    public void addSystem(DataSystem system) {
+
+        if (system == null)
+            throw new NullPointerException("EntityStore.addSystem parameter 'system' of type DataSystem is null");
+
+        if (systems.contains(system))
+            return;
+
+        system.archetypes.clear();
+        for (int i = 0; i < archetypes.size(); i++) {
+            if (system.matches(archetypes.get(i)))
+                system.archetypes.add(archetypes.get(i));
+        }
+        systems.add(system);
+    }
+
+    public boolean removeSystem(DataSystem system) {
+
+        return systems.remove(system);
+    }
+
+    /**
+     * Runs all enabled systems, in the order they were added. Called by
+     * {@link LummScene} every update pass, after updating objects.
+     */
+    public void update() {
+
+        for (int i = 0; i < systems.size(); i++) {
+
+            DataSystem system = systems.get(i);
+            if (!system.enabled)
+                continue;
+
+            for (int j = 0; j < system.archetypes.size(); j++) {
+
+                Archetype archetype = system.archetypes.get(j);
+                if (archetype.size() == 0)
+                    continue;
+
+                try {
+                    system.process(archetype);
+                } catch (Exception e) {
+                    Lumm.debug.logError(system.getClass().getName() + "(process)", e);
+                }
+            }
+        }
+    }
+
+    // endregion systems
+
+    // region internal
+
+    private void move(int entity, Archetype from, Archetype to) {
+
+        int row = entityRows[entity];
+        int newRow = to.add(entity, from.getObject(row));
+        from.copyTo(row, to, newRow);
+        removeRow(from, row);
+
+        entityArchetypes[entity] = to;
+        entityRows[entity] = newRow;
+    }
+
+    private void removeRow(Archetype archetype, int row) {
+
+        int moved = archetype.remove(row);
+        if (moved != -1)
+            entityRows[moved] = row;
+    }
+
+    private Archetype getArchetype(DataType[] types) {
+
+        BitSet signature = scratchSignature;
+        signature.clear();
+        for (int i = 0; i < types.length; i++) {
+            signature.set(types[i].id);
+        }
+
+        Archetype archetype = archetypesBySignature.get(signature);
+        if (archetype != null)
+            return archetype;
+
+        BitSet key = (BitSet) signature.clone();
+
+        // clearing the ids from the scratch signature skips duplicate types
+        DataType[] sorted = new DataType[key.cardinality()];
+        int count = 0;
+        for (int i = 0; i < types.length; i++) {
+            if (signature.get(types[i].id)) {
+                signature.clear(types[i].id);
+                sorted[count++] = types[i];
+            }
+        }
+        Arrays.sort(sorted, typeComparator);
+
+        archetype = new Archetype(sorted, key);
+        archetypes.add(archetype);
+        archetypesBySignature.put(key, archetype);
+
+        for (int i = 0; i < systems.size(); i++) {
+            if (systems.get(i).matches(archetype))
+                systems.get(i).archetypes.add(archetype);
+        }
+        return archetype;
+    }
+
+    // endregion internal
+
+    // endregion methods
+}
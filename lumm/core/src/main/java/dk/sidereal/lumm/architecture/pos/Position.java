@@ -16,13 +16,26 @@
 
 package dk.sidereal.lumm.architecture.pos;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
+import dk.sidereal.lumm.architecture.Lumm;
 import dk.sidereal.lumm.architecture.LummObject;
+import dk.sidereal.lumm.architecture.core.Time;
 
 /**
  * Encapsulates local and hierarchial position of a {@link LummObject} object.
  * Accessible from {@link LummObject#position}
+ * <p>
+ * Changing the local position of an object flags the hierarchial position of
+ * its children as out of date. Out of date positions are computed in
+ * {@link #resolveDirty()}, called internally at the start of every update
+ * pass, before the parallel component pass and before syncing the render
+ * state. Until then, getters compute the position from the parents without
+ * storing it, so reading a position never writes to it and is safe from any
+ * thread.
  *
  * @author Claudiu Bele
  */
@@ -30,6 +43,18 @@ public class Position {
 
     // region fields
 
+    /**
+     * Positions that became out of date while their parent wasn't, resolved
+     * along with their children in {@link #resolveDirty()}. Guarded by
+     * {@link #dirtyRootsLock}, as parallel component updates can move objects.
+     */
+    private static ArrayList<Position> dirtyRoots = new ArrayList<Position>();
+
+    /** List swapped with {@link #dirtyRoots} while resolving. */
+    private static ArrayList<Position> resolvingRoots = new ArrayList<Position>();
+
+    private static final Object dirtyRootsLock = new Object();
+
     private float x;
 
     private float y;
@@ -42,6 +67,39 @@ public class Position {
 
     private float localZ;
 
+    /**
+     * Copy of {@link #x}, {@link #y} and {@link #z} read by the rendering
+     * thread. Set in {@link #syncRenderState()}.
+     */
+    private float renderX, renderY, renderZ;
+
+    /**
+     * Hierarchial position at the start of the last fixed update step. Set in
+     * {@link #storePrevious(long)}.
+     */
+    private float previousX, previousY, previousZ;
+
+    /**
+     * The {@link Time#getFixedStepCount()} value at the time of the last
+     * {@link #storePrevious(long)} call, -1 if never stored.
+     */
+    private long previousStep;
+
+    /**
+     * Whether {@link #renderY} or {@link #renderZ} changed in
+     * {@link #syncRenderState()} since the flag was last cleared. Used for
+     * skipping the sorting of objects when rendering.
+     */
+    private boolean renderOrderDirty;
+
+    /**
+     * Whether {@link #x}, {@link #y} and {@link #z} are out of date, after
+     * changing the local position of one of the object's parents. Cleared in
+     * {@link #resolveDirty()}. Children of an out of date position are always
+     * out of date as well.
+     */
+    private boolean dirty;
+
     private LummObject object;
 
     // endregion
@@ -51,6 +109,8 @@ public class Position {
     public Position(LummObject object) {
 
         this.object = object;
+        this.previousStep = -1;
+        this.renderOrderDirty = true;
     }
 
     // endregion
@@ -74,32 +134,67 @@ public class Position {
         return localZ;
     }
 
+    /**
+     * Returns the local x and y position in a new vector. Use
+     * {@link #getLocalXY(Vector2)} in code that runs every frame.
+     *
+     * @return new vector with the local x and y position
+     */
     public final Vector2 getLocalXY() {
 
         return new Vector2(localX, localY);
     }
 
+    /**
+     * Copies the local x and y position into a vector.
+     *
+     * @param out
+     *            the vector to set
+     * @return the <code>out</code> parameter
+     */
+    public final Vector2 getLocalXY(Vector2 out) {
+
+        return out.set(localX, localY);
+    }
+
+    /**
+     * Returns the local position in a new vector. Use
+     * {@link #getLocal(Vector3)} in code that runs every frame.
+     *
+     * @return new vector with the local position
+     */
     public final Vector3 getLocal() {
 
         return new Vector3(localX, localY, localZ);
     }
 
+    /**
+     * Copies the local position into a vector.
+     *
+     * @param out
+     *            the vector to set
+     * @return the <code>out</code> parameter
+     */
+    public final Vector3 getLocal(Vector3 out) {
+
+        return out.set(localX, localY, localZ);
+    }
+
     // region 1 param
 
     public final void setLocalX(float x) {
 
-        updateChildren(setX(x, true), false, false);
+        setLocal(x, localY, localZ);
     }
 
     public final void setLocalY(float y) {
 
-        updateChildren(false, setY(y, true), false);
+        setLocal(localX, y, localZ);
     }
 
     public final void setLocalZ(float z) {
 
-        updateChildren(false, false, setZ(z, true));
-
+        setLocal(localX, localY, z);
     }
 
     // endregion
@@ -113,7 +208,7 @@ public class Position {
 
     public final void setLocal(float x, float y) {
 
-        updateChildren(setX(x, true), setY(y, true), false);
+        setLocal(x, y, localZ);
     }
 
     // endregion
@@ -126,29 +221,32 @@ public class Position {
     }
 
     /**
-     * Sets the local position of the Game Object without changing the object's
-     * reference.
-     * <p>
-     * Sets the {@link #localPosition} object's x and y to match the parameters
-     * given, after which the hierarchical position is updated
-     * <p>
-     * If the object does not have a {@link #parent}, the {@link #position}'s x
-     * and y are set to the parameters given. Otherwise,
-     * {@link #updatePositionInHierarchy(boolean, boolean, boolean)} is called
-     * on the object whose local position we are changing.
+     * Sets the local position of the object, relative to its parent, or the
+     * hierarchial position if it has no parent.
      * <p>
-     * After changing the object's variables, the position of all getChildren()
-     * will be updated using
-     * {@link #updatePositionInHierarchy(boolean, boolean, boolean)}.
+     * The hierarchial position of the children is not recomputed right away,
+     * but in {@link #resolveDirty()}, so setting multiple axes in a row walks
+     * the hierarchy at most once.
      *
      * @param x
      *            The x axis value
      * @param y
      *            The y axis value
+     * @param z
+     *            The z axis value
      */
     public final void setLocal(float x, float y, float z) {
 
-        updateChildren(setX(x, true), setY(y, true), setZ(z, true));
+        if (x == localX && y == localY && z == localZ)
+            return;
+
+        localX = x;
+        localY = y;
+        localZ = z;
+        onLocalChanged();
+
+        // moving a sleeping object wakes it
+        object.wake();
     }
 
     // endregion
@@ -161,27 +259,120 @@ public class Position {
 
     public final float getX() {
 
-        return x;
+        if (!dirty)
+            return x;
+
+        // sum up the local positions until reaching an up to date parent
+        float value = localX;
+        for (LummObject parent = object.getParent(); parent != null; parent = parent.getParent()) {
+            if (!parent.position.dirty)
+                return value + parent.position.x;
+            value += parent.position.localX;
+        }
+        return value;
     }
 
     public final float getY() {
 
-        return y;
+        if (!dirty)
+            return y;
+
+        float value = localY;
+        for (LummObject parent = object.getParent(); parent != null; parent = parent.getParent()) {
+            if (!parent.position.dirty)
+                return value + parent.position.y;
+            value += parent.position.localY;
+        }
+        return value;
     }
 
     public final float getZ() {
 
-        return z;
+        if (!dirty)
+            return z;
+
+        float value = localZ;
+        for (LummObject parent = object.getParent(); parent != null; parent = parent.getParent()) {
+            if (!parent.position.dirty)
+                return value + parent.position.z;
+            value += parent.position.localZ;
+        }
+        return value;
     }
 
+    /**
+     * Returns the hierarchial x and y position in a new vector. Use
+     * {@link #getXY(Vector2)} in code that runs every frame.
+     *
+     * @return new vector with the hierarchial x and y position
+     */
     public final Vector2 getXY() {
 
-        return new Vector2(x, y);
+        return getXY(new Vector2());
     }
 
+    /**
+     * Copies the hierarchial x and y position into a vector.
+     *
+     * @param out
+     *            the vector to set
+     * @return the <code>out</code> parameter
+     */
+    public final Vector2 getXY(Vector2 out) {
+
+        return out.set(getX(), getY());
+    }
+
+    /**
+     * Returns the hierarchial position in a new vector. Use
+     * {@link #get(Vector3)} in code that runs every frame.
+     *
+     * @return new vector with the hierarchial position
+     */
     public final Vector3 get() {
 
-        return new Vector3(x, y, z);
+        return get(new Vector3());
+    }
+
+    /**
+     * Copies the hierarchial position into a vector.
+     *
+     * @param out
+     *            the vector to set
+     * @return the <code>out</code> parameter
+     */
+    public final Vector3 get(Vector3 out) {
+
+        return out.set(getX(), getY(), getZ());
+    }
+
+    /**
+     * Returns the distance between the hierarchial positions of two objects.
+     *
+     * @param other
+     *            the position of the other object
+     * @return the distance to the other position
+     */
+    public final float dst(Position other) {
+
+        return (float) Math.sqrt(dst2(other));
+    }
+
+    /**
+     * Returns the squared distance between the hierarchial positions of two
+     * objects, cheaper than {@link #dst(Position)} when only comparing
+     * distances.
+     *
+     * @param other
+     *            the position of the other object
+     * @return the squared distance to the other position
+     */
+    public final float dst2(Position other) {
+
+        float dx = other.getX() - getX();
+        float dy = other.getY() - getY();
+        float dz = other.getZ() - getZ();
+        return dx * dx + dy * dy + dz * dz;
     }
 
     // endregion
@@ -192,17 +383,17 @@ public class Position {
 
     public final void setX(float x) {
 
-        updateChildren(setX(x, false), false, false);
+        set(x, getY(), getZ());
     }
 
     public final void setY(float y) {
 
-        updateChildren(false, setY(y, false), false);
+        set(getX(), y, getZ());
     }
 
     public final void setZ(float z) {
 
-        updateChildren(false, false, setZ(z, false));
+        set(getX(), getY(), z);
     }
 
     // endregion
@@ -216,7 +407,7 @@ public class Position {
 
     public final void set(float x, float y) {
 
-        updateChildren(setX(x, false), setY(y, false), false);
+        set(x, y, getZ());
     }
 
     // endregion
@@ -228,13 +419,42 @@ public class Position {
         set(pos.x, pos.y, pos.z);
     }
 
+    /**
+     * Sets the hierarchial position of the object, updating the local
+     * position to match it. The hierarchial position of the children is
+     * recomputed in {@link #resolveDirty()}.
+     *
+     * @param x
+     *            The x axis value
+     * @param y
+     *            The y axis value
+     * @param z
+     *            The z axis value
+     */
     public final void set(float x, float y, float z) {
 
-        updateChildren(setX(x, false), setY(y, false), setZ(z, false));
+        if (x == getX() && y == getY() && z == getZ())
+            return;
+
+        LummObject parent = object.getParent();
+        if (parent == null) {
+            localX = x;
+            localY = y;
+            localZ = z;
+        } else {
+            Position parentPosition = parent.position;
+            localX = x - parentPosition.getX();
+            localY = y - parentPosition.getY();
+            localZ = z - parentPosition.getZ();
+        }
+        onLocalChanged();
+
+        // moving a sleeping object wakes it
+        object.wake();
     }
 
     public final void set(Position position) {
-        set(position.x, position.y, position.z);
+        set(position.getX(), position.getY(), position.getZ());
     }
 
     // endregion
@@ -243,6 +463,156 @@ public class Position {
 
     // endregion
 
+    // region render state
+
+    /**
+     * Copies the hierarchial position into the render buffer returned by
+     * {@link #getRenderX()}, {@link #getRenderY()} and {@link #getRenderZ()}.
+     * <p>
+     * Called internally once per frame while the update thread is idle, so
+     * rendering code can read a consistent position while the next update pass
+     * is running.
+     * <p>
+     * If using a fixed time step and the previous position was stored in the
+     * last step, the buffered position is interpolated between the previous
+     * and current position using {@link Time#getInterpolationAlpha()}.
+     */
+    public final void syncRenderState() {
+
+        float x = getX();
+        float y = getY();
+        float z = getZ();
+
+        float oldRenderY = renderY;
+        float oldRenderZ = renderZ;
+
+        if (Lumm.time.isFixedTimeStep() && previousStep == Lumm.time.getFixedStepCount()) {
+            float alpha = Lumm.time.getInterpolationAlpha();
+            renderX = previousX + (x - previousX) * alpha;
+            renderY = previousY + (y - previousY) * alpha;
+            renderZ = previousZ + (z - previousZ) * alpha;
+        } else {
+            renderX = x;
+            renderY = y;
+            renderZ = z;
+        }
+
+        if (renderY != oldRenderY || renderZ != oldRenderZ)
+            renderOrderDirty = true;
+    }
+
+    /**
+     * Returns whether the rendered y or z position changed since the last call
+     * to {@link #clearRenderOrderDirty()}.
+     *
+     * @return whether the object might have to be sorted again
+     */
+    public final boolean isRenderOrderDirty() {
+
+        return renderOrderDirty;
+    }
+
+    public final void clearRenderOrderDirty() {
+
+        renderOrderDirty = false;
+    }
+
+    /**
+     * Stores the current hierarchial position as the previous position, used
+     * for interpolation in {@link #syncRenderState()}. Called internally at
+     * the start of every fixed update step.
+     *
+     * @param step
+     *            the value of {@link Time#getFixedStepCount()} for the current
+     *            step
+     */
+    public final void storePrevious(long step) {
+
+        previousX = getX();
+        previousY = getY();
+        previousZ = getZ();
+        previousStep = step;
+    }
+
+    /**
+     * Sets the position to 0 and forgets the previous position, so the next
+     * frame is not interpolated from the old one. Called internally when a
+     * pooled object is reused.
+     */
+    public final void reset() {
+
+        set(0, 0, 0);
+        previousStep = -1;
+    }
+
+    /**
+     * Returns the x-axis position at the start of the last fixed update step,
+     * or the current one if not using a fixed time step.
+     *
+     * @return previous x-axis position
+     */
+    public final float getPreviousX() {
+
+        return previousStep == -1 ? getX() : previousX;
+    }
+
+    /**
+     * Returns the y-axis position at the start of the last fixed update step,
+     * or the current one if not using a fixed time step.
+     *
+     * @return previous y-axis position
+     */
+    public final float getPreviousY() {
+
+        return previousStep == -1 ? getY() : previousY;
+    }
+
+    /**
+     * Returns the z-axis position at the start of the last fixed update step,
+     * or the current one if not using a fixed time step.
+     *
+     * @return previous z-axis position
+     */
+    public final float getPreviousZ() {
+
+        return previousStep == -1 ? getZ() : previousZ;
+    }
+
+    /**
+     * Returns the x-axis position as of the last completed update pass. Is to
+     * be used from rendering code instead of {@link #getX()}.
+     *
+     * @return the buffered x-axis position
+     */
+    public final float getRenderX() {
+
+        return renderX;
+    }
+
+    /**
+     * Returns the y-axis position as of the last completed update pass. Is to
+     * be used from rendering code instead of {@link #getY()}.
+     *
+     * @return the buffered y-axis position
+     */
+    public final float getRenderY() {
+
+        return renderY;
+    }
+
+    /**
+     * Returns the z-axis position as of the last completed update pass. Is to
+     * be used from rendering code instead of {@link #getZ()}.
+     *
+     * @return the buffered z-axis position
+     */
+    public final float getRenderZ() {
+
+        return renderZ;
+    }
+
+    // endregion
+
     // region misc
 
     // region relative
@@ -274,118 +644,187 @@ public class Position {
 
     // region internal methods
 
-    // region setters
+    // region hierarchy update
+
+    /**
+     * Recomputes the hierarchial position from the local position of the
+     * object and the ones of its parents. Called internally after changing
+     * the parent of the object.
+     */
+    public final void ensureHierarchialMatch() {
 
-    private final boolean setX(float value, boolean isLocal) {
+        onLocalChanged();
+    }
 
-        if ((isLocal && value == localX) || (!isLocal && value == x))
-            return false;
+    /**
+     * Computes the hierarchial position of all positions flagged as out of
+     * date since the last call. Called internally while no other thread
+     * reads or moves objects: at the start of every update pass, before the
+     * parallel component pass and before syncing the render state.
+     */
+    public static void resolveDirty() {
 
-        if (isLocal)
-            localX = value;
-        else
-            x = value;
+        ArrayList<Position> roots;
+        synchronized (dirtyRootsLock) {
+            if (dirtyRoots.size() == 0)
+                return;
 
-        if (object.getParent() == null) {
-            if (isLocal)
-                x = value;
-            else
-                localX = value;
-        } else {
-            if (isLocal)
-                x = value + object.getParent().position.getX();
-            else
-                localX = value - object.getParent().position.getX();
+            roots = dirtyRoots;
+            dirtyRoots = resolvingRoots;
+            resolvingRoots = roots;
         }
-        return true;
-    }
 
-    private final boolean setY(float value, boolean isLocal) {
+        for (int i = 0; i < roots.size(); i++) {
+            if (roots.get(i).dirty)
+                roots.get(i).resolveHierarchy();
+        }
+        roots.clear();
+    }
 
-        if ((isLocal && value == localY) || (!isLocal && value == y))
-            return false;
+    /**
+     * Updates the hierarchial position after the local position changed. If
+     * the parent is up to date the position is computed right away, so it can
+     * be read back without walking the parents. Children are flagged as out
+     * of date.
+     */
+    private final void onLocalChanged() {
+
+        boolean wasDirty = dirty;
+        if (!dirty)
+            storePreviousIfSleeping();
+
+        LummObject parent = object.getParent();
+        if (parent == null) {
+            x = localX;
+            y = localY;
+            z = localZ;
+            dirty = false;
+        } else if (!parent.position.dirty) {
+            x = parent.position.x + localX;
+            y = parent.position.y + localY;
+            z = parent.position.z + localZ;
+            dirty = false;
+        } else if (!dirty) {
+            // the parent's resolve reaches this position only if it's flagged
+            markDirty();
+        }
 
-        if (isLocal)
-            localY = value;
-        else
-            y = value;
+        List<LummObject> children = object.getChildren();
+        for (int i = 0; i < children.size(); i++) {
 
-        if (object.getParent() == null) {
-            if (isLocal)
-                y = value;
-            else
-                localY = value;
-        } else {
-            if (isLocal)
-                y = value + object.getParent().position.getY();
-            else
-                localY = value - object.getParent().position.getY();
+            Position child = children.get(i).position;
+            // children flagged along with this position are no longer
+            // reached from a flagged parent
+            if (!child.dirty)
+                child.invalidate();
+            else if (wasDirty && !dirty)
+                child.queue();
         }
+    }
+
+    /**
+     * Flags the hierarchial position of the object and its children as out of
+     * date. Children of a flagged object are always flagged as well, so the
+     * walk stops at objects that already are.
+     */
+    private final void invalidate() {
 
-        return true;
+        if (dirty)
+            return;
+
+        markDirty();
+        invalidateChildren();
     }
 
-    private final boolean setZ(float value, boolean isLocal) {
+    /**
+     * Flags the position as out of date, queuing it for
+     * {@link #resolveDirty()} if its parent isn't, as then it is resolved
+     * along with the parent.
+     */
+    private final void markDirty() {
 
-        if ((isLocal && value == localZ) || (!isLocal && value == z))
-            return false;
+        dirty = true;
 
-        if (isLocal)
-            localZ = value;
-        else
-            z = value;
+        LummObject parent = object.getParent();
+        if (parent == null || !parent.position.dirty)
+            queue();
+    }
 
-        if (object.getParent() == null) {
-            if (isLocal)
-                z = value;
-            else
-                localZ = value;
-        } else {
-            if (isLocal)
-                z = value + object.getParent().position.getZ();
-            else
-                localZ = value - object.getParent().position.getZ();
+    private final void queue() {
+
+        synchronized (dirtyRootsLock) {
+            dirtyRoots.add(this);
         }
-        return true;
     }
 
-    // endregion
-
-    // region hierarchy update
+    private final void invalidateChildren() {
 
-    public final void ensureHierarchialMatch() {
-        object.position.updateHierarchialX();
-        object.position.updateHierarchialY();
-        object.position.updateHierarchialZ();
+        List<LummObject> children = object.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).position.invalidate();
+        }
     }
 
-    private final void updateChildren(boolean x, boolean y, boolean z) {
+    /**
+     * Computes the hierarchial position of the object and of its children that
+     * are out of date.
+     */
+    private final void resolveHierarchy() {
 
-        for (int i = 0; i < object.getChildren().size(); i++) {
-            if (x)
-                object.getChildren().get(i).position.updateHierarchialX();
-            if (y)
-                object.getChildren().get(i).position.updateHierarchialY();
-            if (z)
-                object.getChildren().get(i).position.updateHierarchialZ();
+        resolve();
 
-            object.getChildren().get(i).position.updateChildren(x, y, z);
+        List<LummObject> children = object.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i).position.dirty)
+                children.get(i).position.resolveHierarchy();
         }
     }
 
-    private final void updateHierarchialX() {
+    /**
+     * Computes the hierarchial position, resolving the parents' positions
+     * first if they are out of date as well. Only called from
+     * {@link #resolveDirty()}.
+     */
+    private final void resolve() {
+
+        storePreviousIfSleeping();
 
-        setX(object.getParent().position.x + localX, false);
+        LummObject parent = object.getParent();
+        if (parent == null) {
+            x = localX;
+            y = localY;
+            z = localZ;
+        } else {
+            Position parentPosition = parent.position;
+            if (parentPosition.dirty)
+                parentPosition.resolve();
+            x = parentPosition.x + localX;
+            y = parentPosition.y + localY;
+            z = parentPosition.z + localZ;
+        }
+        dirty = false;
     }
 
-    private final void updateHierarchialY() {
+    /**
+     * Stores the hierarchial position as the previous one before it changes,
+     * if the object is sleeping and the previous position wasn't stored in the
+     * current step. Sleeping objects are skipped when storing the previous
+     * positions at the start of a step, but still move along with their
+     * parent, and would otherwise not be interpolated.
+     */
+    private final void storePreviousIfSleeping() {
 
-        setY(object.getParent().position.y + localY, false);
-    }
+        if (!object.isSleeping() || !Lumm.time.isFixedTimeStep())
+            return;
 
-    private final void updateHierarchialZ() {
+        long step = Lumm.time.getFixedStepCount();
+        if (previousStep == step)
+            return;
 
-        setZ(object.getParent().position.z + localZ, false);
+        previousX = x;
+        previousY = y;
+        previousZ = z;
+        previousStep = step;
     }
 
     // endregion
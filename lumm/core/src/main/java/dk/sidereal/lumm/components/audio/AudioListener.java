@@ -131,7 +131,7 @@ public class AudioListener extends ConcreteLummComponent {
         super(obj);
 
         setDebugToggleKeys(Keys.SHIFT_LEFT, Keys.Z);
-        prevPosition = new Vector3(object.position.get());
+        prevPosition = object.position.get(new Vector3());
         this.volumeRadius = volumeRadius;
         this.maxVolumeRadius = maxVolumeRadius;
         this.audioClips = new Array<AudioClip>();
@@ -170,7 +170,7 @@ public class AudioListener extends ConcreteLummComponent {
 
         if (prevPosition.x != object.position.getX() || prevPosition.y != object.position.getY()
                 || prevPosition.z != object.position.getZ()) {
-            prevPosition.set(object.position.get());
+            object.position.get(prevPosition);
             updateAudioClips();
         }
 
@@ -50,7 +50,7 @@ public class AudioSource extends ConcreteLummComponent {
         super(obj);
         audioClips = new Array<AudioClip>();
         audioClipTasks = new Array<AudioClipTask>();
-        prevPosition = new Vector3(object.position.get());
+        prevPosition = object.position.get(new Vector3());
 
         onDisposeListener = new OnDisposeListener<LummComponent>() {
 
@@ -71,7 +71,7 @@ public class AudioSource extends ConcreteLummComponent {
         if (prevPosition.x != object.position.getX() || prevPosition.y != object.position.getY()
                 || prevPosition.z != object.position.getZ()) {
 
-            prevPosition.set(object.position.get());
+            object.position.get(prevPosition);
 
         }
 
@@ -102,7 +102,7 @@ public class AudioSource extends ConcreteLummComponent {
         if (listener == null || !listener.isActive())
             return 0;
 
-        float distanceToListener = object.position.get().dst(listener.object.position.get());
+        float distanceToListener = object.position.dst(listener.object.position);
 
         if (distanceToListener < listener.getMaxVolumeRadius())
             return 1;
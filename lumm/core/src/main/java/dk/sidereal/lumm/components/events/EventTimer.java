@@ -21,7 +21,6 @@ import java.util.Hashtable;
 import java.util.Map.Entry;
 
 import dk.sidereal.lumm.architecture.AbstractEvent;
-import dk.sidereal.lumm.architecture.Lumm;
 import dk.sidereal.lumm.architecture.LummObject;
 import dk.sidereal.lumm.architecture.concrete.ConcreteLummComponent;
 
@@ -69,7 +68,7 @@ public class EventTimer extends ConcreteLummComponent {
         eventsToAdd.clear();
 
         for (Entry<AbstractEvent, Float> entry : timedEvents.entrySet()) {
-            entry.setValue(entry.getValue() - Lumm.time.getDeltaTime());
+            entry.setValue(entry.getValue() - getUpdateDeltaTime());
 
             if (entry.getValue() < 0) {
 
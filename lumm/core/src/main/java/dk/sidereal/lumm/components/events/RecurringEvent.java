@@ -19,7 +19,6 @@ package dk.sidereal.lumm.components.events;
 import java.util.ArrayList;
 
 import dk.sidereal.lumm.architecture.AbstractEvent;
-import dk.sidereal.lumm.architecture.Lumm;
 import dk.sidereal.lumm.architecture.LummObject;
 import dk.sidereal.lumm.architecture.concrete.ConcreteLummComponent;
 
@@ -82,8 +81,8 @@ public class RecurringEvent extends ConcreteLummComponent {
             @Override
             public void run(Object... params) {
 
-                freqTimer += Lumm.time.getDeltaTime();
-                endTimer += Lumm.time.getDeltaTime();
+                freqTimer += getUpdateDeltaTime();
+                endTimer += getUpdateDeltaTime();
 
                 // if end is -1, we want it to run all the time
                 if (end != -1 && endTimer - end >= 0) {
@@ -112,8 +111,8 @@ public class RecurringEvent extends ConcreteLummComponent {
             @Override
             public void run(Object... params) {
 
-                freqTimer += Lumm.time.getDeltaTime();
-                endTimer += Lumm.time.getDeltaTime();
+                freqTimer += getUpdateDeltaTime();
+                endTimer += getUpdateDeltaTime();
 
                 // if end is -1, we want it to run all the time
                 if (end != -1 && endTimer - end >= 0 && times != -1) {
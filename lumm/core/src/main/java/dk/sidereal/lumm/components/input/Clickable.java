@@ -28,6 +28,7 @@ import com.badlogic.gdx.math.Vector3;
 import dk.sidereal.lumm.architecture.Lumm;
 import dk.sidereal.lumm.architecture.LummComponent;
 import dk.sidereal.lumm.architecture.LummObject;
+import dk.sidereal.lumm.architecture.LummSceneLayer;
 import dk.sidereal.lumm.architecture.concrete.ConcreteLummComponent;
 import dk.sidereal.lumm.architecture.core.Input;
 import dk.sidereal.lumm.architecture.core.Input.ActionType;
@@ -42,6 +43,11 @@ import dk.sidereal.lumm.architecture.listeners.OnDisposeListener;
  * clicks in a certain area. The area is saved in {@link #area}, which gets
  * updated each frame based on the location of the AbstractObject. The event to
  * run is {@link #eventOnHold}
+ * <p>
+ * Listeners for actions inside the area are run through the
+ * {@link ClickableIndex} of the object's layer, which only runs the ones of
+ * the topmost clickable at the position of the event, unless it is set to
+ * pass events through using {@link #setPassThrough(boolean)}.
  *
  * @see {@link Input}
  * @author Claudiu Bele
@@ -64,6 +70,35 @@ public class Clickable extends ConcreteLummComponent {
         }
     }
 
+    /**
+     * Listener for events inside the area, run by the {@link ClickableIndex}
+     * of the layer when the clickable is hit.
+     */
+    static final class ListenerEntry {
+
+        final String inputProcessor;
+
+        final int action;
+
+        final ActionType actionType;
+
+        /** The listener, if added using {@link Clickable#addOnClickListener}. */
+        final OnClickListener onClickListener;
+
+        /** The listener, if added using {@link Clickable#addTouchEvent}. */
+        final OnTouchListener onTouchListener;
+
+        ListenerEntry(String inputProcessor, int action, ActionType actionType, OnClickListener onClickListener,
+                OnTouchListener onTouchListener) {
+
+            this.inputProcessor = inputProcessor;
+            this.action = action;
+            this.actionType = actionType;
+            this.onClickListener = onClickListener;
+            this.onTouchListener = onTouchListener;
+        }
+    }
+
     private class TouchEventEntry {
 
         String inputProcessor;
@@ -80,6 +115,9 @@ public class Clickable extends ConcreteLummComponent {
 
     // region fields
 
+    /** Results of {@link #runListeners}. */
+    static final int NO_LISTENER = -1, NOT_HANDLED = 0, HANDLED = 1;
+
     /**
      * The amount of time to wait so as to not trigger multiple events in a row
      */
@@ -92,17 +130,32 @@ public class Clickable extends ConcreteLummComponent {
     public static Sprite debugSpriteSource;
 
     /**
-     * Events that were added from an instance of Clickable to the Input, to
-     * remove from Input in the dispose method
+     * Events for actions outside of the area that were added from an instance
+     * of Clickable to the Input, to remove from Input in the dispose method
      */
     private List<ActionEventEntry> registeredActionEvents;
 
     /**
-     * Events that were added from an instance of Clickable to the Input, to
-     * remove from Input in the dispose method
+     * Events for touches outside of the area that were added from an instance
+     * of Clickable to the Input, to remove from Input in the dispose method
      */
     private List<TouchEventEntry> registeredTouchEvents;
 
+    /** Listeners for actions inside the area, run through {@link #index}. */
+    final List<ListenerEntry> listeners;
+
+    /** Index of the layer the clickable is in, null until it has one. */
+    private ClickableIndex index;
+
+    /** Whether {@link ClickableIndex} has the clickable in its cells. */
+    boolean inCells;
+
+    /** Range of cells of {@link #index} the area is in. */
+    int minCellX, minCellY, maxCellX, maxCellY;
+
+    /** Whether events in the area also go to the clickables below. */
+    private boolean passThrough;
+
     /**
      * The area which if clicked, triggers an event. Set in
      * {@link #setAreaSize(float, float)} or {@link #setArea(Rectangle)}
@@ -129,6 +182,7 @@ public class Clickable extends ConcreteLummComponent {
 
         registeredActionEvents = new ArrayList<Clickable.ActionEventEntry>();
         registeredTouchEvents = new ArrayList<Clickable.TouchEventEntry>();
+        listeners = new ArrayList<Clickable.ListenerEntry>();
 
         setDebugToggleKeys(Keys.CONTROL_LEFT, Keys.Z);
 
@@ -137,6 +191,11 @@ public class Clickable extends ConcreteLummComponent {
             @Override
             public void onDispose(LummComponent caller) {
 
+                if (index != null) {
+                    index.detach(Clickable.this);
+                    index = null;
+                }
+
                 for (int i = 0; i < registeredActionEvents.size(); i++) {
                     Lumm.input.removeOnClickListener(registeredActionEvents.get(i).inputProcessor,
                             registeredActionEvents.get(i).event);
@@ -179,11 +238,38 @@ public class Clickable extends ConcreteLummComponent {
     public void onUpdate() {
 
         // adapt the area based on the position of the object
-        area.x = object.position.getX() + offsetX;
-        area.y = object.position.getY() + offsetY;
+        if (area != null) {
+            area.x = object.position.getX() + offsetX;
+            area.y = object.position.getY() + offsetY;
+        }
+        attach();
+
+        timeRemaining -= getUpdateDeltaTime();
 
-        timeRemaining -= Lumm.time.getDeltaTime();
+    }
+
+    /** Puts the clickable back in the index when the pooled object is reused. */
+    @Override
+    protected void onReset() {
 
+        if (area != null) {
+            area.x = object.position.getX() + offsetX;
+            area.y = object.position.getY() + offsetY;
+        }
+        attach();
+    }
+
+    /**
+     * Takes the clickable out of the index while the object is pooled, so it
+     * doesn't get events and isn't kept in the cells.
+     */
+    @Override
+    protected void onRecycle() {
+
+        if (index != null) {
+            index.detach(this);
+            index = null;
+        }
     }
 
     public Rectangle getArea() {
@@ -197,7 +283,7 @@ public class Clickable extends ConcreteLummComponent {
         offsetY = -height / 2;
         this.area = new Rectangle(object.position.getX() - width / 2, object.position.getY() - height / 2, width,
                 height);
-
+        attach();
     }
 
     public void setAreaSize(float width, float height, float offsetX, float offsetY) {
@@ -205,12 +291,84 @@ public class Clickable extends ConcreteLummComponent {
         this.offsetX = offsetX;
         this.offsetY = offsetY;
         this.area = new Rectangle(object.position.getX() + offsetX, object.position.getY() + offsetY, width, height);
-
+        attach();
     }
 
     public void setArea(Rectangle area) {
 
         this.area = area;
+        attach();
+    }
+
+    /**
+     * Sets whether events inside the area also go to the clickables drawn
+     * below this one. By default, only the topmost clickable with a listener
+     * for the action gets the event.
+     *
+     * @param passThrough
+     *            whether to pass events to the clickables below
+     */
+    public void setPassThrough(boolean passThrough) {
+
+        this.passThrough = passThrough;
+    }
+
+    public boolean isPassThrough() {
+
+        return passThrough;
+    }
+
+    /**
+     * Puts the clickable in the {@link ClickableIndex} of its layer, moving it
+     * if the object changed layers, and updates the cells its area is in.
+     */
+    private void attach() {
+
+        LummSceneLayer layer = object.getSceneLayer();
+        if (layer == null)
+            return;
+
+        ClickableIndex current = layer.getClickableIndex();
+        if (current == index) {
+            index.update(this);
+            return;
+        }
+
+        if (index != null)
+            index.detach(this);
+        index = current;
+        index.attach(this);
+    }
+
+    /**
+     * Runs the listeners for an action inside the area. Called by the
+     * {@link ClickableIndex} when the clickable is hit.
+     *
+     * @return {@link #HANDLED} if a listener handled the event,
+     *         {@link #NOT_HANDLED} if none did, or {@link #NO_LISTENER} if
+     *         there are no listeners for the action
+     */
+    final int runListeners(String inputProcessor, int action, ActionType actionType, ActionData actionData,
+            TouchData touchData) {
+
+        int result = NO_LISTENER;
+        for (int i = 0; i < listeners.size(); i++) {
+
+            ListenerEntry entry = listeners.get(i);
+            if (entry.action != action || entry.actionType != actionType
+                    || !entry.inputProcessor.equals(inputProcessor)
+                    || (touchData != null ? entry.onTouchListener == null : entry.onClickListener == null))
+                continue;
+
+            object.wake();
+            boolean handled = touchData != null ? entry.onTouchListener.run(touchData)
+                    : entry.onClickListener.onClick(actionData);
+            if (handled)
+                result = HANDLED;
+            else if (result == NO_LISTENER)
+                result = NOT_HANDLED;
+        }
+        return result;
     }
 
     /**
@@ -233,14 +391,21 @@ public class Clickable extends ConcreteLummComponent {
     public void addOnClickListener(String inputProcessorName, int action, final OnClickListener event, ActionType eventType,
                                    final boolean inside) {
 
+        if (inside) {
+            addListenerEntry(new ListenerEntry(inputProcessorName, action, eventType, event, null));
+            return;
+        }
+
         // make event that encapsulates the passed event
         OnClickListener clickableEvent = new OnClickListener() {
 
             @Override
             public boolean onClick(ActionData inputData) {
-                // event will not run if mouse position is not within bounds.
-                if (area.contains(object.getSceneLayer().mousePosition) == inside)
+                // event will not run if mouse position is within bounds.
+                if (!area.contains(object.getSceneLayer().mousePosition)) {
+                    object.wake();
                     return event.onClick(inputData);
+                }
                 else
                     return false;
 
@@ -254,17 +419,27 @@ public class Clickable extends ConcreteLummComponent {
 
     public void addTouchEvent(String inputProcessorName, int action, final OnTouchListener touchEvent, ActionType eventType,
                               final boolean inside) {
+
+        if (inside) {
+            addListenerEntry(new ListenerEntry(inputProcessorName, action, eventType, null, touchEvent));
+            return;
+        }
+
         // make event that encapsulates the passed event
         OnTouchListener clickableEvent = new OnTouchListener() {
 
+            private final Vector3 translatedTouchPosition = new Vector3();
+
             @Override
             public boolean run(TouchData inputData) {
                 // translate touch input to a mouse position
-                Vector3 translatedTouchPosition = new Vector3(inputData.getPosition(), 0);
+                translatedTouchPosition.set(inputData.getPosition(), 0);
                 object.getSceneLayer().camera.unproject(translatedTouchPosition);
 
-                if (area.contains(translatedTouchPosition.x, translatedTouchPosition.y) == inside)
+                if (!area.contains(translatedTouchPosition.x, translatedTouchPosition.y)) {
+                    object.wake();
                     return touchEvent.run(inputData);
+                }
                 else
                     return false;
             }
@@ -274,6 +449,17 @@ public class Clickable extends ConcreteLummComponent {
         registeredTouchEvents.add(new TouchEventEntry(inputProcessorName, clickableEvent));
     }
 
+    private void addListenerEntry(ListenerEntry entry) {
+
+        if (entry.onClickListener == null && entry.onTouchListener == null)
+            throw new NullPointerException("Clickable listener parameter of type OnClickListener or OnTouchListener is null");
+
+        listeners.add(entry);
+        if (index != null)
+            index.acquire(entry);
+        attach();
+    }
+
 
     // endregion methods
 }
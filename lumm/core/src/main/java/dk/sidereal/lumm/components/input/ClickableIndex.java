@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.components.input;
+
+import java.lang.ref.WeakReference;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.ObjectMap;
+import dk.sidereal.lumm.architecture.Lumm;
+import dk.sidereal.lumm.architecture.LummSceneLayer;
+import dk.sidereal.lumm.architecture.core.Input.ActionType;
+import dk.sidereal.lumm.architecture.core.input.ActionData;
+import dk.sidereal.lumm.architecture.core.input.OnClickListener;
+import dk.sidereal.lumm.architecture.core.input.OnTouchListener;
+import dk.sidereal.lumm.architecture.core.input.TouchData;
+import dk.sidereal.lumm.util.CellGrid;
+
+/**
+ * Hit-testing shared by the {@link Clickable} instances of a
+ * {@link LummSceneLayer}, retrieved using
+ * {@link LummSceneLayer#getClickableIndex()}.
+ * <p>
+ * Instead of every listener added to a clickable being registered in
+ * {@link Lumm#input}, the index registers one listener for each input
+ * processor, action and {@link ActionType} used in the layer. When an event
+ * happens, the position is translated to the layer's camera once, the
+ * clickables whose area contains it are found in a grid of cells and the
+ * event is given to the topmost one based on
+ * {@link dk.sidereal.lumm.architecture.LummObject#getRenderIndex()}. The
+ * clickables below it only get the event if it passes events through, see
+ * {@link Clickable#setPassThrough(boolean)}.
+ *
+ * @author Claudiu Bele
+ */
+public class ClickableIndex {
+
+    // region fields
+
+    /**
+     * The layer of the index. Weakly referenced, as the listeners registered
+     * in {@link Lumm#input} keep the index.
+     */
+    private final WeakReference<LummSceneLayer> layer;
+
+    /** Clickables by the cells their area overlaps. */
+    private final CellGrid<Clickable> cells;
+
+    /** Listeners registered in {@link Lumm#input}, by {@link #key(String, int, ActionType, boolean)}. */
+    private final ObjectMap<String, Binding> bindings;
+
+    /** Clickables containing the position of the current event, topmost first. */
+    private Clickable[] hits;
+
+    private int hitCount;
+
+    /** Used for translating touch positions to the camera's coordinate system. */
+    private final Vector3 touchPosition;
+
+    // endregion fields
+
+    // region constructors
+
+    /**
+     * Creates the index of a layer. Use
+     * {@link LummSceneLayer#getClickableIndex()} instead of calling this.
+     *
+     * @param layer
+     *            the scene layer
+     */
+    public ClickableIndex(LummSceneLayer layer) {
+
+        if (layer == null)
+            throw new NullPointerException(
+                    "ClickableIndex constructor parameter 'layer' of type LummSceneLayer is null");
+
+        this.layer = new WeakReference<LummSceneLayer>(layer);
+        this.cells = new CellGrid<Clickable>(CellGrid.DEFAULT_CELL_SIZE);
+        this.bindings = new ObjectMap<String, Binding>();
+        this.hits = new Clickable[8];
+        this.touchPosition = new Vector3();
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    /**
+     * Returns the topmost clickable whose area contains a position.
+     *
+     * @param x
+     *            the horizontal position, in the layer's coordinate system
+     * @param y
+     *            the vertical position, in the layer's coordinate system
+     * @return the clickable, or null if there is none at the position
+     */
+    public Clickable getTopmost(float x, float y) {
+
+        hitTest(x, y);
+        Clickable topmost = hitCount == 0 ? null : hits[0];
+        clearHits();
+        return topmost;
+    }
+
+    /**
+     * Adds a clickable to the index, registering the listeners it needs in
+     * {@link Lumm#input}.
+     */
+    final void attach(Clickable clickable) {
+
+        for (int i = 0; i < clickable.listeners.size(); i++) {
+            acquire(clickable.listeners.get(i));
+        }
+        update(clickable);
+    }
+
+    /**
+     * Removes a clickable from the index, removing the listeners no other
+     * clickable needs from {@link Lumm#input}.
+     */
+    final void detach(Clickable clickable) {
+
+        for (int i = 0; i < clickable.listeners.size(); i++) {
+            release(clickable.listeners.get(i));
+        }
+        remove(clickable);
+    }
+
+    /** Registers the listener for the entry's action in {@link Lumm#input} if it isn't already. */
+    final void acquire(Clickable.ListenerEntry entry) {
+
+        String key = key(entry.inputProcessor, entry.action, entry.actionType, entry.onTouchListener != null);
+        Binding binding = bindings.get(key);
+        if (binding == null) {
+            binding = new Binding(entry.inputProcessor, entry.action, entry.actionType,
+                    entry.onTouchListener != null);
+            if (binding.touch)
+                Lumm.input.addOnTouchListener(binding.inputProcessor, binding.action, binding.onTouchListener,
+                        binding.actionType);
+            else
+                Lumm.input.addOnClickListener(binding.inputProcessor, binding.action, binding.onClickListener,
+                        binding.actionType);
+            bindings.put(key, binding);
+        }
+        binding.users++;
+    }
+
+    /** Removes the listener for the entry's action from {@link Lumm#input} once no entry uses it. */
+    final void release(Clickable.ListenerEntry entry) {
+
+        String key = key(entry.inputProcessor, entry.action, entry.actionType, entry.onTouchListener != null);
+        Binding binding = bindings.get(key);
+        if (binding == null || --binding.users > 0)
+            return;
+
+        bindings.remove(key);
+        if (binding.touch)
+            Lumm.input.removeOnTouchListener(binding.inputProcessor, binding.onTouchListener);
+        else
+            Lumm.input.removeOnClickListener(binding.inputProcessor, binding.onClickListener);
+    }
+
+    /**
+     * Puts a clickable in the cells its area overlaps, if they are not the
+     * ones it is already in.
+     */
+    final void update(Clickable clickable) {
+
+        Rectangle area = clickable.getArea();
+        if (area == null) {
+            remove(clickable);
+            return;
+        }
+
+        int minX = cells.cell(area.x);
+        int minY = cells.cell(area.y);
+        int maxX = cells.cell(area.x + area.width);
+        int maxY = cells.cell(area.y + area.height);
+
+        if (clickable.inCells && clickable.minCellX == minX && clickable.minCellY == minY
+                && clickable.maxCellX == maxX && clickable.maxCellY == maxY)
+            return;
+
+        remove(clickable);
+
+        clickable.inCells = true;
+        clickable.minCellX = minX;
+        clickable.minCellY = minY;
+        clickable.maxCellX = maxX;
+        clickable.maxCellY = maxY;
+        cells.add(clickable, minX, minY, maxX, maxY);
+    }
+
+    /** Takes a clickable out of the cells, if it is in them. */
+    private void remove(Clickable clickable) {
+
+        if (!clickable.inCells)
+            return;
+
+        cells.remove(clickable, clickable.minCellX, clickable.minCellY, clickable.maxCellX, clickable.maxCellY);
+        clickable.inCells = false;
+    }
+
+    /**
+     * Fills {@link #hits} with the enabled clickables of objects in the scene
+     * whose area contains a position, topmost first.
+     */
+    private void hitTest(float x, float y) {
+
+        hitCount = 0;
+        CellGrid.Cell<Clickable> cell = cells.get(cells.cell(x), cells.cell(y));
+        if (cell == null)
+            return;
+
+        for (int i = 0; i < cell.size(); i++) {
+
+            Clickable clickable = cell.get(i);
+            if (!clickable.isEnabled() || !clickable.object.isEnabled() || !clickable.object.isInScene()
+                    || !clickable.getArea().contains(x, y))
+                continue;
+
+            if (hitCount == hits.length) {
+                Clickable[] grown = new Clickable[hitCount * 2];
+                System.arraycopy(hits, 0, grown, 0, hitCount);
+                hits = grown;
+            }
+
+            // keep the hits sorted by descending render index
+            int index = hitCount++;
+            int renderIndex = clickable.object.getRenderIndex();
+            while (index > 0 && hits[index - 1].object.getRenderIndex() < renderIndex) {
+                hits[index] = hits[index - 1];
+                index--;
+            }
+            hits[index] = clickable;
+        }
+    }
+
+    private void clearHits() {
+
+        for (int i = 0; i < hitCount; i++) {
+            hits[i] = null;
+        }
+        hitCount = 0;
+    }
+
+    /**
+     * Runs the listeners of the clickables at a position for an action,
+     * starting with the topmost one and going down while they pass events
+     * through.
+     */
+    private boolean dispatch(Binding binding, float x, float y, ActionData actionData, TouchData touchData) {
+
+        hitTest(x, y);
+
+        boolean handled = false;
+        for (int i = 0; i < hitCount; i++) {
+
+            Clickable clickable = hits[i];
+            int result = clickable.runListeners(binding.inputProcessor, binding.action, binding.actionType,
+                    actionData, touchData);
+            if (result == Clickable.NO_LISTENER)
+                continue;
+
+            handled = handled || result == Clickable.HANDLED;
+            if (!clickable.isPassThrough())
+                break;
+        }
+
+        clearHits();
+        return handled;
+    }
+
+    private static String key(String inputProcessor, int action, ActionType actionType, boolean touch) {
+
+        return (touch ? "touch:" : "click:") + inputProcessor + ":" + action + ":" + actionType;
+    }
+
+    // endregion methods
+
+    // region classes
+
+    /** Listener registered in {@link Lumm#input} for one action, shared by the clickables of the layer. */
+    private final class Binding {
+
+        final String inputProcessor;
+
+        final int action;
+
+        final ActionType actionType;
+
+        final boolean touch;
+
+        /** Number of listener entries of clickables using the binding. */
+        int users;
+
+        final OnClickListener onClickListener;
+
+        final OnTouchListener onTouchListener;
+
+        Binding(String inputProcessor, int action, ActionType actionType, boolean touch) {
+
+            this.inputProcessor = inputProcessor;
+            this.action = action;
+            this.actionType = actionType;
+            this.touch = touch;
+
+            this.onClickListener = new OnClickListener() {
+
+                @Override
+                public boolean onClick(ActionData inputData) {
+
+                    LummSceneLayer sceneLayer = layer.get();
+                    if (sceneLayer == null)
+                        return false;
+
+                    return dispatch(Binding.this, sceneLayer.mousePosition.x, sceneLayer.mousePosition.y, inputData,
+                            null);
+                }
+            };
+
+            this.onTouchListener = new OnTouchListener() {
+
+                @Override
+                public boolean run(TouchData inputData) {
+
+                    LummSceneLayer sceneLayer = layer.get();
+                    if (sceneLayer == null)
+                        return false;
+
+                    // translate the touch to the camera's coordinate system once for all clickables
+                    touchPosition.set(inputData.getPosition(), 0);
+                    sceneLayer.camera.unproject(touchPosition);
+                    return dispatch(Binding.this, touchPosition.x, touchPosition.y, null, inputData);
+                }
+            };
+        }
+    }
+
+    // endregion classes
+}
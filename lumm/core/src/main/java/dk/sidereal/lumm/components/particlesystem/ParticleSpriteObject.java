@@ -20,7 +20,6 @@ import java.util.Random;
 
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.math.Vector2;
-import dk.sidereal.lumm.architecture.Lumm;
 import dk.sidereal.lumm.architecture.LummScene;
 import dk.sidereal.lumm.architecture.concrete.ConcreteLummObject;
 import dk.sidereal.lumm.components.renderer.Renderer;
@@ -145,7 +144,7 @@ public class ParticleSpriteObject extends ConcreteLummObject {
     @Override
     public void onUpdate() {
 
-        this.timeRemaining -= Lumm.time.getDeltaTime();
+        this.timeRemaining -= getUpdateDeltaTime();
         if (timeRemaining <= 0) {
             getScene().removeobject(this);
             return;
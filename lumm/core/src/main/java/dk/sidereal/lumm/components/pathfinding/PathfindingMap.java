@@ -24,8 +24,11 @@ import dk.sidereal.lumm.architecture.LummObject;
 
 /**
  * A map with assymetrical access between nodes. Access can be change using
- * {@link #addNode(PathfindingNode)} or
- * {@link #addPrefab(int, int, PathfindingNode.NodePrefab, boolean)}.
+ * {@link #addNode(PathfindingNode)},
+ * {@link #addPrefab(int, int, PathfindingNode.NodePrefab, boolean)} or
+ * {@link PathfindingNode#setAccess(int, boolean)}. After writing to
+ * {@link PathfindingNode#access} directly, {@link #invalidateAccess()} has to
+ * be called, as routes search a copy of the access flags.
  *
  * @author Claudiu Bele
  */
@@ -49,6 +52,12 @@ public class PathfindingMap {
 
     public long lastUpdate;
 
+    /**
+     * Incremented whenever the access of a node changes, so routes know to
+     * copy the access flags again.
+     */
+    private int accessVersion;
+
     // endregion fields
 
     // region constructors
@@ -147,8 +156,7 @@ public class PathfindingMap {
             nodes[x][y].access[3] = false;
         }
 
-        paths.clear();
-        lastUpdate = System.currentTimeMillis();
+        invalidateAccess();
     }
 
     public void addPrefab(int x, int y, PathfindingNode.NodePrefab prefab, boolean reverse) {
@@ -195,10 +203,34 @@ public class PathfindingMap {
             nodes[x][y].access[3] = false;
         }
 
+        invalidateAccess();
+    }
+
+    /**
+     * Marks the access of the nodes as changed, clearing the cached paths and
+     * making routes copy the access flags again before their next search.
+     * Called internally when changing access through the map or
+     * {@link PathfindingNode#setAccess(int, boolean)}, and has to be called
+     * after writing to {@link PathfindingNode#access} directly.
+     */
+    public void invalidateAccess() {
+
+        accessVersion++;
         paths.clear();
         lastUpdate = System.currentTimeMillis();
     }
 
+    /**
+     * Returns a number that changes every time {@link #invalidateAccess()} is
+     * called.
+     *
+     * @return the version of the access flags
+     */
+    public int getAccessVersion() {
+
+        return accessVersion;
+    }
+
     public Rectangle getBounds() {
 
         return bounds;
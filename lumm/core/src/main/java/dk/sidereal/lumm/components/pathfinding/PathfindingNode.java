@@ -33,7 +33,6 @@ public class PathfindingNode {
 
     public int y;
 
-    @SuppressWarnings("unused")
     private PathfindingMap map;
 
     private Vector2 position;
@@ -46,7 +45,11 @@ public class PathfindingNode {
      * well
      */
 
-    /** left, right, bottom, top access to keys */
+    /**
+     * left, right, bottom, top access to keys. Call
+     * {@link PathfindingMap#invalidateAccess()} after changing the values
+     * directly, or use {@link #setAccess(int, boolean)}.
+     */
     public boolean[] access;
 
     /**
@@ -122,6 +125,7 @@ public class PathfindingNode {
             if (nodeY != map.nodesY - 1) {
                 map.nodes[nodeX][nodeY + 1].access[BOTTOM_ACCESS] = access[TOP_ACCESS];
             }
+            map.invalidateAccess();
         }
 
     }
@@ -156,6 +160,7 @@ public class PathfindingNode {
         if (y != map.nodesY - 1 && handleAdjacent[TOP_ACCESS]) {
             map.nodes[x][y + 1].access[BOTTOM_ACCESS] = adjacent[TOP_ACCESS];
         }
+        map.invalidateAccess();
     }
 
     public PathfindingNode(PathfindingMap map, int nodeX, int nodeY, NodePrefab prefab) {
@@ -174,6 +179,25 @@ public class PathfindingNode {
         return "(" + x + "," + y + ")";
     }
 
+    /**
+     * Sets whether the node can be left in a direction, updating the routes
+     * of the map.
+     *
+     * @param direction
+     *            one of {@link #LEFT_ACCESS}, {@link #RIGHT_ACCESS},
+     *            {@link #BOTTOM_ACCESS} or {@link #TOP_ACCESS}
+     * @param value
+     *            whether the adjacent node in the direction can be reached
+     */
+    public void setAccess(int direction, boolean value) {
+
+        if (access[direction] == value)
+            return;
+
+        access[direction] = value;
+        map.invalidateAccess();
+    }
+
     public void setPosition(float x, float y) {
 
         this.position.set(x, y);
@@ -17,14 +17,21 @@
 package dk.sidereal.lumm.components.pathfinding;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 
 import com.badlogic.gdx.math.Vector2;
 
 /**
  * Generates a route for pathfinding in a map, from a source node to a target
  * node.
+ * <p>
+ * Routes are found using A* over arrays indexed by node that are kept between
+ * searches. Entries are only valid if their stamp matches the current search,
+ * so the arrays are not cleared before each search. Open nodes are kept in a
+ * binary heap that supports lowering the cost of a node already in it, and
+ * closed nodes are marked by negating their stamp. Use
+ * {@link #findPath(PathfindingNode, PathfindingNode, PathBuffer)} to get the
+ * route without allocating.
  *
  * @author Claudiu Bele
  */
@@ -36,18 +43,116 @@ public class PathfindingRoute {
 
     public ArrayList<NodeData> nodesToTarget;
 
-    private ArrayList<NodeData> openList;
+    private PathfindingNode target;
 
-    private ArrayList<NodeData> closedList;
+    /**
+     * Search the entries of the node arrays belong to, if equal to
+     * {@link #generation}. Nodes expanded in the search are stamped with
+     * <code>-generation</code> instead.
+     */
+    private int[] stamps;
 
-    private NodeData[][] nodeData;
+    private int generation;
 
-    @SuppressWarnings("unused")
-    private PathfindingNode source;
+    /**
+     * Access of each node as a mask of {@link #LEFT}, {@link #RIGHT},
+     * {@link #BOTTOM} and {@link #TOP}, copied from
+     * {@link PathfindingNode#access} so the search doesn't go through the
+     * nodes.
+     */
+    private byte[] accessMasks;
 
-    private PathfindingNode target;
+    /** {@link PathfindingMap#getAccessVersion()} {@link #accessMasks} were copied at. */
+    private int accessVersion;
+
+    private static final int LEFT = 1;
+
+    private static final int RIGHT = 2;
+
+    private static final int BOTTOM = 4;
+
+    private static final int TOP = 8;
+
+    /** Cost from the source to each node. */
+    private int[] costs;
+
+    /** Cost from the source plus the estimated cost to the target, which the heap is ordered by. */
+    private int[] totals;
+
+    /** Node each node is reached from, -1 for the source. */
+    private int[] parents;
+
+    /** Index of each open node in {@link #heap}. */
+    private int[] heapIndices;
+
+    /** Open nodes, as a binary heap ordered by {@link #totals}. */
+    private int[] heap;
+
+    private int heapSize;
+
+    /** Used by {@link #getPath(PathfindingNode, PathfindingNode)}. */
+    private final PathBuffer pathBuffer;
+
+    /**
+     * Nodes of a route, from the source to the target, filled in by
+     * {@link PathfindingRoute#findPath(PathfindingNode, PathfindingNode, PathBuffer)}.
+     * Can be reused between searches.
+     */
+    public static class PathBuffer {
+
+        private int[] xs = new int[16];
+
+        private int[] ys = new int[16];
+
+        private int size;
+
+        public int size() {
+
+            return size;
+        }
+
+        public int getX(int index) {
+
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("PathBuffer.getX index " + index + " out of size " + size);
+            return xs[index];
+        }
+
+        public int getY(int index) {
+
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("PathBuffer.getY index " + index + " out of size " + size);
+            return ys[index];
+        }
+
+        public void clear() {
+
+            size = 0;
+        }
+
+        void add(int x, int y) {
+
+            if (size == xs.length) {
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+            }
+            xs[size] = x;
+            ys[size] = y;
+            size++;
+        }
 
-    private PathfindingNode current;
+        void reverse() {
+
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                int x = xs[i];
+                xs[i] = xs[j];
+                xs[j] = x;
+                int y = ys[i];
+                ys[i] = ys[j];
+                ys[j] = y;
+            }
+        }
+    }
 
     public static class Path {
 
@@ -177,9 +282,8 @@ public class PathfindingRoute {
     public PathfindingRoute(PathfindingMap map) {
 
         this.map = map;
-        openList = new ArrayList<PathfindingRoute.NodeData>();
-        closedList = new ArrayList<PathfindingRoute.NodeData>();
-        nodeData = new NodeData[map.nodesX][map.nodesY];
+        this.pathBuffer = new PathBuffer();
+        this.heap = new int[64];
     }
 
     // endregion constructors
@@ -210,10 +314,6 @@ public class PathfindingRoute {
         }
         // endregion
 
-        openList.clear();
-        closedList.clear();
-        nodeData = new NodeData[map.nodesX][map.nodesY];
-
         for (int i = 0; i < map.paths.size(); i++) {
             if (map.paths.get(i).isSubPath(new Vector2(source.x, source.y), new Vector2(target.x, target.y))) {
 
@@ -225,128 +325,272 @@ public class PathfindingRoute {
             }
         }
 
-        this.source = source;
-        this.target = target;
-
-        current = source;
-        nodeData[current.x][current.y] = new NodeData(current, target);
-        nodeData[current.x][current.y].setParent(null);
-        do {
+        if (!findPath(source, target, pathBuffer)) {
+            return new Path(source.getNodePosition(), target.getNodePosition(), map);
+        }
 
-            addNearbyNodes(nodeData[current.x][current.y]);
-            openList.remove(nodeData[current.x][current.y]);
-            closedList.add(nodeData[current.x][current.y]);
-            Collections.sort(openList, new Comparator<NodeData>() {
+        ArrayList<Vector2> temp = new ArrayList<Vector2>(pathBuffer.size());
+        for (int i = 0; i < pathBuffer.size(); i++) {
+            temp.add(new Vector2(pathBuffer.getX(i), pathBuffer.getY(i)));
+        }
 
-                @Override
-                public int compare(NodeData o1, NodeData o2) {
+        Path pathToReturn = new Path(temp, map, true);
+        return pathToReturn;
+    }
 
-                    return o1.getOverallDistance() - o2.getOverallDistance();
-                }
-            });
-            if (openList.size() != 0)
-                current = openList.get(0).node;
+    /**
+     * Finds a route between two nodes without allocating, unlike
+     * {@link #getPath(PathfindingNode, PathfindingNode)} which also caches the
+     * route in {@link PathfindingMap#paths}.
+     *
+     * @param source
+     *            the node to start from
+     * @param target
+     *            the node to get to
+     * @param out
+     *            cleared and filled in with the nodes from the source to the
+     *            target, both included
+     * @return whether a route was found
+     */
+    public boolean findPath(PathfindingNode source, PathfindingNode target, PathBuffer out) {
+
+        if (out == null)
+            throw new NullPointerException("PathfindingRoute.findPath parameter 'out' of type PathBuffer is null");
+
+        out.clear();
+        if (source == null || target == null || !search(source, target))
+            return false;
 
-        } while (!current.equals(target) && openList.size() != 0);
+        int nodesY = map.nodesY;
+        for (int node = index(target.x, target.y); node != -1; node = parents[node]) {
+            out.add(node / nodesY, node % nodesY);
+        }
+        out.reverse();
+        return true;
+    }
 
-        if (!current.equals(target)) {
-            return new Path(source.getNodePosition(), target.getNodePosition(), map);
+    /**
+     * Runs A* from the source to the target, leaving the route in
+     * {@link #parents}.
+     *
+     * @return whether the target was reached
+     */
+    private boolean search(PathfindingNode source, PathfindingNode target) {
+
+        int nodeCount = map.nodesX * map.nodesY;
+        if (stamps == null || stamps.length != nodeCount) {
+            stamps = new int[nodeCount];
+            costs = new int[nodeCount];
+            totals = new int[nodeCount];
+            parents = new int[nodeCount];
+            heapIndices = new int[nodeCount];
+            accessMasks = new byte[nodeCount];
+            generation = 0;
+            updateAccessMasks();
+        } else if (accessVersion != map.getAccessVersion()) {
+            updateAccessMasks();
+        }
 
+        // stamps from before the counter wrapped could match again
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 0;
         }
+        generation++;
+        heapSize = 0;
 
-        ArrayList<Vector2> temp = new ArrayList<Vector2>();
+        this.target = target;
+        int targetIndex = index(target.x, target.y);
 
-        do {
-            temp.add(new Vector2(current.x, current.y));
-            current = nodeData[current.x][current.y].parent.node;
+        int start = index(source.x, source.y);
+        open(start, -1, 0);
 
-        } while (nodeData[current.x][current.y].parent != null);
+        while (heapSize > 0) {
 
-        temp.add(new Vector2(source.x, source.y));
-        Collections.reverse(temp);
+            int current = pop();
+            if (current == targetIndex)
+                return true;
 
-        Path pathToReturn = new Path(temp, map, true);
-        return pathToReturn;
+            stamps[current] = -generation;
+            addNearbyNodes(current);
+        }
+        return false;
     }
 
-    private void addNearbyNodes(NodeData current) {
+    /** Copies the access of the map's nodes to {@link #accessMasks}. */
+    private void updateAccessMasks() {
+
+        for (int x = 0; x < map.nodesX; x++) {
+            for (int y = 0; y < map.nodesY; y++) {
+
+                boolean[] access = map.nodes[x][y].access;
+                int mask = 0;
+                if (access[PathfindingNode.LEFT_ACCESS])
+                    mask |= LEFT;
+                if (access[PathfindingNode.RIGHT_ACCESS])
+                    mask |= RIGHT;
+                if (access[PathfindingNode.BOTTOM_ACCESS])
+                    mask |= BOTTOM;
+                if (access[PathfindingNode.TOP_ACCESS])
+                    mask |= TOP;
+
+                // nodes on the edges can't lead out of the map, where the
+                // neighbouring index would wrap around to another column
+                if (x == 0)
+                    mask &= ~LEFT;
+                if (x == map.nodesX - 1)
+                    mask &= ~RIGHT;
+                if (y == 0)
+                    mask &= ~BOTTOM;
+                if (y == map.nodesY - 1)
+                    mask &= ~TOP;
+                accessMasks[index(x, y)] = (byte) mask;
+            }
+        }
+        accessVersion = map.getAccessVersion();
+    }
+
+    private void addNearbyNodes(int current) {
+
+        // nodes are stored by column, so the nodes to the left and right are
+        // a column away and the ones below and above are next to the current one
+        int nodesY = map.nodesY;
+        int left = current - nodesY;
+        int right = current + nodesY;
+        int bottom = current - 1;
+        int top = current + 1;
+        int mask = accessMasks[current];
 
         // left
-        if (current.node.access[PathfindingNode.LEFT_ACCESS] == true) {
+        if ((mask & LEFT) != 0) {
 
-            updateAdjacentNode(current, -1, 0);
+            updateAdjacentNode(current, left, 10);
 
             // left bottom
-            if (current.node.access[PathfindingNode.BOTTOM_ACCESS] == true
-                    && map.nodes[current.x - 1][current.y].access[PathfindingNode.BOTTOM_ACCESS] == true
-                    && map.nodes[current.x][current.y - 1].access[PathfindingNode.LEFT_ACCESS] == true) {
-                updateAdjacentNode(current, -1, -1);
+            if ((mask & BOTTOM) != 0 && (accessMasks[left] & BOTTOM) != 0 && (accessMasks[bottom] & LEFT) != 0) {
+                updateAdjacentNode(current, left - 1, 14);
             }
             // left top
-            if (current.node.access[PathfindingNode.TOP_ACCESS] == true
-                    && map.nodes[current.x - 1][current.y].access[PathfindingNode.TOP_ACCESS] == true
-                    && map.nodes[current.x][current.y + 1].access[PathfindingNode.LEFT_ACCESS] == true) {
-                updateAdjacentNode(current, -1, 1);
-
+            if ((mask & TOP) != 0 && (accessMasks[left] & TOP) != 0 && (accessMasks[top] & LEFT) != 0) {
+                updateAdjacentNode(current, left + 1, 14);
             }
         }
 
         // right
-        if (current.node.access[PathfindingNode.RIGHT_ACCESS] == true) {
+        if ((mask & RIGHT) != 0) {
+
+            updateAdjacentNode(current, right, 10);
 
-            updateAdjacentNode(current, 1, 0);
             // right bottom
-            if (current.node.access[PathfindingNode.BOTTOM_ACCESS] == true
-                    && map.nodes[current.x + 1][current.y].access[PathfindingNode.BOTTOM_ACCESS] == true
-                    && map.nodes[current.x][current.y - 1].access[PathfindingNode.RIGHT_ACCESS] == true) {
-                updateAdjacentNode(current, 1, -1);
+            if ((mask & BOTTOM) != 0 && (accessMasks[right] & BOTTOM) != 0 && (accessMasks[bottom] & RIGHT) != 0) {
+                updateAdjacentNode(current, right - 1, 14);
             }
             // right top
-            if (current.node.access[PathfindingNode.TOP_ACCESS] == true
-                    && map.nodes[current.x + 1][current.y].access[PathfindingNode.TOP_ACCESS] == true
-                    && map.nodes[current.x][current.y + 1].access[PathfindingNode.RIGHT_ACCESS] == true) {
-                updateAdjacentNode(current, 1, 1);
-
+            if ((mask & TOP) != 0 && (accessMasks[right] & TOP) != 0 && (accessMasks[top] & RIGHT) != 0) {
+                updateAdjacentNode(current, right + 1, 14);
             }
         }
         // down
-        if (current.node.access[PathfindingNode.BOTTOM_ACCESS] == true) {
-            updateAdjacentNode(current, 0, -1);
+        if ((mask & BOTTOM) != 0) {
+            updateAdjacentNode(current, bottom, 10);
         }
         // up
-        if (current.node.access[PathfindingNode.TOP_ACCESS] == true) {
-            updateAdjacentNode(current, 0, 1);
+        if ((mask & TOP) != 0) {
+            updateAdjacentNode(current, top, 10);
+        }
+    }
+
+    private void updateAdjacentNode(int from, int node, int stepCost) {
 
+        // if it is already in the closed set, don't handle it
+        if (stamps[node] == -generation)
+            return;
+
+        int cost = costs[from] + stepCost;
+
+        // hasn't been accessed yet
+        if (stamps[node] != generation) {
+            open(node, from, cost);
         }
+        // reached with a lower cost than before, move it up in the heap
+        else if (cost < costs[node]) {
+            totals[node] -= costs[node] - cost;
+            costs[node] = cost;
+            parents[node] = from;
+            siftUp(heapIndices[node]);
+        }
+    }
+
+    /** Adds a node reached for the first time in the search to the heap. */
+    private void open(int node, int parent, int cost) {
 
+        stamps[node] = generation;
+        parents[node] = parent;
+        costs[node] = cost;
+        int nodesY = map.nodesY;
+        totals[node] = cost + Math.abs(node / nodesY - target.x) * 10 + Math.abs(node % nodesY - target.y) * 10;
+
+        if (heapSize == heap.length)
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        heap[heapSize] = node;
+        heapIndices[node] = heapSize;
+        siftUp(heapSize++);
     }
 
-    private void updateAdjacentNode(NodeData from, int xOffset, int yOffset) {
+    /** Removes and returns the open node with the lowest total. */
+    private int pop() {
 
-        int x = from.x + xOffset;
-        int y = from.y + yOffset;
+        int top = heap[0];
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapIndices[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
 
-        // hasn't been accessed yet
-        if (nodeData[x][y] == null) {
-            nodeData[x][y] = new NodeData(map.nodes[x][y], target);
-            nodeData[x][y].setParent(from);
-
-            openList.add(nodeData[x][y]);
-        }
-        // has been accessed before
-        else {
-            // if it is already in the close list, don't handle it
-            if (closedList.contains(nodeData[x][y]))
-                return;
-
-            // if overall distance is more than what it would be with a new
-            // parent, do that.
-            if (nodeData[x][y].getOverallDistance() > nodeData[x][y].getDistanceFrom(from)
-                    + nodeData[x][y].getDistanceToTarget(target)) {
-                nodeData[x][y].setParent(from);
-            }
+    private void siftUp(int position) {
 
+        int node = heap[position];
+        while (position > 0) {
+
+            int parent = (position - 1) >>> 1;
+            if (totals[heap[parent]] <= totals[node])
+                break;
+
+            heap[position] = heap[parent];
+            heapIndices[heap[position]] = position;
+            position = parent;
         }
+        heap[position] = node;
+        heapIndices[node] = position;
+    }
+
+    private void siftDown(int position) {
+
+        int node = heap[position];
+        while (true) {
+
+            int child = position * 2 + 1;
+            if (child >= heapSize)
+                break;
+            if (child + 1 < heapSize && totals[heap[child + 1]] < totals[heap[child]])
+                child++;
+            if (totals[heap[child]] >= totals[node])
+                break;
+
+            heap[position] = heap[child];
+            heapIndices[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = node;
+        heapIndices[node] = position;
+    }
+
+    private int index(int x, int y) {
+
+        return x * map.nodesY + y;
     }
 
     // endregion methods
@@ -50,6 +50,12 @@ public abstract class Drawer {
     /** If the Drawer is enabled, it will be drawn. */
     private boolean enabled;
 
+    /**
+     * Value of {@link #enabled} as of the last completed update pass. Set in
+     * {@link #syncRenderState()}.
+     */
+    private boolean renderEnabled;
+
     /**
      * Name of the drawer. Assigned in
      * {@link Renderer#addDrawer(String, DrawerBuilder)}.
@@ -89,10 +95,19 @@ public abstract class Drawer {
         // if(targetShader != null &&
         // renderer.object.getGameBatch().spriteBatch.)
 
-        if (enabled && !isOutOfBounds())
+        if (renderEnabled && !isOutOfBounds())
             draw(delta);
     }
 
+    /**
+     * Buffers the state read in {@link #drawInternal(float)}. Called from
+     * {@link Renderer#onSyncRenderState()}.
+     */
+    void syncRenderState() {
+
+        renderEnabled = enabled;
+    }
+
     public boolean getUseRealDeltaTime() {
         return useRealDeltaTime;
     }
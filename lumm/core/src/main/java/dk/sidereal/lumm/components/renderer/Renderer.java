@@ -60,6 +60,21 @@ public class Renderer extends ConcreteLummComponent {
      */
     private Array<Drawer> drawerList;
 
+    /**
+     * Copy of {@link #drawerList} iterated over in {@link #onRender()}. Updated
+     * in {@link #onSyncRenderState()} if {@link #drawersChanged} is true.
+     */
+    private Array<Drawer> renderDrawerList;
+
+    /**
+     * Drawers removed using {@link #removeDrawer(String)}, disposed in
+     * {@link #onSyncRenderState()} once they are no longer rendered.
+     */
+    private Array<Drawer> drawersToDispose;
+
+    /** Whether {@link #drawerList} changed since {@link #renderDrawerList} was last updated. */
+    private boolean drawersChanged;
+
     // endregion fields
 
     // region constructors
@@ -74,6 +89,8 @@ public class Renderer extends ConcreteLummComponent {
 
         super(obj);
         drawerList = new Array<Drawer>();
+        renderDrawerList = new Array<Drawer>();
+        drawersToDispose = new Array<Drawer>();
         drawerMap = new ObjectMap<String, Drawer>();
     }
 
@@ -89,13 +106,37 @@ public class Renderer extends ConcreteLummComponent {
     @Override
     public final void onRender() {
 
-        for (int i = 0; i < drawerList.size; i++) {
-            Drawer drawer = drawerList.get(i);
+        for (int i = 0; i < renderDrawerList.size; i++) {
+            Drawer drawer = renderDrawerList.get(i);
             float delta = (drawer.getUseRealDeltaTime()) ? Lumm.time.getRealDeltaTime() : Lumm.time.getDeltaTime();
             drawer.drawInternal(delta);
         }
     }
 
+    /**
+     * Updates {@link #renderDrawerList} if drawers were added, removed or
+     * reordered since the last frame, disposes removed drawers and buffers the
+     * state of each drawer.
+     */
+    @Override
+    protected final void onSyncRenderState() {
+
+        if (drawersChanged) {
+            renderDrawerList.clear();
+            renderDrawerList.addAll(drawerList);
+            drawersChanged = false;
+        }
+
+        for (int i = 0; i < drawersToDispose.size; i++) {
+            drawersToDispose.get(i).dispose();
+        }
+        drawersToDispose.clear();
+
+        for (int i = 0; i < renderDrawerList.size; i++) {
+            renderDrawerList.get(i).syncRenderState();
+        }
+    }
+
     /**
      * Adds a drawer to the renderer.
      * <p>
@@ -146,6 +187,7 @@ public class Renderer extends ConcreteLummComponent {
         T drawer = builder.buildInternal(this, drawerName);
         drawerList.add(drawer);
         drawerMap.put(drawerName, drawer);
+        drawersChanged = true;
 
         // create a weak reference to the builder
         if (destroyAfterCreation)
@@ -168,6 +210,7 @@ public class Renderer extends ConcreteLummComponent {
     public final void placeAtStart(String name) {
 
         drawerList.insert(0, drawerList.removeIndex(drawerList.indexOf(drawerMap.get(name), false)));
+        drawersChanged = true;
     }
 
     /**
@@ -182,6 +225,7 @@ public class Renderer extends ConcreteLummComponent {
     public final void placeAtEnd(String name) {
 
         drawerList.insert(drawerList.size - 1, drawerList.removeIndex(drawerList.indexOf(drawerMap.get(name), false)));
+        drawersChanged = true;
 
     }
 
@@ -240,7 +284,7 @@ public class Renderer extends ConcreteLummComponent {
      * <p>
      * If a {@link Drawer} is found in {@link #drawerMap} with the parameter
      * passed as a key, {@link Drawer#dispose()} will also be called on the
-     * found value.
+     * found value before the next frame is rendered.
      *
      * @param name
      *            name of the drawer that is the key to the { Drawer} value in
@@ -252,9 +296,10 @@ public class Renderer extends ConcreteLummComponent {
         if (!drawerMap.containsKey(name))
             return false;
 
-        drawerMap.get(name).dispose();
+        drawersToDispose.add(drawerMap.get(name));
         drawerList.removeIndex(drawerList.indexOf(drawerMap.get(name), false));
         drawerMap.remove(name);
+        drawersChanged = true;
         return true;
     }
 
@@ -43,11 +43,11 @@ class ColorDrawer(renderer: Renderer?, name: String?, useRawDelta: Boolean) : Dr
 
 
     override fun draw(delta: Float) {
-        val targetX = renderer.`object`.position.x + positionOffset.x
+        val targetX = renderer.`object`.position.renderX + positionOffset.x
         if (sprite.x != targetX)
             sprite.x = targetX
 
-        val targetY = renderer.`object`.position.y + positionOffset.y
+        val targetY = renderer.`object`.position.renderY + positionOffset.y
         if (sprite.y != targetY)
             sprite.y = targetY
 
@@ -95,16 +95,16 @@ public class NinepatchDrawer extends Drawer {
     @Override
     protected void draw(float delta) {
 
-        image.draw(renderer.object.getSceneLayer().spriteBatch, renderer.object.position.getX() + positionOffset.x,
-                renderer.object.position.getY() + positionOffset.y, size.x, size.y);
+        image.draw(renderer.object.getSceneLayer().spriteBatch, renderer.object.position.getRenderX() + positionOffset.x,
+                renderer.object.position.getRenderY() + positionOffset.y, size.x, size.y);
 
     }
 
     @Override
     protected boolean isOutOfBounds() {
 
-        boundingRectangle.set(renderer.object.position.getX() + positionOffset.x,
-                renderer.object.position.getY() + positionOffset.y, size.x, size.y);
+        boundingRectangle.set(renderer.object.position.getRenderX() + positionOffset.x,
+                renderer.object.position.getRenderY() + positionOffset.y, size.x, size.y);
 
         return !renderer.object.getSceneLayer().renderingArea.overlaps(boundingRectangle);
     }
@@ -91,11 +91,11 @@ public class SpriteDrawer extends Drawer {
     @Override
     protected void draw(float delta) {
 
-        float targetX = renderer.object.position.getX() + positionOffset.x;
+        float targetX = renderer.object.position.getRenderX() + positionOffset.x;
         if (sprite.getX() != targetX)
             sprite.setX(targetX);
 
-        float targetY = renderer.object.position.getY() + positionOffset.y;
+        float targetY = renderer.object.position.getRenderY() + positionOffset.y;
         if (sprite.getY() != targetY)
             sprite.setY(targetY);
 
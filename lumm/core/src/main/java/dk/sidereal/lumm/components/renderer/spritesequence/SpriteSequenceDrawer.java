@@ -202,8 +202,8 @@ public class SpriteSequenceDrawer extends Drawer {
         currSprite.setColor(spriteColor);
 
         // adjust position based on the renderer.object's position
-        float targetPosX = renderer.object.position.getX() + getCurrPreferences().getPositionOffset().x;
-        float targetPosY = renderer.object.position.getY() + getCurrPreferences().getPositionOffset().y;
+        float targetPosX = renderer.object.position.getRenderX() + getCurrPreferences().getPositionOffset().x;
+        float targetPosY = renderer.object.position.getRenderY() + getCurrPreferences().getPositionOffset().y;
         if (currSprite.getX() != targetPosX || currSprite.getY() != targetPosY) {
             currSprite.setPosition(targetPosX, targetPosY);
         }
@@ -454,8 +454,8 @@ public class SpriteSequenceDrawer extends Drawer {
     // region out of bounds
     @Override
     protected final boolean isOutOfBounds() {
-        float x = renderer.object.position.getX() + getCurrPreferences().getPositionOffset().x;
-        float y = renderer.object.position.getY() + getCurrPreferences().getPositionOffset().y;
+        float x = renderer.object.position.getRenderX() + getCurrPreferences().getPositionOffset().x;
+        float y = renderer.object.position.getRenderY() + getCurrPreferences().getPositionOffset().y;
         Rectangle r = renderer.object.getSceneLayer().renderingArea;
         boolean overlaps = x < r.x + r.width && x + getCurrPreferences().getSize().x > r.x && y < r.y + r.height
                 && y + getCurrPreferences().getSize().y > r.y;
@@ -98,8 +98,8 @@ public class TextureDrawer extends Drawer {
         if (size == null)
             return;
 
-        boundingRectangle.set(renderer.object.position.getX() + offsetPosition.x,
-                renderer.object.position.getY() + offsetPosition.y, size.x, size.y);
+        boundingRectangle.set(renderer.object.position.getRenderX() + offsetPosition.x,
+                renderer.object.position.getRenderY() + offsetPosition.y, size.x, size.y);
     }
 
     public void setOffsetPosition(float offsetX, float offsetY) {
@@ -149,8 +149,8 @@ public class TextureDrawer extends Drawer {
     @Override
     protected void draw(float delta) {
 
-        float targetX = renderer.object.position.getX() + offsetPosition.x;
-        float targetY = renderer.object.position.getY() + offsetPosition.y;
+        float targetX = renderer.object.position.getRenderX() + offsetPosition.x;
+        float targetY = renderer.object.position.getRenderY() + offsetPosition.y;
         renderer.object.getSceneLayer().spriteBatch.draw(texture, targetX, targetY, size.x, size.y);
 
     }
@@ -17,7 +17,9 @@
 package dk.sidereal.lumm.components.triggers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.badlogic.gdx.Input.Keys;
 import com.badlogic.gdx.graphics.Color;
@@ -26,14 +28,23 @@ import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.math.Rectangle;
 import dk.sidereal.lumm.architecture.AbstractEvent;
 import dk.sidereal.lumm.architecture.Lumm;
+import dk.sidereal.lumm.architecture.LummComponent;
 import dk.sidereal.lumm.architecture.LummObject;
 import dk.sidereal.lumm.architecture.concrete.ConcreteLummComponent;
+import dk.sidereal.lumm.architecture.listeners.OnDisposeListener;
+import dk.sidereal.lumm.util.LummException;
 
 /**
  * Handles collision between objects, being able to designate what
  * {@link LummObject#type} the objects have to have and an {@link AbstractEvent}
  * to run for colliding with individual types. Multiple types can be handled and
  * the behavior will ignore collision with himself.
+ * <p>
+ * Colliders are only tested against colliders that share a cell of the
+ * {@link CollisionGrid} of their scene layer, and whose collision layer,
+ * categories and masks allow the two to collide, as set using
+ * {@link #setCollisionLayer(int)}, {@link #setCategoryBits(int)} and
+ * {@link #setMaskBits(int)}.
  *
  * @author Claudiu Bele
  */
@@ -43,18 +54,74 @@ public class Collider extends ConcreteLummComponent {
     public static int COLLISION_INSIDE = 1;
     public static int COLLISION_EXIT = 2;
 
+    /** Number of collision layers, set using {@link #setCollisionLayer(int)}. */
+    public static final int LAYER_COUNT = 32;
+
+    /**
+     * Number of grid cells a continuous collider can move on an axis in one
+     * update and still be swept. Larger moves are treated as teleports, so the
+     * areas aren't put in every cell along the way.
+     */
+    public static final int MAX_SWEEP_CELLS = 16;
+
     // region fields
 
-    private final List<TriggerArea> collisionAreas;
+    final List<TriggerArea> collisionAreas;
 
     private OnColliderEventListener onColliderEventListener;
     private OnCollisionAreaEventListener onCollisionAreaEventListener;
 
-    private final List<Collider> colliderStatuses;
-    private final List<TriggerArea.TriggerAreaConnection> collisionAreaStatuses;
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /** Stable id of the collider, used in the keys of {@link #colliderContacts}. */
+    final int id;
+
+    /** Number of updates that checked for collisions, used for telling apart new and old contacts. */
+    private int updateCount;
+
+    /** Colliders this one is intersecting with. */
+    private final ContactCache colliderContacts;
 
-    private final List<Collider> tempColliderStatuses;
-    private List<TriggerArea.TriggerAreaConnection> tempCollisionAreaStatuses;
+    /** Pairs of intersecting areas of this and other colliders. */
+    private final ContactCache areaContacts;
+
+    /**
+     * Collision events of the current update, reported by the
+     * {@link CollisionGrid} after all colliders were updated.
+     */
+    private final Events events;
+
+    /** Colliders returned by {@link CollisionGrid#query(Collider, List)}, reused every update. */
+    private final List<Collider> candidates;
+
+    /** Last {@link CollisionGrid} query that returned the collider, to return it once. */
+    int queryStamp;
+
+    /**
+     * Collision layers each collision layer collides with, as bits indexed by
+     * layer. All layers collide with each other by default.
+     */
+    private static final int[] layerMasks = new int[LAYER_COUNT];
+
+    static {
+        for (int i = 0; i < LAYER_COUNT; i++) {
+            layerMasks[i] = -1;
+        }
+    }
+
+    private int collisionLayer;
+
+    private int categoryBits;
+
+    private int maskBits;
+
+    /** Whether the areas are swept from their previous to their current position when testing. */
+    private boolean continuous;
+
+    /** Position of {@link #objectToFocus} in the last update. */
+    private float lastX, lastY;
+
+    private boolean hasLastPosition;
 
     LummObject objectToFocus;
     private static Sprite debugSpriteSource;
@@ -68,10 +135,13 @@ public class Collider extends ConcreteLummComponent {
 
         super(obj);
 
-        colliderStatuses = new ArrayList<Collider>();
-        collisionAreaStatuses = new ArrayList<TriggerArea.TriggerAreaConnection>();
-        tempColliderStatuses = new ArrayList<Collider>();
-        tempCollisionAreaStatuses = new ArrayList<TriggerArea.TriggerAreaConnection>();
+        id = nextId.incrementAndGet();
+        colliderContacts = new ContactCache();
+        areaContacts = new ContactCache();
+        events = new Events();
+        candidates = new ArrayList<Collider>();
+        categoryBits = 1;
+        maskBits = -1;
 
         if (Lumm.debug.isEnabled())
             this.debugSprite = new Sprite(debugSpriteSource);
@@ -79,6 +149,14 @@ public class Collider extends ConcreteLummComponent {
         this.objectToFocus = this.object;
 
         setDebugToggleKeys(Keys.SHIFT_LEFT, Keys.C);
+
+        onDisposeListener = new OnDisposeListener<LummComponent>() {
+
+            @Override
+            public void onDispose(LummComponent caller) {
+                clearState();
+            }
+        };
     }
 
     // endregion constructors
@@ -88,132 +166,450 @@ public class Collider extends ConcreteLummComponent {
     @Override
     public void onUpdate() {
 
-        for (int i = 0; i < collisionAreas.size(); i++) {
+        float x = objectToFocus.position.getX();
+        float y = objectToFocus.position.getY();
+        float moveX = continuous && hasLastPosition ? x - lastX : 0;
+        float moveY = continuous && hasLastPosition ? y - lastY : 0;
+        lastX = x;
+        lastY = y;
+        hasLastPosition = true;
 
-            collisionAreas.get(i).rect.x = objectToFocus.position.getX() + collisionAreas.get(i).offsetX;
-            collisionAreas.get(i).rect.y = objectToFocus.position.getY() + collisionAreas.get(i).offsetY;
+        CollisionGrid grid = object.getSceneLayer().getCollisionGrid();
+
+        float maxSweep = grid.getCellSize() * MAX_SWEEP_CELLS;
+        if (Math.abs(moveX) > maxSweep || Math.abs(moveY) > maxSweep) {
+            moveX = 0;
+            moveY = 0;
         }
+        for (int i = 0; i < collisionAreas.size(); i++) {
 
-        tempColliderStatuses.clear();
-        tempCollisionAreaStatuses.clear();
+            CollisionArea area = (CollisionArea) collisionAreas.get(i);
+            area.rect.x = x + area.offsetX;
+            area.rect.y = y + area.offsetY;
+            area.moveX = moveX;
+            area.moveY = moveY;
+            grid.update(area);
+        }
 
         // both listeners are null, don't handle
-        if (onCollisionAreaEventListener == null && onColliderEventListener == null)
+        if (onCollisionAreaEventListener == null && onColliderEventListener == null) {
+            colliderContacts.clear();
+            areaContacts.clear();
             return;
+        }
 
-        for (int i = 0; i < object.getSceneLayer().objects.size(); i++) {
-            boolean handleClass = false;
+        int update = ++updateCount;
 
-            LummObject myObj = object.getSceneLayer().objects.get(i);
+        // only colliders sharing a cell with this one can collide with it
+        candidates.clear();
+        grid.query(this, candidates);
 
-            if (onCollisionAreaEventListener != null) {
-                if (onCollisionAreaEventListener.filterClasses == null) {
-                    handleClass = true;
-                } else {
+        for (int i = 0; i < candidates.size(); i++) {
 
-                    for (int j = 0; j < onCollisionAreaEventListener.filterClasses.size(); j++) {
-                        if (onCollisionAreaEventListener.filterClasses.get(i).isAssignableFrom(myObj.getClass())) {
-                            handleClass = true;
-                            break;
-                        }
-                    }
-                }
+            Collider otherCollider = candidates.get(i);
+            LummObject myObj = otherCollider.object;
+
+            if (!myObj.isInScene() || !handlesClass(myObj))
+                continue;
+
+            float timeOfImpact = touchIntersectingAreas(otherCollider, update);
+            if (timeOfImpact < 0)
+                continue;
+
+            // collisions wake sleeping objects
+            myObj.wake();
+
+            long key = ContactCache.key(0, otherCollider.id);
+            ContactCache.Contact contact = colliderContacts.get(key);
+            if (contact == null) {
+                contact = colliderContacts.add(key);
+                contact.collider = otherCollider;
+                contact.firstUpdate = update;
             }
-            if (onColliderEventListener != null) {
-                if (onColliderEventListener.filterClasses == null) {
-                    handleClass = true;
-                } else {
-                    for (int j = 0; j < onColliderEventListener.filterClasses.size(); j++) {
-                        if (onColliderEventListener.filterClasses.get(i).isAssignableFrom(myObj.getClass())) {
-                            handleClass = true;
-                            break;
-                        }
-                    }
-                }
+            contact.lastUpdate = update;
+            contact.timeOfImpact = timeOfImpact;
+        }
+
+        // report in the order the colliders were found, then the ones that
+        // are not intersecting anymore
+        for (int i = 0; i < colliderContacts.size(); i++) {
+
+            ContactCache.Contact contact = colliderContacts.get(i);
+            if (contact.lastUpdate == update)
+                events.add(null, null, contact.collider,
+                        contact.firstUpdate == update ? COLLISION_ENTER : COLLISION_INSIDE);
+        }
+        for (int i = 0; i < areaContacts.size(); i++) {
+
+            ContactCache.Contact contact = areaContacts.get(i);
+            if (contact.lastUpdate == update)
+                events.add(contact.own, contact.target, contact.collider,
+                        contact.firstUpdate == update ? COLLISION_ENTER : COLLISION_INSIDE);
+        }
+        for (int i = colliderContacts.size() - 1; i >= 0; i--) {
+
+            ContactCache.Contact contact = colliderContacts.get(i);
+            if (contact.lastUpdate != update) {
+                contact.collider.object.wake();
+                events.add(null, null, contact.collider, COLLISION_EXIT);
+                colliderContacts.remove(contact);
+            }
+        }
+        for (int i = areaContacts.size() - 1; i >= 0; i--) {
+
+            ContactCache.Contact contact = areaContacts.get(i);
+            if (contact.lastUpdate != update) {
+                events.add(contact.own, contact.target, contact.collider, COLLISION_EXIT);
+                areaContacts.remove(contact);
             }
+        }
+
+        if (events.size > 0)
+            grid.queueEvents(this);
+    }
+
+    /** The object is placed again when reused, so it isn't swept from where it was pooled. */
+    @Override
+    protected void onReset() {
+
+        clearState();
+    }
 
-            if (!handleClass)
+    /** Takes the areas out of the grid, so pooled objects aren't found by other colliders. */
+    @Override
+    protected void onRecycle() {
+
+        clearState();
+    }
+
+    /** Forgets the last position and the contacts, and takes the areas out of the grid. */
+    private void clearState() {
+
+        for (int i = 0; i < collisionAreas.size(); i++) {
+
+            CollisionArea area = (CollisionArea) collisionAreas.get(i);
+            removeFromGrid(area);
+            area.moveX = 0;
+            area.moveY = 0;
+        }
+        hasLastPosition = false;
+        colliderContacts.clear();
+        areaContacts.clear();
+        events.clear();
+    }
+
+    /** Reports the events found in the last update. Called by {@link CollisionGrid}. */
+    final void dispatchEvents() {
+
+        events.dispatch(this);
+    }
+
+    /**
+     * Marks the contacts between the enabled areas of this and the other
+     * collider that are allowed to collide and overlap as found in the
+     * current update.
+     *
+     * @return the earliest time of impact of the areas, or -1 if they don't
+     *         overlap
+     */
+    private float touchIntersectingAreas(Collider other, int update) {
+
+        float earliest = -1;
+        for (int i = 0; i < collisionAreas.size(); i++) {
+
+            CollisionArea own = (CollisionArea) collisionAreas.get(i);
+            if (!own.enabled)
                 continue;
 
-            if (myObj.getComponent(Collider.class) != null) {
-                Collider otherCollider = myObj.getComponent(Collider.class);
-                // hold previous size before trying to add intersecting trigger
-                // areas, to know where to search from.
-                int prevSize = tempCollisionAreaStatuses.size();
-                tempCollisionAreaStatuses
-                        .addAll(TriggerArea.getIntersectingTriggerAreas(collisionAreas, otherCollider.collisionAreas));
-                tempColliderStatuses.add(otherCollider);
-
-                // there is more than one collider
-                if (prevSize != tempCollisionAreaStatuses.size()) {
-                    // enter
-                    if (!colliderStatuses.contains(otherCollider)) {
-                        if (onColliderEventListener != null)
-                            onColliderEventListener.onCollisionEvent(this, otherCollider, COLLISION_ENTER);
-
-                        // iterate through collision areas of objects
-                        for (int j = prevSize; j < tempCollisionAreaStatuses.size(); j++) {
-                            // target collider area of curr collider area status
-                            // matches the collider we are iterating through
-                            if (onCollisionAreaEventListener != null)
-                                onCollisionAreaEventListener.onCollisionAreaEvent(
-                                        ((CollisionArea) tempCollisionAreaStatuses.get(j).own),
-                                        ((CollisionArea) tempCollisionAreaStatuses.get(j).target), COLLISION_ENTER);
-                        }
-
-                    }
-                    // inside
-                    else {
-                        if (onColliderEventListener != null)
-                            onColliderEventListener.onCollisionEvent(this, otherCollider, COLLISION_INSIDE);
-
-                        // iterate through collision areas of objects
-                        for (int j = prevSize; j < tempCollisionAreaStatuses.size(); j++) {
-                            // target collider area of curr collider area status
-                            // matches the collider we are iterating through
-                            if (onCollisionAreaEventListener != null)
-                                onCollisionAreaEventListener.onCollisionAreaEvent(
-                                        ((CollisionArea) tempCollisionAreaStatuses.get(j).own),
-                                        ((CollisionArea) tempCollisionAreaStatuses.get(j).target), COLLISION_INSIDE);
-                        }
-                    }
+            for (int j = 0; j < other.collisionAreas.size(); j++) {
 
-                }
-                // no collider, handle remove events if necessary
-                else {
-                    // it exists, handle
-                    if (colliderStatuses.contains(otherCollider)) {
-                        colliderStatuses.remove(otherCollider);
-                        if (onColliderEventListener != null)
-                            onColliderEventListener.onCollisionEvent(this, otherCollider, COLLISION_EXIT);
-
-                    }
-
-                    // iterate through collision areas of objects
-                    for (int j = 0; j < collisionAreaStatuses.size(); j++) {
-                        // target collider area of curr collider area status
-                        // matches the collider we are iterating through
-                        if (((CollisionArea) collisionAreaStatuses.get(j).target).getCollider().equals(otherCollider)) {
-                            if (onCollisionAreaEventListener != null)
-                                onCollisionAreaEventListener.onCollisionAreaEvent(
-                                        ((CollisionArea) collisionAreaStatuses.get(j).own),
-                                        ((CollisionArea) collisionAreaStatuses.get(j).target), COLLISION_EXIT);
-                            collisionAreaStatuses.remove(j--);
-
-                        }
-                    }
+                CollisionArea target = (CollisionArea) other.collisionAreas.get(j);
+                if (!target.enabled || !canCollide(own, target))
+                    continue;
 
-                }
+                float timeOfImpact = own.moveX == 0 && own.moveY == 0
+                        ? own.rect.overlaps(target.rect) ? 0 : -1 : sweep(own, target.rect);
+                if (timeOfImpact < 0)
+                    continue;
+
+                if (earliest < 0 || timeOfImpact < earliest)
+                    earliest = timeOfImpact;
 
+                long key = ContactCache.key(own.id, target.id);
+                ContactCache.Contact contact = areaContacts.get(key);
+                if (contact == null) {
+                    contact = areaContacts.add(key);
+                    contact.own = own;
+                    contact.target = target;
+                    contact.collider = other;
+                    contact.firstUpdate = update;
+                }
+                contact.lastUpdate = update;
+                contact.timeOfImpact = timeOfImpact;
             }
         }
+        return earliest;
+    }
+
+    /**
+     * Tests the rectangle swept by a moving area against a still one.
+     *
+     * @return the fraction of the movement at which the area first touches
+     *         the rectangle, 0 if it touched before moving, or -1 if it
+     *         doesn't touch it
+     */
+    private static float sweep(CollisionArea area, Rectangle target) {
+
+        Rectangle rect = area.rect;
+        float enter = 0;
+        float exit = 1;
 
-        colliderStatuses.clear();
-        collisionAreaStatuses.clear();
-        colliderStatuses.addAll(tempColliderStatuses);
-        collisionAreaStatuses.addAll(tempCollisionAreaStatuses);
+        // the area started at rect minus its movement
+        float startX = rect.x - area.moveX;
+        if (area.moveX == 0) {
+            if (startX > target.x + target.width || startX + rect.width < target.x)
+                return -1;
+        } else {
+            float near = (area.moveX > 0 ? target.x - (startX + rect.width) : target.x + target.width - startX)
+                    / area.moveX;
+            float far = (area.moveX > 0 ? target.x + target.width - startX : target.x - (startX + rect.width))
+                    / area.moveX;
+            enter = Math.max(enter, near);
+            exit = Math.min(exit, far);
+        }
+
+        float startY = rect.y - area.moveY;
+        if (area.moveY == 0) {
+            if (startY > target.y + target.height || startY + rect.height < target.y)
+                return -1;
+        } else {
+            float near = (area.moveY > 0 ? target.y - (startY + rect.height) : target.y + target.height - startY)
+                    / area.moveY;
+            float far = (area.moveY > 0 ? target.y + target.height - startY : target.y - (startY + rect.height))
+                    / area.moveY;
+            enter = Math.max(enter, near);
+            exit = Math.min(exit, far);
+        }
+
+        return enter <= exit ? enter : -1;
+    }
+
+    /**
+     * Returns whether collisions with the object are handled by one of the
+     * listeners, based on their filter classes.
+     */
+    private boolean handlesClass(LummObject target) {
+
+        return onCollisionAreaEventListener != null && onCollisionAreaEventListener.accepts(target.getClass())
+                || onColliderEventListener != null && onColliderEventListener.accepts(target.getClass());
+    }
+
+    /**
+     * Returns whether two areas can collide based on the collision layers,
+     * categories and masks of the areas and their colliders.
+     */
+    static boolean canCollide(CollisionArea first, CollisionArea second) {
+
+        Collider firstCollider = first.collider;
+        Collider secondCollider = second.collider;
+
+        if ((layerMasks[firstCollider.collisionLayer] & (1 << secondCollider.collisionLayer)) == 0)
+            return false;
+
+        int firstCategory = firstCollider.categoryBits & first.categoryBits;
+        int secondCategory = secondCollider.categoryBits & second.categoryBits;
+        return (firstCategory & secondCollider.maskBits & second.maskBits) != 0
+                && (secondCategory & firstCollider.maskBits & first.maskBits) != 0;
+    }
+
+    // region continuous collision
+
+    /**
+     * Sets whether the collider tests the areas swept by its movement since
+     * its last update instead of only their current position, so fast
+     * objects don't pass through thin ones between updates. Other colliders
+     * are tested at their current position.
+     * <p>
+     * The time of impact of a contact is available in the listeners through
+     * {@link #getTimeOfImpact(Collider)} and
+     * {@link #getTimeOfImpact(CollisionArea, CollisionArea)}. Off by default.
+     *
+     * @param continuous
+     *            whether to sweep the areas
+     */
+    public void setContinuous(boolean continuous) {
+
+        this.continuous = continuous;
     }
 
+    public boolean isContinuous() {
+
+        return continuous;
+    }
+
+    /**
+     * Returns the movement of the collider in its last update, if it is
+     * continuous.
+     *
+     * @return the horizontal movement, or 0 if not continuous
+     */
+    public float getMovementX() {
+
+        return collisionAreas.size() == 0 ? 0 : ((CollisionArea) collisionAreas.get(0)).moveX;
+    }
+
+    /**
+     * Returns the movement of the collider in its last update, if it is
+     * continuous.
+     *
+     * @return the vertical movement, or 0 if not continuous
+     */
+    public float getMovementY() {
+
+        return collisionAreas.size() == 0 ? 0 : ((CollisionArea) collisionAreas.get(0)).moveY;
+    }
+
+    /**
+     * Returns the fraction of the collider's movement in its last update at
+     * which it first touched another collider. The position at impact is the
+     * current position minus {@link #getMovementX()} and
+     * {@link #getMovementY()} multiplied by one minus the time of impact.
+     *
+     * @param other
+     *            the other collider
+     * @return the time of impact between 0 and 1, 0 if the colliders touched
+     *         before moving, or -1 if they don't touch
+     */
+    public float getTimeOfImpact(Collider other) {
+
+        if (other == null)
+            throw new NullPointerException("Collider.getTimeOfImpact parameter 'other' of type Collider is null");
+
+        ContactCache.Contact contact = colliderContacts.get(ContactCache.key(0, other.id));
+        return contact == null || contact.lastUpdate != updateCount ? -1 : contact.timeOfImpact;
+    }
+
+    /**
+     * Returns the fraction of the collider's movement in its last update at
+     * which one of its areas first touched an area of another collider.
+     *
+     * @param own
+     *            an area of this collider
+     * @param target
+     *            an area of the other collider
+     * @return the time of impact between 0 and 1, 0 if the areas touched
+     *         before moving, or -1 if they don't touch
+     * @see #getTimeOfImpact(Collider)
+     */
+    public float getTimeOfImpact(CollisionArea own, CollisionArea target) {
+
+        if (own == null)
+            throw new NullPointerException("Collider.getTimeOfImpact parameter 'own' of type CollisionArea is null");
+        if (target == null)
+            throw new NullPointerException("Collider.getTimeOfImpact parameter 'target' of type CollisionArea is null");
+
+        ContactCache.Contact contact = areaContacts.get(ContactCache.key(own.id, target.id));
+        return contact == null || contact.lastUpdate != updateCount ? -1 : contact.timeOfImpact;
+    }
+
+    // endregion continuous collision
+
+    // region collision filtering
+
+    /**
+     * Sets whether colliders in two collision layers collide with each other.
+     * All layers collide by default. Applies to all colliders.
+     *
+     * @param firstLayer
+     *            a collision layer, from 0 to {@link #LAYER_COUNT} - 1
+     * @param secondLayer
+     *            another or the same collision layer
+     * @param collide
+     *            whether colliders in the layers collide
+     */
+    public static void setLayersCollide(int firstLayer, int secondLayer, boolean collide) {
+
+        checkLayer(firstLayer);
+        checkLayer(secondLayer);
+
+        if (collide) {
+            layerMasks[firstLayer] |= 1 << secondLayer;
+            layerMasks[secondLayer] |= 1 << firstLayer;
+        } else {
+            layerMasks[firstLayer] &= ~(1 << secondLayer);
+            layerMasks[secondLayer] &= ~(1 << firstLayer);
+        }
+    }
+
+    public static boolean doLayersCollide(int firstLayer, int secondLayer) {
+
+        checkLayer(firstLayer);
+        checkLayer(secondLayer);
+        return (layerMasks[firstLayer] & (1 << secondLayer)) != 0;
+    }
+
+    private static void checkLayer(int layer) {
+
+        if (layer < 0 || layer >= LAYER_COUNT)
+            throw new LummException("Collision layer " + layer + " is not between 0 and " + (LAYER_COUNT - 1));
+    }
+
+    /**
+     * Sets the collision layer of the collider, which decides what colliders
+     * it collides with based on {@link #setLayersCollide(int, int, boolean)}.
+     * 0 by default.
+     *
+     * @param layer
+     *            the collision layer, from 0 to {@link #LAYER_COUNT} - 1
+     */
+    public void setCollisionLayer(int layer) {
+
+        checkLayer(layer);
+        this.collisionLayer = layer;
+    }
+
+    public int getCollisionLayer() {
+
+        return collisionLayer;
+    }
+
+    /**
+     * Sets the categories the collider is part of, as bits. Two colliders
+     * collide only if each one's mask has a bit of the other one's
+     * categories. The first category by default.
+     *
+     * @param categoryBits
+     *            the categories of the collider
+     */
+    public void setCategoryBits(int categoryBits) {
+
+        this.categoryBits = categoryBits;
+    }
+
+    public int getCategoryBits() {
+
+        return categoryBits;
+    }
+
+    /**
+     * Sets the categories the collider collides with, as bits. All categories
+     * by default.
+     *
+     * @param maskBits
+     *            the categories the collider collides with
+     */
+    public void setMaskBits(int maskBits) {
+
+        this.maskBits = maskBits;
+    }
+
+    public int getMaskBits() {
+
+        return maskBits;
+    }
+
+    // endregion collision filtering
+
     @Override
     protected void initialiseClass() {
 
@@ -285,19 +681,22 @@ public class Collider extends ConcreteLummComponent {
         area.collider = this;
         area.rect.setX(objectToFocus.position.getX() + area.offsetX);
         area.rect.setY(objectToFocus.position.getY() + area.offsetY);
+        if (!collisionAreas.contains(area))
+            collisionAreas.add(area);
+        object.getSceneLayer().getCollisionGrid().update(area);
 
     }
 
     // TODO comment
     public CollisionArea[] getCollisionAreas() {
-        return (CollisionArea[]) collisionAreas.toArray();
+        return collisionAreas.toArray(new CollisionArea[collisionAreas.size()]);
     }
 
     public boolean removeCollisionArea(int index) {
-        if (index < 0 && index > collisionAreas.size() - 1)
+        if (index < 0 || index > collisionAreas.size() - 1)
             return false;
 
-        collisionAreas.remove(index);
+        removeFromGrid((CollisionArea) collisionAreas.remove(index));
         return true;
     }
 
@@ -309,12 +708,19 @@ public class Collider extends ConcreteLummComponent {
         } else {
             if (collisionAreas.contains(area)) {
                 collisionAreas.remove(area);
+                removeFromGrid(area);
                 return true;
             }
             return false;
         }
     }
 
+    private static void removeFromGrid(CollisionArea area) {
+
+        if (area.grid != null)
+            area.grid.remove(area);
+    }
+
     // endregion
 
     public ArrayList<Integer> getRectanglesThatCollide(Rectangle rect) {
@@ -338,5 +744,89 @@ public class Collider extends ConcreteLummComponent {
         this.objectToFocus = objectToFocus;
     }
 
+    /**
+     * Returns the number of updates in which the collider checked for
+     * collisions.
+     *
+     * @return the number of collision checks so far
+     */
+    public int getUpdateCount() {
+
+        return updateCount;
+    }
+
+    /**
+     * Returns the number of colliders this one is intersecting with as of its
+     * last update.
+     *
+     * @return the number of colliders in contact
+     */
+    public int getContactCount() {
+
+        return colliderContacts.size();
+    }
+
     // endregion methods
+
+    // region classes
+
+    /**
+     * Growable arrays holding collision events until they are reported. Area
+     * events have both areas set, collider events have them null.
+     */
+    private static final class Events {
+
+        CollisionArea[] own = new CollisionArea[16];
+
+        CollisionArea[] target = new CollisionArea[16];
+
+        Collider[] collider = new Collider[16];
+
+        int[] status = new int[16];
+
+        int size;
+
+        void add(CollisionArea ownArea, CollisionArea targetArea, Collider targetCollider, int collisionStatus) {
+
+            if (size == status.length) {
+                int capacity = size * 2;
+                own = Arrays.copyOf(own, capacity);
+                target = Arrays.copyOf(target, capacity);
+                collider = Arrays.copyOf(collider, capacity);
+                status = Arrays.copyOf(status, capacity);
+            }
+
+            own[size] = ownArea;
+            target[size] = targetArea;
+            collider[size] = targetCollider;
+            status[size] = collisionStatus;
+            size++;
+        }
+
+        /** Calls the listeners of the collider for all events, then clears them. */
+        void dispatch(Collider source) {
+
+            for (int i = 0; i < size; i++) {
+
+                if (own[i] == null) {
+                    if (source.onColliderEventListener != null)
+                        source.onColliderEventListener.onCollisionEvent(source, collider[i], status[i]);
+                } else if (source.onCollisionAreaEventListener != null) {
+                    source.onCollisionAreaEventListener.onCollisionAreaEvent(own[i], target[i], status[i]);
+                }
+            }
+
+            clear();
+        }
+
+        void clear() {
+
+            Arrays.fill(own, 0, size, null);
+            Arrays.fill(target, 0, size, null);
+            Arrays.fill(collider, 0, size, null);
+            size = 0;
+        }
+    }
+
+    // endregion classes
 }
@@ -1,5 +1,7 @@
 package dk.sidereal.lumm.components.triggers;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.badlogic.gdx.math.Rectangle;
 
 /**
@@ -17,8 +19,35 @@ import com.badlogic.gdx.math.Rectangle;
  */
 public class CollisionArea extends TriggerArea {
 
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /** Stable id of the area, used in the keys of the contacts of a {@link Collider}. */
+    final int id = nextId.incrementAndGet();
+
     Collider collider;
 
+    /** Grid the area is in, or null if not in one. */
+    CollisionGrid grid;
+
+    /** Range of cells of {@link #grid} the area is in. */
+    int minCellX, minCellY, maxCellX, maxCellY;
+
+    /** Index of the area in the list of areas in {@link #grid}. */
+    int gridIndex;
+
+    /**
+     * Movement of the area in the last update of its {@link Collider}, if the
+     * collider is continuous. The area swept from <code>rect</code> minus the
+     * movement to <code>rect</code> is what's tested for collisions.
+     */
+    float moveX, moveY;
+
+    /** Categories of the area, further limiting the ones of its {@link Collider}. All by default. */
+    int categoryBits = -1;
+
+    /** Categories the area collides with, further limiting the mask of its {@link Collider}. All by default. */
+    int maskBits = -1;
+
     /**
      * Constructor in which the size designates the width and height, also being
      * used for changing the offset values to center the collider area.
@@ -106,6 +135,37 @@ public class CollisionArea extends TriggerArea {
 
     }
 
+    /**
+     * Sets the categories of the area, for areas that should collide with
+     * fewer colliders than the rest of their {@link Collider}. Only the bits
+     * also set in {@link Collider#setCategoryBits(int)} are used.
+     *
+     * @param categoryBits
+     *            the categories of the area
+     */
+    public void setCategoryBits(int categoryBits) {
+        this.categoryBits = categoryBits;
+    }
+
+    public int getCategoryBits() {
+        return categoryBits;
+    }
+
+    /**
+     * Sets the categories the area collides with. Only the bits also set in
+     * {@link Collider#setMaskBits(int)} are used.
+     *
+     * @param maskBits
+     *            the categories the area collides with
+     */
+    public void setMaskBits(int maskBits) {
+        this.maskBits = maskBits;
+    }
+
+    public int getMaskBits() {
+        return maskBits;
+    }
+
     /**
      * Returns the collider tied to the object. The value is set in
      * {@link Collider#addCollisionArea(CollisionArea)} to the target parameter
@@ -0,0 +1,715 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.components.triggers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.badlogic.gdx.math.Rectangle;
+import dk.sidereal.lumm.architecture.AbstractEvent;
+import dk.sidereal.lumm.architecture.LummComponent;
+import dk.sidereal.lumm.architecture.LummSceneLayer;
+import dk.sidereal.lumm.util.CellGrid;
+import dk.sidereal.lumm.util.LummException;
+
+/**
+ * Broadphase shared by the {@link Collider} instances of a
+ * {@link LummSceneLayer}, retrieved using
+ * {@link LummSceneLayer#getCollisionGrid()}.
+ * <p>
+ * The layer is split in square cells, and every {@link CollisionArea} is kept
+ * in the cells its rectangle overlaps. A collider only runs the narrowphase
+ * against colliders that share a cell with one of its areas, instead of
+ * against every object in the layer.
+ * <p>
+ * Areas are moved between cells in {@link Collider#onUpdate()}, only when the
+ * range of cells they overlap changes. The cell size should be around the
+ * size of the common areas: smaller cells put areas in many cells, while
+ * larger cells return more candidates that don't collide.
+ * <p>
+ * The grid also answers spatial queries for other systems, such as sensing
+ * and targeting: overlapping a box or circle, casting a ray or segment and
+ * finding the nearest colliders, filtered by category bits and by a
+ * component the object must have. Queries don't allocate, and have to be
+ * made from the update thread.
+ * <p>
+ * Colliders queue their collision events in the grid, which reports them once
+ * all objects and components of the scene were updated, so listeners see the
+ * final positions of every collider in the update.
+ *
+ * @author Claudiu Bele
+ */
+public class CollisionGrid {
+
+    // region fields
+
+    /** Areas by the cells their rectangle overlaps. */
+    private final CellGrid<CollisionArea> cells;
+
+    /**
+     * Areas in the grid, used when changing the cell size. Each area knows its
+     * index in {@link CollisionArea#gridIndex}.
+     */
+    private final ArrayList<CollisionArea> areas;
+
+    /** Incremented on every query, for returning each collider once. */
+    private int queryStamp;
+
+    /** Colliders with events queued in the current update, in update order. */
+    private final ArrayList<Collider> pendingEvents;
+
+    /** Closest colliders found by {@link #nearest}, sorted by distance. */
+    private Collider[] nearestColliders;
+
+    /** Squared distances of {@link #nearestColliders}. */
+    private float[] nearestDistances;
+
+    private int nearestCount;
+
+    // endregion fields
+
+    // region constructors
+
+    /**
+     * Creates the grid of a layer. Use
+     * {@link LummSceneLayer#getCollisionGrid()} instead of calling this.
+     *
+     * @param layer
+     *            the scene layer
+     */
+    public CollisionGrid(LummSceneLayer layer) {
+
+        if (layer == null)
+            throw new NullPointerException(
+                    "CollisionGrid constructor parameter 'layer' of type LummSceneLayer is null");
+
+        this.cells = new CellGrid<CollisionArea>(CellGrid.DEFAULT_CELL_SIZE);
+        this.areas = new ArrayList<CollisionArea>();
+        this.pendingEvents = new ArrayList<Collider>();
+        this.nearestColliders = new Collider[8];
+        this.nearestDistances = new float[8];
+
+        layer.addOnUpdatedEvent(new AbstractEvent() {
+
+            @Override
+            public void run(Object... objects) {
+
+                dispatchEvents();
+            }
+        });
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    /**
+     * Queues the events of a collider, reported in {@link #dispatchEvents()}.
+     * Called from {@link Collider#onUpdate()}.
+     */
+    final void queueEvents(Collider collider) {
+
+        pendingEvents.add(collider);
+    }
+
+    /**
+     * Reports the events queued in the current update, after all colliders
+     * found their contacts.
+     */
+    private void dispatchEvents() {
+
+        for (int i = 0; i < pendingEvents.size(); i++) {
+            pendingEvents.get(i).dispatchEvents();
+        }
+        pendingEvents.clear();
+    }
+
+    /**
+     * Sets the size of the cells, putting all areas back in the grid.
+     *
+     * @param cellSize
+     *            the width and height of a cell, in world units
+     */
+    public void setCellSize(float cellSize) {
+
+        if (cellSize <= 0)
+            throw new LummException("CollisionGrid.setCellSize parameter 'cellSize' has to be positive");
+
+        // the areas are removed using the cell ranges of the old size
+        ArrayList<CollisionArea> all = new ArrayList<CollisionArea>(areas);
+        for (int i = 0; i < all.size(); i++) {
+            remove(all.get(i));
+        }
+        cells.setCellSize(cellSize);
+        for (int i = 0; i < all.size(); i++) {
+            update(all.get(i));
+        }
+    }
+
+    public float getCellSize() {
+
+        return cells.getCellSize();
+    }
+
+    /**
+     * Returns the number of cells that have areas in them.
+     *
+     * @return the number of cells used
+     */
+    public int getCellCount() {
+
+        return cells.getCellCount();
+    }
+
+    /**
+     * Returns the number of areas in the grid.
+     *
+     * @return the number of areas
+     */
+    public int size() {
+
+        return areas.size();
+    }
+
+    /**
+     * Puts an area in the cells its rectangle overlaps, or the cells its
+     * rectangle swept if the collider is continuous, if they are not the ones
+     * it is already in.
+     */
+    final void update(CollisionArea area) {
+
+        // continuous areas are in the cells of the area they swept
+        Rectangle rect = area.rect;
+        int minX = cells.cell(rect.x - Math.max(area.moveX, 0));
+        int minY = cells.cell(rect.y - Math.max(area.moveY, 0));
+        int maxX = cells.cell(rect.x + rect.width - Math.min(area.moveX, 0));
+        int maxY = cells.cell(rect.y + rect.height - Math.min(area.moveY, 0));
+
+        if (area.grid == this && area.minCellX == minX && area.minCellY == minY && area.maxCellX == maxX
+                && area.maxCellY == maxY)
+            return;
+
+        if (area.grid != null)
+            area.grid.remove(area);
+
+        area.grid = this;
+        area.minCellX = minX;
+        area.minCellY = minY;
+        area.maxCellX = maxX;
+        area.maxCellY = maxY;
+        area.gridIndex = areas.size();
+        areas.add(area);
+        cells.add(area, minX, minY, maxX, maxY);
+    }
+
+    /** Takes an area out of the grid, if it is in it. */
+    final void remove(CollisionArea area) {
+
+        if (area.grid != this)
+            return;
+
+        cells.remove(area, area.minCellX, area.minCellY, area.maxCellX, area.maxCellY);
+
+        // move the last area in its place
+        CollisionArea last = areas.remove(areas.size() - 1);
+        if (last != area) {
+            areas.set(area.gridIndex, last);
+            last.gridIndex = area.gridIndex;
+        }
+        area.grid = null;
+    }
+
+    /**
+     * Adds the colliders, other than <code>collider</code>, that have an
+     * enabled area sharing a cell with one of the enabled areas of
+     * <code>collider</code> and allowed to collide with it by
+     * {@link Collider#canCollide(CollisionArea, CollisionArea)}. Each collider
+     * is added once.
+     *
+     * @param collider
+     *            the collider to find candidates for
+     * @param out
+     *            list to add the candidates to
+     */
+    final void query(Collider collider, List<Collider> out) {
+
+        int stamp = ++queryStamp;
+        collider.queryStamp = stamp;
+
+        List<TriggerArea> own = collider.collisionAreas;
+        for (int i = 0; i < own.size(); i++) {
+
+            CollisionArea area = (CollisionArea) own.get(i);
+            if (!area.enabled || area.grid != this)
+                continue;
+
+            for (int x = area.minCellX; x <= area.maxCellX; x++) {
+                for (int y = area.minCellY; y <= area.maxCellY; y++) {
+
+                    CellGrid.Cell<CollisionArea> cell = cells.get(x, y);
+                    if (cell == null)
+                        continue;
+
+                    for (int j = 0; j < cell.size(); j++) {
+
+                        CollisionArea other = cell.get(j);
+                        if (!other.enabled || other.collider.queryStamp == stamp
+                                || !Collider.canCollide(area, other))
+                            continue;
+
+                        other.collider.queryStamp = stamp;
+                        out.add(other.collider);
+                    }
+                }
+            }
+        }
+    }
+
+    // region queries
+
+    /**
+     * Adds the colliders that have an area overlapping a rectangle. Each
+     * collider is added once.
+     *
+     * @param x
+     *            the left of the rectangle
+     * @param y
+     *            the bottom of the rectangle
+     * @param width
+     *            the width of the rectangle
+     * @param height
+     *            the height of the rectangle
+     * @param maskBits
+     *            the categories to find, see {@link Collider#setCategoryBits(int)}
+     * @param type
+     *            component class the object of the collider must have, or null
+     *            for any object
+     * @param out
+     *            list to add the colliders to
+     * @return the number of colliders added
+     */
+    public int overlapBox(float x, float y, float width, float height, int maskBits,
+            Class<? extends LummComponent> type, List<Collider> out) {
+
+        if (out == null)
+            throw new NullPointerException("CollisionGrid.overlapBox parameter 'out' of type List<Collider> is null");
+
+        int stamp = ++queryStamp;
+        int count = 0;
+        for (int cellX = cells.cell(x); cellX <= cells.cell(x + width); cellX++) {
+            for (int cellY = cells.cell(y); cellY <= cells.cell(y + height); cellY++) {
+
+                CellGrid.Cell<CollisionArea> cell = cells.get(cellX, cellY);
+                if (cell == null)
+                    continue;
+
+                for (int i = 0; i < cell.size(); i++) {
+
+                    CollisionArea area = cell.get(i);
+                    if (area.collider.queryStamp == stamp || !accepts(area, maskBits, type))
+                        continue;
+
+                    Rectangle rect = area.rect;
+                    if (rect.x > x + width || rect.x + rect.width < x || rect.y > y + height
+                            || rect.y + rect.height < y)
+                        continue;
+
+                    area.collider.queryStamp = stamp;
+                    out.add(area.collider);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds the colliders that have an area overlapping a circle. Each collider
+     * is added once.
+     *
+     * @param x
+     *            the horizontal position of the center
+     * @param y
+     *            the vertical position of the center
+     * @param radius
+     *            the radius of the circle
+     * @param maskBits
+     *            the categories to find, see {@link Collider#setCategoryBits(int)}
+     * @param type
+     *            component class the object of the collider must have, or null
+     *            for any object
+     * @param out
+     *            list to add the colliders to
+     * @return the number of colliders added
+     */
+    public int overlapCircle(float x, float y, float radius, int maskBits, Class<? extends LummComponent> type,
+            List<Collider> out) {
+
+        if (out == null)
+            throw new NullPointerException("CollisionGrid.overlapCircle parameter 'out' of type List<Collider> is null");
+
+        int stamp = ++queryStamp;
+        int count = 0;
+        float radiusSquared = radius * radius;
+        for (int cellX = cells.cell(x - radius); cellX <= cells.cell(x + radius); cellX++) {
+            for (int cellY = cells.cell(y - radius); cellY <= cells.cell(y + radius); cellY++) {
+
+                CellGrid.Cell<CollisionArea> cell = cells.get(cellX, cellY);
+                if (cell == null)
+                    continue;
+
+                for (int i = 0; i < cell.size(); i++) {
+
+                    CollisionArea area = cell.get(i);
+                    if (area.collider.queryStamp == stamp || !accepts(area, maskBits, type)
+                            || distanceSquared(area.rect, x, y) > radiusSquared)
+                        continue;
+
+                    area.collider.queryStamp = stamp;
+                    out.add(area.collider);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the first area hit by a ray, walking the cells along the ray in
+     * order and stopping at the first cell that has a hit.
+     *
+     * @param x
+     *            the horizontal position the ray starts at
+     * @param y
+     *            the vertical position the ray starts at
+     * @param directionX
+     *            the horizontal direction of the ray
+     * @param directionY
+     *            the vertical direction of the ray
+     * @param maxDistance
+     *            the length of the ray
+     * @param maskBits
+     *            the categories to find, see {@link Collider#setCategoryBits(int)}
+     * @param type
+     *            component class the object of the collider must have, or null
+     *            for any object
+     * @param hit
+     *            filled in with the closest hit, if there is one
+     * @return whether the ray hit an area
+     */
+    public boolean raycast(float x, float y, float directionX, float directionY, float maxDistance, int maskBits,
+            Class<? extends LummComponent> type, RaycastHit hit) {
+
+        if (hit == null)
+            throw new NullPointerException("CollisionGrid.raycast parameter 'hit' of type RaycastHit is null");
+        if (!(maxDistance >= 0) || Float.isInfinite(maxDistance))
+            throw new LummException("CollisionGrid.raycast parameter 'maxDistance' has to be positive and finite");
+
+        float length = (float) Math.sqrt(directionX * directionX + directionY * directionY);
+        if (length == 0)
+            throw new LummException("CollisionGrid.raycast parameters 'directionX' and 'directionY' are both 0");
+
+        hit.clear();
+        directionX /= length;
+        directionY /= length;
+
+        float cellSize = cells.getCellSize();
+        int cellX = cells.cell(x);
+        int cellY = cells.cell(y);
+        int stepX = directionX > 0 ? 1 : directionX < 0 ? -1 : 0;
+        int stepY = directionY > 0 ? 1 : directionY < 0 ? -1 : 0;
+
+        // distance along the ray to the next vertical and horizontal cell border
+        float deltaX = stepX == 0 ? Float.POSITIVE_INFINITY : cellSize / Math.abs(directionX);
+        float deltaY = stepY == 0 ? Float.POSITIVE_INFINITY : cellSize / Math.abs(directionY);
+        float nextX = stepX == 0 ? Float.POSITIVE_INFINITY
+                : ((stepX > 0 ? cellX + 1 : cellX) * cellSize - x) / directionX;
+        float nextY = stepY == 0 ? Float.POSITIVE_INFINITY
+                : ((stepY > 0 ? cellY + 1 : cellY) * cellSize - y) / directionY;
+
+        while (true) {
+
+            CellGrid.Cell<CollisionArea> cell = cells.get(cellX, cellY);
+            for (int i = 0; cell != null && i < cell.size(); i++) {
+
+                CollisionArea area = cell.get(i);
+                if (accepts(area, maskBits, type))
+                    intersect(area, x, y, directionX, directionY, maxDistance, hit);
+            }
+
+            // areas hit further than this cell may be in front of areas in later cells
+            if (hit.area != null && hit.distance <= Math.min(nextX, nextY))
+                return true;
+            if (Math.min(nextX, nextY) > maxDistance)
+                return hit.area != null;
+
+            if (nextX < nextY) {
+                cellX += stepX;
+                nextX += deltaX;
+            } else {
+                cellY += stepY;
+                nextY += deltaY;
+            }
+        }
+    }
+
+    /**
+     * Finds the first area hit by the segment between two points, starting
+     * from the first.
+     *
+     * @see #raycast(float, float, float, float, float, int, Class, RaycastHit)
+     */
+    public boolean segmentCast(float x1, float y1, float x2, float y2, int maskBits,
+            Class<? extends LummComponent> type, RaycastHit hit) {
+
+        float length = (float) Math.sqrt((x2 - x1) * (x2 - x1) + (y2 - y1) * (y2 - y1));
+        if (length == 0) {
+            if (hit == null)
+                throw new NullPointerException("CollisionGrid.segmentCast parameter 'hit' of type RaycastHit is null");
+            hit.clear();
+            return false;
+        }
+        return raycast(x1, y1, x2 - x1, y2 - y1, length, maskBits, type, hit);
+    }
+
+    /**
+     * Adds the colliders closest to a point, closest first. The distance to a
+     * collider is the distance to the closest point of its closest area, 0
+     * if the point is inside the area.
+     * <p>
+     * Cells are visited in rings around the point until no collider in the
+     * next ring can be closer than the ones found, or until the ring has more
+     * cells than the grid has used cells, after which the remaining cells are
+     * checked directly.
+     *
+     * @param x
+     *            the horizontal position of the point
+     * @param y
+     *            the vertical position of the point
+     * @param count
+     *            the maximum number of colliders to add
+     * @param maxDistance
+     *            the maximum distance of the colliders
+     * @param maskBits
+     *            the categories to find, see {@link Collider#setCategoryBits(int)}
+     * @param type
+     *            component class the object of the collider must have, or null
+     *            for any object
+     * @param out
+     *            list to add the colliders to
+     * @return the number of colliders added
+     */
+    public int nearest(float x, float y, int count, float maxDistance, int maskBits,
+            Class<? extends LummComponent> type, List<Collider> out) {
+
+        if (out == null)
+            throw new NullPointerException("CollisionGrid.nearest parameter 'out' of type List<Collider> is null");
+        if (count <= 0)
+            return 0;
+
+        if (nearestColliders.length < count) {
+            nearestColliders = new Collider[count];
+            nearestDistances = new float[count];
+        }
+        nearestCount = 0;
+
+        float maxDistanceSquared = maxDistance * maxDistance;
+        int centerX = cells.cell(x);
+        int centerY = cells.cell(y);
+        for (int ring = 0;; ring++) {
+
+            // nothing in this ring or further is closer than (ring - 1) cells
+            float ringDistance = Math.max(0, ring - 1) * cells.getCellSize();
+            if (ringDistance > maxDistance
+                    || nearestCount == count && ringDistance * ringDistance >= nearestDistances[count - 1])
+                break;
+
+            if (ring * 8 > cells.getCellCount()) {
+                for (CellGrid.Cell<CollisionArea> cell : cells.getCells()) {
+                    addNearest(cell, x, y, count, maxDistanceSquared, maskBits, type);
+                }
+                break;
+            }
+
+            for (int cellX = centerX - ring; cellX <= centerX + ring; cellX++) {
+                // only the border of the ring, the inside was visited in earlier rings
+                int stepY = cellX == centerX - ring || cellX == centerX + ring ? 1 : Math.max(1, ring * 2);
+                for (int cellY = centerY - ring; cellY <= centerY + ring; cellY += stepY) {
+                    CellGrid.Cell<CollisionArea> cell = cells.get(cellX, cellY);
+                    if (cell != null)
+                        addNearest(cell, x, y, count, maxDistanceSquared, maskBits, type);
+                }
+            }
+        }
+
+        for (int i = 0; i < nearestCount; i++) {
+            out.add(nearestColliders[i]);
+            nearestColliders[i] = null;
+        }
+        return nearestCount;
+    }
+
+    /** Keeps the closest areas of a cell in the sorted nearest results. */
+    private void addNearest(CellGrid.Cell<CollisionArea> cell, float x, float y, int count, float maxDistanceSquared, int maskBits,
+            Class<? extends LummComponent> type) {
+
+        for (int i = 0; i < cell.size(); i++) {
+
+            CollisionArea area = cell.get(i);
+            if (!accepts(area, maskBits, type))
+                continue;
+
+            float distance = distanceSquared(area.rect, x, y);
+            if (distance > maxDistanceSquared)
+                continue;
+
+            // the collider may already be in the results through another area
+            int index = nearestCount;
+            for (int j = 0; j < nearestCount; j++) {
+                if (nearestColliders[j] == area.collider) {
+                    index = j;
+                    break;
+                }
+            }
+
+            if (index == nearestCount) {
+                if (nearestCount == count) {
+                    if (distance >= nearestDistances[count - 1])
+                        continue;
+                    index = count - 1;
+                } else {
+                    nearestCount++;
+                }
+            } else if (distance >= nearestDistances[index]) {
+                continue;
+            }
+
+            // move the collider towards the front while it is closer
+            while (index > 0 && nearestDistances[index - 1] > distance) {
+                nearestColliders[index] = nearestColliders[index - 1];
+                nearestDistances[index] = nearestDistances[index - 1];
+                index--;
+            }
+            nearestColliders[index] = area.collider;
+            nearestDistances[index] = distance;
+        }
+    }
+
+    /** Keeps the hit of a ray with an area, if it is closer than the current one. */
+    private static void intersect(CollisionArea area, float x, float y, float directionX, float directionY,
+            float maxDistance, RaycastHit hit) {
+
+        Rectangle rect = area.rect;
+        float enter = 0;
+        float exit = maxDistance;
+        float normalX = 0;
+        float normalY = 0;
+
+        if (directionX == 0) {
+            if (x < rect.x || x > rect.x + rect.width)
+                return;
+        } else {
+            float near = ((directionX > 0 ? rect.x : rect.x + rect.width) - x) / directionX;
+            float far = ((directionX > 0 ? rect.x + rect.width : rect.x) - x) / directionX;
+            if (near > enter) {
+                enter = near;
+                normalX = directionX > 0 ? -1 : 1;
+            }
+            exit = Math.min(exit, far);
+        }
+
+        if (directionY == 0) {
+            if (y < rect.y || y > rect.y + rect.height)
+                return;
+        } else {
+            float near = ((directionY > 0 ? rect.y : rect.y + rect.height) - y) / directionY;
+            float far = ((directionY > 0 ? rect.y + rect.height : rect.y) - y) / directionY;
+            if (near > enter) {
+                enter = near;
+                normalX = 0;
+                normalY = directionY > 0 ? -1 : 1;
+            }
+            exit = Math.min(exit, far);
+        }
+
+        if (enter > exit || hit.area != null && enter >= hit.distance)
+            return;
+
+        hit.area = area;
+        hit.collider = area.collider;
+        hit.distance = enter;
+        hit.x = x + directionX * enter;
+        hit.y = y + directionY * enter;
+        hit.normalX = normalX;
+        hit.normalY = normalY;
+    }
+
+    /** Returns whether an area passes the filters of a query. */
+    private static boolean accepts(CollisionArea area, int maskBits, Class<? extends LummComponent> type) {
+
+        Collider collider = area.collider;
+        return area.enabled && (collider.getCategoryBits() & area.categoryBits & maskBits) != 0
+                && collider.object.isInScene() && (type == null || collider.object.getComponent(type) != null);
+    }
+
+    /** Returns the squared distance from a point to the closest point of a rectangle. */
+    private static float distanceSquared(Rectangle rect, float x, float y) {
+
+        float dx = Math.max(Math.max(rect.x - x, 0), x - (rect.x + rect.width));
+        float dy = Math.max(Math.max(rect.y - y, 0), y - (rect.y + rect.height));
+        return dx * dx + dy * dy;
+    }
+
+    // endregion queries
+
+    // endregion methods
+
+    // region classes
+
+    /**
+     * Result of {@link CollisionGrid#raycast}, reused between casts to avoid
+     * allocating.
+     */
+    public static class RaycastHit {
+
+        /** The area hit, null if nothing was hit. */
+        public CollisionArea area;
+
+        /** The collider of {@link #area}. */
+        public Collider collider;
+
+        /** Distance along the ray to the hit, 0 if the ray starts inside the area. */
+        public float distance;
+
+        /** Position of the hit. */
+        public float x, y;
+
+        /** Side of the area that was hit, as a unit vector. 0 if the ray starts inside the area. */
+        public float normalX, normalY;
+
+        public void clear() {
+
+            area = null;
+            collider = null;
+            distance = 0;
+            x = y = 0;
+            normalX = normalY = 0;
+        }
+    }
+
+    // endregion classes
+}
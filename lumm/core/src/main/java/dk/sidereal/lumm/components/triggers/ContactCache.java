@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.components.triggers;
+
+import java.util.ArrayList;
+
+/**
+ * Contacts of a {@link Collider} that persist between updates, used for
+ * telling apart entering, staying inside and exiting a collision.
+ * <p>
+ * Contacts are found by a key made of stable ids, in an open-addressing hash
+ * table using linear probing. Each contact holds the
+ * {@link Collider#getUpdateCount()} of the last update it was touched in, and
+ * contacts not touched in an update have ended. Records of ended contacts are
+ * reused, so the cache doesn't allocate once it has grown to the number of
+ * contacts the collider has at a time.
+ *
+ * @author Claudiu Bele
+ */
+final class ContactCache {
+
+    // region fields
+
+    /** Contacts by the hash of their key. Its length is a power of two. */
+    private Contact[] table;
+
+    /** Contacts in the cache, for iterating without going through the table. */
+    private Contact[] contacts;
+
+    private int size;
+
+    /** Records of ended contacts, reused for new ones. */
+    private final ArrayList<Contact> free;
+
+    // endregion fields
+
+    // region constructors
+
+    ContactCache() {
+
+        table = new Contact[16];
+        contacts = new Contact[8];
+        free = new ArrayList<Contact>();
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    /**
+     * Returns the contact with the given key.
+     *
+     * @return the contact, or null if it isn't in the cache
+     */
+    Contact get(long key) {
+
+        int mask = table.length - 1;
+        for (int i = hash(key) & mask; table[i] != null; i = (i + 1) & mask) {
+            if (table[i].key == key)
+                return table[i];
+        }
+        return null;
+    }
+
+    /**
+     * Adds a contact with the given key, which must not be in the cache.
+     *
+     * @return the contact record, to be filled in by the caller
+     */
+    Contact add(long key) {
+
+        if ((size + 1) * 2 > table.length)
+            rehash(table.length * 2);
+
+        Contact contact = free.size() == 0 ? new Contact() : free.remove(free.size() - 1);
+        contact.key = key;
+
+        insert(table, contact);
+
+        if (size == contacts.length) {
+            Contact[] grown = new Contact[size * 2];
+            System.arraycopy(contacts, 0, grown, 0, size);
+            contacts = grown;
+        }
+        contact.index = size;
+        contacts[size++] = contact;
+        return contact;
+    }
+
+    /**
+     * Removes a contact, keeping the record for reuse.
+     *
+     * @param contact
+     *            a contact in the cache
+     */
+    void remove(Contact contact) {
+
+        int mask = table.length - 1;
+        int i = hash(contact.key) & mask;
+        while (table[i] != contact)
+            i = (i + 1) & mask;
+
+        // move back the following contacts that would no longer be found
+        table[i] = null;
+        for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+
+            int home = hash(table[j].key) & mask;
+            // the contact's home slot is not between the hole and itself
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                table[i] = table[j];
+                table[j] = null;
+                i = j;
+            }
+        }
+
+        Contact last = contacts[--size];
+        contacts[contact.index] = last;
+        last.index = contact.index;
+        contacts[size] = null;
+
+        contact.clear();
+        free.add(contact);
+    }
+
+    /** Removes all contacts without reporting them. */
+    void clear() {
+
+        while (size > 0)
+            remove(contacts[size - 1]);
+    }
+
+    int size() {
+
+        return size;
+    }
+
+    /**
+     * Returns a contact by its position in the cache, for iterating. Removing
+     * a contact moves the last one in its place.
+     */
+    Contact get(int index) {
+
+        return contacts[index];
+    }
+
+    private void rehash(int capacity) {
+
+        Contact[] rehashed = new Contact[capacity];
+        for (int i = 0; i < size; i++) {
+            insert(rehashed, contacts[i]);
+        }
+        table = rehashed;
+    }
+
+    private static void insert(Contact[] table, Contact contact) {
+
+        int mask = table.length - 1;
+        int i = hash(contact.key) & mask;
+        while (table[i] != null)
+            i = (i + 1) & mask;
+        table[i] = contact;
+    }
+
+    private static int hash(long key) {
+
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Returns the key of a pair of ids.
+     *
+     * @param own
+     *            the id of the area or collider on this side
+     * @param target
+     *            the id of the area or collider on the other side
+     * @return the key of the pair
+     */
+    static long key(int own, int target) {
+
+        return ((long) own << 32) | (target & 0xffffffffL);
+    }
+
+    // endregion methods
+
+    // region classes
+
+    /**
+     * Contact between two colliders, or between two of their areas. Records
+     * are reused, so they shouldn't be kept after the contact ends.
+     */
+    static final class Contact {
+
+        long key;
+
+        /** Area of the collider that owns the cache, null for collider contacts. */
+        CollisionArea own;
+
+        /** Area of the other collider, null for collider contacts. */
+        CollisionArea target;
+
+        /** The other collider. */
+        Collider collider;
+
+        /** Update of the owning collider in which the contact started. */
+        int firstUpdate;
+
+        /** Last update of the owning collider in which the contact was found. */
+        int lastUpdate;
+
+        /**
+         * Fraction of the owning collider's movement in its last update at
+         * which the contact started, see
+         * {@link Collider#getTimeOfImpact(Collider)}.
+         */
+        float timeOfImpact;
+
+        /** Index in {@link ContactCache#contacts}. */
+        int index;
+
+        void clear() {
+
+            own = null;
+            target = null;
+            collider = null;
+        }
+    }
+
+    // endregion classes
+}
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.components.triggers;
+
+import java.util.ArrayList;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import dk.sidereal.lumm.architecture.AbstractEvent;
+import dk.sidereal.lumm.architecture.LummSceneLayer;
+import dk.sidereal.lumm.util.CellGrid;
+
+/**
+ * Tracks which {@link Hoverable} instances of a {@link LummSceneLayer} the
+ * mouse is over, retrieved using {@link LummSceneLayer#getHoverTracker()}.
+ * <p>
+ * Hoverables are kept in a grid of cells. When the layer's
+ * {@link LummSceneLayer#mousePosition} changes, only the cell under the mouse
+ * is checked, and enter and exit events are run for the hoverables whose
+ * state changed. A hoverable whose area moves is checked on its own in
+ * {@link Hoverable#onUpdate()}, so hoverables moving under a still mouse are
+ * handled as well.
+ * <p>
+ * Only enabled hoverables of enabled objects in the scene are hovered. Hovered
+ * ones that get disabled are exited after the update pass.
+ *
+ * @author Claudiu Bele
+ */
+public class HoverTracker {
+
+    // region fields
+
+    private final LummSceneLayer layer;
+
+    /** Hoverables by the cells their area overlaps. */
+    private final CellGrid<Hoverable> cells;
+
+    /**
+     * Hoverables the mouse is over. Each hoverable knows its index in
+     * {@link Hoverable#hoveredIndex}.
+     */
+    private final ArrayList<Hoverable> hovered;
+
+    /** Incremented on every mouse move, for finding the hoverables the mouse left. */
+    private int moveStamp;
+
+    // endregion fields
+
+    // region constructors
+
+    /**
+     * Creates the tracker of a layer. Use
+     * {@link LummSceneLayer#getHoverTracker()} instead of calling this.
+     *
+     * @param layer
+     *            the scene layer
+     */
+    public HoverTracker(LummSceneLayer layer) {
+
+        if (layer == null)
+            throw new NullPointerException("HoverTracker constructor parameter 'layer' of type LummSceneLayer is null");
+
+        this.layer = layer;
+        this.cells = new CellGrid<Hoverable>(CellGrid.DEFAULT_CELL_SIZE);
+        this.hovered = new ArrayList<Hoverable>();
+
+        layer.addOnMouseMovedEvent(new AbstractEvent() {
+
+            @Override
+            public void run(Object... objects) {
+
+                onMouseMoved();
+            }
+        });
+        layer.addOnUpdatedEvent(new AbstractEvent() {
+
+            @Override
+            public void run(Object... objects) {
+
+                exitInactive();
+            }
+        });
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    /**
+     * Returns the number of hoverables the mouse is over.
+     *
+     * @return the number of hovered hoverables
+     */
+    public int getHoveredCount() {
+
+        return hovered.size();
+    }
+
+    /**
+     * Puts a hoverable in the cells its area overlaps and checks whether the
+     * mouse is over it, running its enter or exit event if that changed. Does
+     * nothing if the area didn't change since the last call, as mouse moves
+     * are handled in {@link #onMouseMoved()}.
+     */
+    final void update(Hoverable hoverable) {
+
+        Rectangle area = hoverable.getArea();
+        if (area == null) {
+            remove(hoverable);
+            return;
+        }
+
+        if (hoverable.inCells && !hoverable.recheck && hoverable.trackedX == area.x && hoverable.trackedY == area.y
+                && hoverable.trackedWidth == area.width && hoverable.trackedHeight == area.height)
+            return;
+
+        hoverable.recheck = false;
+        hoverable.trackedX = area.x;
+        hoverable.trackedY = area.y;
+        hoverable.trackedWidth = area.width;
+        hoverable.trackedHeight = area.height;
+
+        int minX = cells.cell(area.x);
+        int minY = cells.cell(area.y);
+        int maxX = cells.cell(area.x + area.width);
+        int maxY = cells.cell(area.y + area.height);
+
+        if (!hoverable.inCells || hoverable.minCellX != minX || hoverable.minCellY != minY
+                || hoverable.maxCellX != maxX || hoverable.maxCellY != maxY) {
+
+            removeFromCells(hoverable);
+
+            hoverable.inCells = true;
+            hoverable.minCellX = minX;
+            hoverable.minCellY = minY;
+            hoverable.maxCellX = maxX;
+            hoverable.maxCellY = maxY;
+            cells.add(hoverable, minX, minY, maxX, maxY);
+        }
+
+        setHovered(hoverable, isActive(hoverable) && area.contains(layer.mousePosition));
+    }
+
+    /**
+     * Takes a hoverable out of the tracker without running its exit event.
+     */
+    final void remove(Hoverable hoverable) {
+
+        removeFromCells(hoverable);
+        removeFromHovered(hoverable);
+    }
+
+    /**
+     * Runs the enter events of the hoverables under the mouse that weren't
+     * before, and the exit events of the ones the mouse left.
+     */
+    private void onMouseMoved() {
+
+        int stamp = ++moveStamp;
+        Vector2 mouse = layer.mousePosition;
+
+        CellGrid.Cell<Hoverable> cell = cells.get(cells.cell(mouse.x), cells.cell(mouse.y));
+        for (int i = 0; cell != null && i < cell.size(); i++) {
+
+            Hoverable hoverable = cell.get(i);
+            if (!hoverable.getArea().contains(mouse))
+                continue;
+
+            if (isActive(hoverable)) {
+                hoverable.moveStamp = stamp;
+                setHovered(hoverable, true);
+            } else {
+                // checked again once enabled, even if the mouse doesn't move
+                hoverable.recheck = true;
+            }
+        }
+
+        // going backwards, as exiting removes the hoverable from the list
+        for (int i = hovered.size() - 1; i >= 0; i--) {
+
+            Hoverable hoverable = hovered.get(i);
+            if (hoverable.moveStamp != stamp)
+                setHovered(hoverable, false);
+        }
+    }
+
+    /**
+     * Runs the exit events of the hovered hoverables that were disabled, or
+     * whose object was disabled or removed, during the update pass.
+     */
+    private void exitInactive() {
+
+        // going backwards, as exiting removes the hoverable from the list
+        for (int i = hovered.size() - 1; i >= 0; i--) {
+
+            Hoverable hoverable = hovered.get(i);
+            if (!isActive(hoverable)) {
+                hoverable.recheck = true;
+                setHovered(hoverable, false);
+            }
+        }
+    }
+
+    private static boolean isActive(Hoverable hoverable) {
+
+        return hoverable.isEnabled() && hoverable.object.isEnabled();
+    }
+
+    private void setHovered(Hoverable hoverable, boolean value) {
+
+        if (hoverable.isHovered() == value)
+            return;
+
+        if (value) {
+            hoverable.hoveredIndex = hovered.size();
+            hovered.add(hoverable);
+        } else {
+            removeFromHovered(hoverable);
+        }
+        hoverable.onHoverChanged(value);
+    }
+
+    private void removeFromHovered(Hoverable hoverable) {
+
+        if (hoverable.hoveredIndex == -1)
+            return;
+
+        // move the last hoverable in its place
+        Hoverable last = hovered.remove(hovered.size() - 1);
+        if (last != hoverable) {
+            hovered.set(hoverable.hoveredIndex, last);
+            last.hoveredIndex = hoverable.hoveredIndex;
+        }
+        hoverable.hoveredIndex = -1;
+    }
+
+    private void removeFromCells(Hoverable hoverable) {
+
+        if (!hoverable.inCells)
+            return;
+
+        cells.remove(hoverable, hoverable.minCellX, hoverable.minCellY, hoverable.maxCellX, hoverable.maxCellY);
+        hoverable.inCells = false;
+    }
+
+    // endregion methods
+
+    // region classes
+
+    // endregion classes
+}
@@ -23,12 +23,20 @@ import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.math.Rectangle;
 import dk.sidereal.lumm.architecture.AbstractEvent;
 import dk.sidereal.lumm.architecture.Lumm;
+import dk.sidereal.lumm.architecture.LummComponent;
 import dk.sidereal.lumm.architecture.LummObject;
+import dk.sidereal.lumm.architecture.LummSceneLayer;
 import dk.sidereal.lumm.architecture.concrete.ConcreteLummComponent;
+import dk.sidereal.lumm.architecture.listeners.OnDisposeListener;
 
 /**
  * Behavior that handles hovering over an area. Can handle being inside as well
  * as outside of the designated area.
+ * <p>
+ * Whether the mouse is over the area is tracked by the {@link HoverTracker}
+ * of the object's layer, which runs the enter and exit events when the mouse,
+ * the camera or the area move, instead of every hoverable checking the mouse
+ * every frame.
  *
  * @author Claudiu Bele
  */
@@ -42,6 +50,34 @@ public class Hoverable extends ConcreteLummComponent {
 
     private AbstractEvent outsideEvent;
 
+    private AbstractEvent enterEvent;
+
+    private AbstractEvent exitEvent;
+
+    /** Tracker of the layer the hoverable is in, null until it has one. */
+    private HoverTracker tracker;
+
+    /** Whether {@link HoverTracker} has the hoverable in its cells. */
+    boolean inCells;
+
+    /** Range of cells of {@link #tracker} the area is in. */
+    int minCellX, minCellY, maxCellX, maxCellY;
+
+    /**
+     * Whether the tracker checks the area against the mouse in the next update
+     * even if it didn't move, set when the mouse was over it while disabled.
+     */
+    boolean recheck;
+
+    /** Area when the tracker last checked it against the mouse, while {@link #inCells}. */
+    float trackedX, trackedY, trackedWidth, trackedHeight;
+
+    /** Index in the hovered list of {@link #tracker}, -1 if not hovered. */
+    int hoveredIndex;
+
+    /** Last mouse move of {@link #tracker} the hoverable was found under the mouse in. */
+    int moveStamp;
+
     private float offsetX, offsetY;
 
     private Sprite debugSprite;
@@ -59,6 +95,20 @@ public class Hoverable extends ConcreteLummComponent {
         if (Lumm.debug.isEnabled())
             this.debugSprite = new Sprite(debugSpriteSource);
         setDebugToggleKeys(Keys.SHIFT_LEFT, Keys.X);
+
+        hoveredIndex = -1;
+
+        onDisposeListener = new OnDisposeListener<LummComponent>() {
+
+            @Override
+            public void onDispose(LummComponent caller) {
+
+                if (tracker != null) {
+                    tracker.remove(Hoverable.this);
+                    tracker = null;
+                }
+            }
+        };
     }
 
     @Override
@@ -87,11 +137,13 @@ public class Hoverable extends ConcreteLummComponent {
 
         // adapt the area based on the position of the object
         // so the position of the object is in the middle of the area
-        area.x = object.position.getX() + offsetX;
-        area.y = object.position.getY() + offsetY;
+        if (area != null) {
+            area.x = object.position.getX() + offsetX;
+            area.y = object.position.getY() + offsetY;
+        }
+        track();
 
-        // mouse click is inside the area of the object
-        if (area.contains(object.getSceneLayer().mousePosition)) {
+        if (isHovered()) {
             if (insideEvent != null)
                 insideEvent.run();
         } else if (outsideEvent != null)
@@ -99,6 +151,75 @@ public class Hoverable extends ConcreteLummComponent {
 
     }
 
+    /**
+     * Puts the hoverable in the {@link HoverTracker} of its layer, moving it if
+     * the object changed layers, and checks the area against the mouse if it
+     * moved.
+     */
+    private void track() {
+
+        LummSceneLayer layer = object.getSceneLayer();
+        if (layer == null)
+            return;
+
+        HoverTracker current = layer.getHoverTracker();
+        if (tracker != current) {
+            if (tracker != null) {
+                boolean wasHovered = isHovered();
+                tracker.remove(this);
+                if (wasHovered)
+                    onHoverChanged(false);
+            }
+            tracker = current;
+        }
+        tracker.update(this);
+    }
+
+    /** Tracks the area again when the pooled object is reused. */
+    @Override
+    protected void onReset() {
+
+        if (area != null) {
+            area.x = object.position.getX() + offsetX;
+            area.y = object.position.getY() + offsetY;
+        }
+        track();
+    }
+
+    /**
+     * Takes the hoverable out of the tracker while the object is pooled,
+     * without running the exit event.
+     */
+    @Override
+    protected void onRecycle() {
+
+        if (tracker != null) {
+            tracker.remove(this);
+            tracker = null;
+        }
+    }
+
+    /** Runs the enter or exit event. Called by the {@link HoverTracker}. */
+    final void onHoverChanged(boolean hovered) {
+
+        object.wake();
+        if (hovered) {
+            if (enterEvent != null)
+                enterEvent.run();
+        } else if (exitEvent != null)
+            exitEvent.run();
+    }
+
+    /**
+     * Returns whether the mouse is over the area.
+     *
+     * @return whether the hoverable is hovered
+     */
+    public boolean isHovered() {
+
+        return hoveredIndex != -1;
+    }
+
     public Rectangle getArea() {
 
         return area;
@@ -110,6 +231,7 @@ public class Hoverable extends ConcreteLummComponent {
         offsetY = -height / 2;
         this.area = new Rectangle(object.position.getX() - width / 2, object.position.getY() - height / 2, width,
                 height);
+        track();
     }
 
     public void setAreaSize(float width, float height, float offsetX, float offsetY) {
@@ -117,11 +239,13 @@ public class Hoverable extends ConcreteLummComponent {
         this.offsetX = offsetX;
         this.offsetY = offsetY;
         this.area = new Rectangle(object.position.getX() + offsetX, object.position.getY() + offsetY, width, height);
+        track();
     }
 
     public void setArea(Rectangle area) {
 
         this.area = area;
+        track();
     }
 
     public AbstractEvent getEvent() {
@@ -129,15 +253,51 @@ public class Hoverable extends ConcreteLummComponent {
         return insideEvent;
     }
 
+    /**
+     * Sets the event to run on every update while the mouse is over the area.
+     *
+     * @param event
+     *            the event to run, or null
+     */
     public void setEventOnInside(AbstractEvent event) {
 
         this.insideEvent = event;
     }
 
+    /**
+     * Sets the event to run on every update while the mouse is not over the
+     * area. Prefer {@link #setEventOnExit(AbstractEvent)} where possible, as
+     * this runs for every hoverable that isn't hovered.
+     *
+     * @param event
+     *            the event to run, or null
+     */
     public void setEventOnOutside(AbstractEvent event) {
 
         this.outsideEvent = event;
     }
 
+    /**
+     * Sets the event to run once when the mouse gets over the area.
+     *
+     * @param event
+     *            the event to run, or null
+     */
+    public void setEventOnEnter(AbstractEvent event) {
+
+        this.enterEvent = event;
+    }
+
+    /**
+     * Sets the event to run once when the mouse leaves the area.
+     *
+     * @param event
+     *            the event to run, or null
+     */
+    public void setEventOnExit(AbstractEvent event) {
+
+        this.exitEvent = event;
+    }
+
     // endregion methods
 }
@@ -17,6 +17,7 @@
 package dk.sidereal.lumm.components.triggers;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import dk.sidereal.lumm.architecture.LummObject;
 
@@ -51,6 +52,9 @@ public abstract class OnColliderEventListener {
 
     ArrayList<Class<? extends LummObject>> filterClasses;
 
+    /** Result of {@link #accepts(Class)} by class, so the filter is only checked once per class. */
+    private final HashMap<Class<?>, Boolean> acceptedClasses = new HashMap<Class<?>, Boolean>();
+
     /**
      * Constructor for OnColliderEventListener. The
      * {@link #onCollisionEvent(Collider, Collider, int)} will be called every
@@ -104,6 +108,29 @@ public abstract class OnColliderEventListener {
      *            {@link Collider#COLLISION_INSIDE} or
      *            {@link Collider#COLLISION_EXIT}.
      */
+    /**
+     * Returns whether collisions with objects of the given class are handled,
+     * based on {@link #filterClasses}.
+     */
+    final boolean accepts(Class<?> type) {
+
+        if (filterClasses == null)
+            return true;
+
+        Boolean accepted = acceptedClasses.get(type);
+        if (accepted == null) {
+            accepted = Boolean.FALSE;
+            for (int i = 0; i < filterClasses.size(); i++) {
+                if (filterClasses.get(i).isAssignableFrom(type)) {
+                    accepted = Boolean.TRUE;
+                    break;
+                }
+            }
+            acceptedClasses.put(type, accepted);
+        }
+        return accepted;
+    }
+
     public abstract void onCollisionEvent(Collider ownCollider, Collider targetCollider, int collisionStatus);
 
 }
@@ -16,6 +16,7 @@
 package dk.sidereal.lumm.components.triggers;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import dk.sidereal.lumm.architecture.LummObject;
 
@@ -49,6 +50,9 @@ public abstract class OnCollisionAreaEventListener {
 
     ArrayList<Class<? extends LummObject>> filterClasses;
 
+    /** Result of {@link #accepts(Class)} by class, so the filter is only checked once per class. */
+    private final HashMap<Class<?>, Boolean> acceptedClasses = new HashMap<Class<?>, Boolean>();
+
     /**
      * Constructor for OnColliderEventListener. The
      * {@link #onCollisionAreaEvent(CollisionArea, CollisionArea, int)} will be
@@ -103,6 +107,29 @@ public abstract class OnCollisionAreaEventListener {
      *            {@link Collider#COLLISION_INSIDE} or
      *            {@link Collider#COLLISION_EXIT}.
      */
+    /**
+     * Returns whether collisions with objects of the given class are handled,
+     * based on {@link #filterClasses}.
+     */
+    final boolean accepts(Class<?> type) {
+
+        if (filterClasses == null)
+            return true;
+
+        Boolean accepted = acceptedClasses.get(type);
+        if (accepted == null) {
+            accepted = Boolean.FALSE;
+            for (int i = 0; i < filterClasses.size(); i++) {
+                if (filterClasses.get(i).isAssignableFrom(type)) {
+                    accepted = Boolean.TRUE;
+                    break;
+                }
+            }
+            acceptedClasses.put(type, accepted);
+        }
+        return accepted;
+    }
+
     public abstract void onCollisionAreaEvent(CollisionArea ownCollisionArea, CollisionArea targetCollisionArea,
                                               int collisionStatus);
 
@@ -191,7 +191,7 @@ public class TriggerArea {
                 continue;
 
             for (int j = 0; j < c2.size(); j++) {
-                if (!c2.get(i).enabled)
+                if (!c2.get(j).enabled)
                     continue;
 
                 if (c1.get(i).rect.overlaps(c2.get(j).rect))
@@ -209,7 +209,7 @@ public class TriggerArea {
                 continue;
 
             for (int j = 0; j < c2.size(); j++) {
-                if (!c2.get(i).enabled)
+                if (!c2.get(j).enabled)
                     continue;
 
                 if (c1.get(i).rect.overlaps(c2.get(j).rect))
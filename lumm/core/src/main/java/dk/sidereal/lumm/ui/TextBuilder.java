@@ -345,27 +345,27 @@ public class TextBuilder extends ConcreteLummObject {
 
             glyphLayout.setText(font, paraGraphsToWrite.get(i).text);
             if (allignment.equals(Allign.Center)) {
-                newX = position.getX() - glyphLayout.width / 2;
+                newX = position.getRenderX() - glyphLayout.width / 2;
             } else if (allignment.equals(Allign.Left)) {
-                newX = position.getX();
+                newX = position.getRenderX();
             } else {
-                newX = position.getX() - glyphLayout.width;
+                newX = position.getRenderX() - glyphLayout.width;
             }
 
             if (anchor.equals(Anchor.Top)) {
-                newY = position.getY();
+                newY = position.getRenderY();
                 newY -= currLineOffset;
                 currLineOffset += glyphLayout.height;
                 currLineOffset += lineSpacing;
             } else if (anchor.equals(Anchor.Middle)) {
-                newY = position.getY() + glyphLayout.height / 2;
+                newY = position.getRenderY() + glyphLayout.height / 2;
 
                 if (paraGraphsToWrite.size() != 0) {
                     glyphLayout.setText(font, "X");
                     newY += (((paraGraphsToWrite.size() - 1) / 2f) - i) * (glyphLayout.height + lineSpacing);
                 }
             } else {
-                newY = position.getY() + glyphLayout.height / 2;
+                newY = position.getRenderY() + glyphLayout.height / 2;
                 newY += currLineOffset;
                 currLineOffset += glyphLayout.height;
                 currLineOffset += lineSpacing;
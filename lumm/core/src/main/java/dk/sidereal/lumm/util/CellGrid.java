@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright 2014 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package dk.sidereal.lumm.util;
+
+import java.util.ArrayList;
+
+import com.badlogic.gdx.utils.LongMap;
+
+/**
+ * Spatial hash splitting the world in square cells, each holding the items
+ * whose bounds overlap it. Only cells that have items in them are kept, and
+ * emptied cells are reused.
+ * <p>
+ * The grid doesn't store the bounds of the items. Callers keep the range of
+ * cells an item was added to, computed using {@link #cell(float)}, and pass
+ * the same range when removing it.
+ *
+ * @param <T>
+ *            type of the items in the grid
+ * @author Claudiu Bele
+ */
+public class CellGrid<T> {
+
+    // region fields
+
+    public static final float DEFAULT_CELL_SIZE = 128;
+
+    private float cellSize;
+
+    /** Cells that have items in them, by {@link #key(int, int)}. */
+    private final LongMap<Cell<T>> cells;
+
+    /** Cells that were emptied, reused when items move to new cells. */
+    private final ArrayList<Cell<T>> freeCells;
+
+    // endregion fields
+
+    // region constructors
+
+    public CellGrid(float cellSize) {
+
+        if (cellSize <= 0)
+            throw new LummException("CellGrid constructor parameter 'cellSize' has to be positive");
+
+        this.cellSize = cellSize;
+        this.cells = new LongMap<Cell<T>>();
+        this.freeCells = new ArrayList<Cell<T>>();
+    }
+
+    // endregion constructors
+
+    // region methods
+
+    /**
+     * Sets the size of the cells. Items have to be removed before and added
+     * back after, as their cell ranges change.
+     *
+     * @param cellSize
+     *            the width and height of a cell, in world units
+     */
+    public void setCellSize(float cellSize) {
+
+        if (cellSize <= 0)
+            throw new LummException("CellGrid.setCellSize parameter 'cellSize' has to be positive");
+
+        this.cellSize = cellSize;
+    }
+
+    public float getCellSize() {
+
+        return cellSize;
+    }
+
+    /**
+     * Returns the number of cells that have items in them.
+     *
+     * @return the number of cells used
+     */
+    public int getCellCount() {
+
+        return cells.size;
+    }
+
+    /**
+     * Returns the cells that have items in them. The iterable is reused by
+     * the grid, so it can't be iterated by two loops at the same time.
+     *
+     * @return the cells used
+     */
+    public Iterable<Cell<T>> getCells() {
+
+        return cells.values();
+    }
+
+    /**
+     * Returns the cell containing a coordinate, on either axis.
+     *
+     * @param coordinate
+     *            the world coordinate
+     * @return the index of the cell
+     */
+    public int cell(float coordinate) {
+
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    /**
+     * Returns a cell by its indices.
+     *
+     * @return the cell, or null if no item is in it
+     */
+    public Cell<T> get(int cellX, int cellY) {
+
+        return cells.get(key(cellX, cellY));
+    }
+
+    /** Adds an item to all cells in a range, inclusive. */
+    public void add(T item, int minX, int minY, int maxX, int maxY) {
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+
+                long key = key(x, y);
+                Cell<T> cell = cells.get(key);
+                if (cell == null) {
+                    cell = freeCells.size() == 0 ? new Cell<T>() : freeCells.remove(freeCells.size() - 1);
+                    cells.put(key, cell);
+                }
+                cell.add(item);
+            }
+        }
+    }
+
+    /** Removes an item from all cells in the range it was added with. */
+    public void remove(T item, int minX, int minY, int maxX, int maxY) {
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+
+                long key = key(x, y);
+                Cell<T> cell = cells.get(key);
+                if (cell == null)
+                    continue;
+
+                cell.remove(item);
+                if (cell.size == 0) {
+                    cells.remove(key);
+                    freeCells.add(cell);
+                }
+            }
+        }
+    }
+
+    private static long key(int x, int y) {
+
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    // endregion methods
+
+    // region classes
+
+    /** Items overlapping a cell, iterated by index. */
+    public static final class Cell<T> {
+
+        private Object[] items = new Object[4];
+
+        private int size;
+
+        public int size() {
+
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+
+            return (T) items[index];
+        }
+
+        void add(T item) {
+
+            if (size == items.length) {
+                Object[] grown = new Object[size * 2];
+                System.arraycopy(items, 0, grown, 0, size);
+                items = grown;
+            }
+            items[size++] = item;
+        }
+
+        /** Removes an item by moving the last one in its place. */
+        void remove(T item) {
+
+            for (int i = 0; i < size; i++) {
+                if (items[i] == item) {
+                    items[i] = items[--size];
+                    items[size] = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    // endregion classes
+}